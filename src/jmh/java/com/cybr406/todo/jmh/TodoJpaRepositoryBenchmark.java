@@ -0,0 +1,168 @@
+package com.cybr406.todo.jmh;
+
+import com.cybr406.todo.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the TodoJpaRepository and TaskJpaRepository calls the controller makes, against H2 filled with size todos of
+ * three tasks each.
+ *
+ * The application is started without a web server and with SQL logging off. Reads that touch tasks run in a read-only
+ * transaction, like they do behind open-in-view in the real app, so the tasks are loaded the same way.
+ *
+ * Hibernate, Spring Data and H2 have a lot of code for the JIT to get through, so the warm up is long. With less of it
+ * the paging benchmarks were still getting faster after twenty seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 8, time = 5)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TodoJpaRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final int TASKS = 3;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private ConfigurableApplicationContext context;
+
+    private TodoJpaRepository todoJpaRepository;
+
+    private TaskJpaRepository taskJpaRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    private long firstId;
+
+    private int lastPage;
+
+    @Setup
+    public void setup() {
+        // Passed as arguments so they win over application.properties.
+        SpringApplication application = new SpringApplication(TodoApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        context = application.run(
+                "--spring.profiles.active=test",
+                "--spring.datasource.url=jdbc:h2:mem:jmh-" + UUID.randomUUID(),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+
+        todoJpaRepository = context.getBean(TodoJpaRepository.class);
+        taskJpaRepository = context.getBean(TaskJpaRepository.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+
+        List<Todo> todos = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            todos.add(todo());
+        List<Long> ids = context.getBean(TodoBulkWriter.class).createAll(todos.iterator());
+        firstId = ids.get(0);
+        lastPage = (size - 1) / PAGE_SIZE;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private static Todo todo() {
+        Todo todo = new Todo();
+        todo.setAuthor("Benchmark");
+        todo.setDetails("Benchmark details");
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task(todo);
+            task.setCompleted(false);
+            task.setDetails("Benchmark task");
+            todo.getTasks().add(task);
+        }
+        return todo;
+    }
+
+    private long randomId() {
+        return firstId + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    private static int loadTasks(List<Todo> todos) {
+        int tasks = 0;
+        for (Todo todo : todos)
+            tasks += todo.getTasks().size();
+        return tasks;
+    }
+
+    @Benchmark
+    public long count() {
+        return todoJpaRepository.count();
+    }
+
+    @Benchmark
+    public Optional<Todo> findById() {
+        return todoJpaRepository.findById(randomId());
+    }
+
+    @Benchmark
+    public Optional<Todo> findWithTasksById() {
+        return todoJpaRepository.findWithTasksById(randomId());
+    }
+
+    @Benchmark
+    public Integer findAllFirstPage() {
+        return readOnlyTransactionTemplate.execute(status ->
+                loadTasks(todoJpaRepository.findAll(PageRequest.of(0, PAGE_SIZE)).getContent()));
+    }
+
+    @Benchmark
+    public Integer findAllLastPage() {
+        return readOnlyTransactionTemplate.execute(status ->
+                loadTasks(todoJpaRepository.findAll(PageRequest.of(lastPage, PAGE_SIZE)).getContent()));
+    }
+
+    @Benchmark
+    public Integer findAllAfterLastPage() {
+        long afterId = firstId - 1 + (long) lastPage * PAGE_SIZE;
+        return readOnlyTransactionTemplate.execute(status ->
+                loadTasks(todoJpaRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, PAGE_SIZE))));
+    }
+
+    @Benchmark
+    public Task addTaskAndDeleteTask() {
+        Task task = transactionTemplate.execute(status -> {
+            Task added = new Task(todoJpaRepository.getOne(randomId()));
+            added.setCompleted(false);
+            added.setDetails("Benchmark task");
+            return taskJpaRepository.save(added);
+        });
+        taskJpaRepository.deleteById(task.getId());
+        return task;
+    }
+
+    @Benchmark
+    public Todo saveAndDelete() {
+        Todo todo = new Todo();
+        todo.setAuthor("Benchmark");
+        todo.setDetails("Benchmark details");
+        todoJpaRepository.save(todo);
+        todoJpaRepository.deleteById(todo.getId());
+        return todo;
+    }
+
+}
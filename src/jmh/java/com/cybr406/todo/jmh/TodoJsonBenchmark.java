@@ -0,0 +1,61 @@
+package com.cybr406.todo.jmh;
+
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times writing a Todo with the given number of tasks to JSON and reading it back, with an ObjectMapper set up the way
+ * Spring Boot sets up the one the controllers use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TodoJsonBenchmark {
+
+    @Param({"0", "10", "100", "1000"})
+    public int tasks;
+
+    private ObjectMapper objectMapper;
+
+    private Todo todo;
+
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        todo = new Todo();
+        todo.setId(1L);
+        todo.setAuthor("Benchmark");
+        todo.setDetails("Benchmark details");
+        for (int i = 0; i < tasks; i++) {
+            Task task = new Task(todo);
+            task.setId(i + 1L);
+            task.setCompleted(i % 2 == 0);
+            task.setDetails("Benchmark task " + i);
+            todo.getTasks().add(task);
+        }
+        json = objectMapper.writeValueAsBytes(todo);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return objectMapper.writeValueAsBytes(todo);
+    }
+
+    @Benchmark
+    public Todo read() throws IOException {
+        return objectMapper.readValue(json, Todo.class);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.cybr406.todo.jmh;
+
+import com.cybr406.todo.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every TodoRepository operation against the in-memory engines, filled with size todos.
+ *
+ * The write benchmarks undo what they do (create then delete, addTask then deleteTask) so the repository stays the same
+ * size however long they run. InMemoryTodoRepository isn't threadsafe, so the "memory" engine only runs with one
+ * thread; use -p engine=concurrent or columnar with -t.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TodoRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"memory", "concurrent", "columnar"})
+    public String engine;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private TodoRepository repository;
+
+    private int lastPage;
+
+    @Setup
+    public void setup(BenchmarkParams params) {
+        switch (engine) {
+            case "memory":
+                if (params.getThreads() > 1)
+                    throw new IllegalStateException("InMemoryTodoRepository is not threadsafe, run it with one thread.");
+                repository = new InMemoryTodoRepository();
+                break;
+            case "concurrent":
+                repository = new ConcurrentTodoRepository();
+                break;
+            case "columnar":
+                repository = new ColumnarTodoRepository();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+
+        for (int i = 0; i < size; i++) {
+            Todo todo = repository.create(todo());
+            for (int j = 0; j < 3; j++)
+                repository.addTask(todo.getId(), task());
+        }
+        lastPage = (size - 1) / PAGE_SIZE;
+    }
+
+    private static Todo todo() {
+        Todo todo = new Todo();
+        todo.setAuthor("Benchmark");
+        todo.setDetails("Benchmark details");
+        return todo;
+    }
+
+    private static Task task() {
+        Task task = new Task();
+        task.setCompleted(false);
+        task.setDetails("Benchmark task");
+        return task;
+    }
+
+    private long randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public long count() {
+        return repository.count();
+    }
+
+    @Benchmark
+    public Optional<Todo> find() {
+        return repository.find(randomId());
+    }
+
+    @Benchmark
+    public List<Todo> findAllFirstPage() {
+        return repository.findAll(0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Todo> findAllLastPage() {
+        return repository.findAll(lastPage, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Todo> findAllAfterLastPage() {
+        return repository.findAllAfter((long) lastPage * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Todo createAndDelete() {
+        Todo todo = repository.create(todo());
+        repository.delete(todo.getId());
+        return todo;
+    }
+
+    @Benchmark
+    public Task addTaskAndDeleteTask() {
+        Task task = task();
+        repository.addTask(randomId(), task);
+        repository.deleteTask(task.getId());
+        return task;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.cybr406.todo;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Puts off work until the current transaction has committed, for things other threads may act on straight away:
+ * notifying listeners and evicting caches. Done any earlier, a listener could go and read rows that are still
+ * uncommitted, or a rollback could leave it told about a change that never happened.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Runs the action once the current transaction commits, or right away if there is no transaction. It doesn't run at
+     * all if the transaction rolls back.
+     */
+    static void run(Runnable action) {
+        if (!register(action))
+            action.run();
+    }
+
+    /**
+     * Runs the action once the current transaction commits. Returns false, without running it, if there is no
+     * transaction.
+     */
+    static boolean register(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return false;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+        return true;
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.cybr406.todo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Runs controller methods on a small, bounded pool of JDBC threads instead of on the Tomcat thread that received the
+ * request. The Tomcat thread reads and validates the request, hands the call to the pool and goes back to serving other
+ * connections; the response is written once the call is done. A request waiting for a database connection then only
+ * holds a place in the pool's queue, so Tomcat's threads are never all stuck on the database.
+ *
+ * Enable it with todo.execution=async. The pool has todo.execution.threads threads, by default as many as there are
+ * database connections, and queues up to todo.execution.queue-capacity calls. Requests beyond that get 503 Service
+ * Unavailable with Retry-After.
+ *
+ * This is the same as every controller method returning a Callable, without changing the controllers: the method is
+ * wrapped in one when it's invoked. Methods that already return something asynchronous are left alone.
+ */
+@Configuration
+@ConditionalOnProperty(name = "todo.execution", havingValue = "async")
+public class AsyncExecutionConfiguration implements WebMvcConfigurer {
+
+    public static final String THREAD_NAME_PREFIX = "todo-jdbc-";
+
+    private final int threads;
+
+    private final int queueCapacity;
+
+    public AsyncExecutionConfiguration(
+            @Value("${todo.execution.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+            @Value("${todo.execution.queue-capacity:10000}") int queueCapacity) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Also used for GET /todos/export, which reads from the database as it streams.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor todoJdbcExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(todoJdbcExecutor());
+    }
+
+    @Override
+    public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
+        resolvers.add(0, new ServiceUnavailableResolver(e -> e instanceof TaskRejectedException));
+    }
+
+    @Bean
+    public WebMvcRegistrations asyncHandlerRegistrations() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                return new RequestMappingHandlerAdapter() {
+                    @Override
+                    protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+                        return new OffloadedHandlerMethod(handlerMethod);
+                    }
+                };
+            }
+        };
+    }
+
+    private static class OffloadedHandlerMethod extends ServletInvocableHandlerMethod {
+
+        private final boolean offload;
+
+        OffloadedHandlerMethod(HandlerMethod handlerMethod) {
+            super(handlerMethod);
+            offload = AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), Controller.class)
+                    && !isAsync(ResolvableType.forMethodReturnType(handlerMethod.getMethod()));
+        }
+
+        /**
+         * Spring MVC runs a returned Callable on the async executor and handles whatever it returns as if the method had
+         * returned it directly.
+         */
+        @Override
+        protected Object doInvoke(Object... args) throws Exception {
+            if (!offload)
+                return super.doInvoke(args);
+            return (Callable<Object>) () -> super.doInvoke(args);
+        }
+
+        private static boolean isAsync(ResolvableType returnType) {
+            // ResponseEntity<StreamingResponseBody> and the like are asynchronous too.
+            if (returnType.hasGenerics())
+                return isAsync(returnType.getGeneric(0)) || isAsync(returnType.getRawClass());
+            return isAsync(returnType.getRawClass());
+        }
+
+        private static boolean isAsync(Class<?> type) {
+            return type != null && (Callable.class.isAssignableFrom(type)
+                    || DeferredResult.class.isAssignableFrom(type)
+                    || WebAsyncTask.class.isAssignableFrom(type)
+                    || CompletionStage.class.isAssignableFrom(type)
+                    || ResponseBodyEmitter.class.isAssignableFrom(type)
+                    || StreamingResponseBody.class.isAssignableFrom(type));
+        }
+
+    }
+
+}
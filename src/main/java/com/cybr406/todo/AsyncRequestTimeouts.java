@@ -0,0 +1,51 @@
+package com.cybr406.todo;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Lets one handler method give its request a different async timeout from spring.mvc.async.request-timeout, which
+ * every other async request keeps. GET /todos/export uses it so a big export can stream for as long as it takes without
+ * every other request being allowed to hang that long too.
+ *
+ * A StreamingResponseBody can't carry a timeout of its own the way a WebAsyncTask or an SseEmitter can, so the handler
+ * leaves it in a request attribute and it is applied just before the request goes async.
+ */
+@Component
+public class AsyncRequestTimeouts implements CallableProcessingInterceptor, WebMvcConfigurer {
+
+    private static final String TIMEOUT = AsyncRequestTimeouts.class.getName() + ".timeout";
+
+    /**
+     * Gives the request timeout instead of the default, if the handler goes on to return something asynchronous.
+     */
+    public static void set(HttpServletRequest request, Duration timeout) {
+        request.setAttribute(TIMEOUT, timeout.toMillis());
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(this);
+    }
+
+    /**
+     * Called with the AsyncWebRequest after the default timeout was set on it, and before it starts the servlet's async
+     * processing, which is when the timeout is handed to the container.
+     */
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        Object timeout = request.getAttribute(TIMEOUT, RequestAttributes.SCOPE_REQUEST);
+        if (timeout instanceof Long && request instanceof AsyncWebRequest)
+            ((AsyncWebRequest) request).setTimeout((Long) timeout);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.cybr406.todo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.IntFunction;
+
+/**
+ * A read-only, live List of the tasks chained to one todo slot. Tasks are only built when somebody asks for them, and
+ * the list always reflects the repository's current state, the same way Todo.getTasks() does for the repositories
+ * that store real Todo objects.
+ */
+class ChainedTaskList extends AbstractList<Task> {
+
+    private final Object lock;
+
+    private final SlotChains chains;
+
+    private final int owner;
+
+    private final IntFunction<Task> taskAt;
+
+    /**
+     * @param lock   the lock guarding chains
+     * @param chains the chains holding the task slots
+     * @param owner  the todo slot whose tasks this list shows
+     * @param taskAt builds a Task from a task slot, called while holding lock
+     */
+    ChainedTaskList(Object lock, SlotChains chains, int owner, IntFunction<Task> taskAt) {
+        this.lock = lock;
+        this.chains = chains;
+        this.owner = owner;
+        this.taskAt = taskAt;
+    }
+
+    @Override
+    public Task get(int index) {
+        synchronized (lock) {
+            if (index < 0 || index >= chains.length(owner))
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + chains.length(owner));
+            int member = chains.first(owner);
+            for (int i = 0; i < index; i++)
+                member = chains.next(member);
+            return taskAt.apply(member);
+        }
+    }
+
+    @Override
+    public int size() {
+        synchronized (lock) {
+            return chains.length(owner);
+        }
+    }
+
+    /**
+     * Copies the current tasks in one pass, so iterating doesn't walk the chain again for every element.
+     */
+    private List<Task> snapshot() {
+        synchronized (lock) {
+            List<Task> tasks = new ArrayList<>(chains.length(owner));
+            for (int member = chains.first(owner); member != SlotChains.NONE; member = chains.next(member))
+                tasks.add(taskAt.apply(member));
+            return tasks;
+        }
+    }
+
+    @Override
+    public Iterator<Task> iterator() {
+        return Collections.unmodifiableList(snapshot()).iterator();
+    }
+
+    @Override
+    public ListIterator<Task> listIterator(int index) {
+        return Collections.unmodifiableList(snapshot()).listIterator(index);
+    }
+
+}
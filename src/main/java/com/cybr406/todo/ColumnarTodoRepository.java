@@ -0,0 +1,330 @@
+package com.cybr406.todo;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * A TodoRepository for very large numbers of todos. Instead of keeping a Todo and an ArrayList of Tasks for every row,
+ * it stores each field in its own array (a column), and finds rows through LongIntHashMaps from id to array slot. Ids
+ * and completed flags are primitives, and the tasks of a todo are linked together through SlotChains.
+ *
+ * Todo and Task objects are only built when a caller asks for one. They are views: a todo's task list always shows
+ * the tasks currently stored for it, but changing a view doesn't change the repository.
+ *
+ * Todo slots are never reused, so the slots stay in id order and findAll can page through them directly. Task slots
+ * are recycled when tasks are deleted. Every method is synchronized on the repository.
+ *
+ * Enable it with todo.repository=columnar in application.properties.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.repository", havingValue = "columnar")
+public class ColumnarTodoRepository implements TodoRepository {
+
+    private static final byte COMPLETED_NULL = 0;
+
+    private static final byte COMPLETED_FALSE = 1;
+
+    private static final byte COMPLETED_TRUE = 2;
+
+    private long nextTodoId = 0;
+
+    private long nextTaskId = 0;
+
+    private int liveTodos = 0;
+
+    // Todo columns, indexed by todo slot. A deleted todo keeps its slot with an id of 0.
+
+    private int todoSlots = 0;
+
+    private long[] todoIds = new long[16];
+
+    private String[] authors = new String[16];
+
+    private String[] todoDetails = new String[16];
+
+    private final LongIntHashMap todoIndex = new LongIntHashMap();
+
+    // Task columns, indexed by task slot.
+
+    private int taskSlots = 0;
+
+    private long[] taskIds = new long[16];
+
+    private int[] taskOwners = new int[16];
+
+    private byte[] taskCompleted = new byte[16];
+
+    private String[] taskDetails = new String[16];
+
+    private int[] freeTaskSlots = new int[16];
+
+    private int freeTaskCount = 0;
+
+    private final LongIntHashMap taskIndex = new LongIntHashMap();
+
+    private final SlotChains chains = new SlotChains();
+
+    @Override
+    public synchronized long count() {
+        return liveTodos;
+    }
+
+    @Override
+    public synchronized Todo create(Todo todo) {
+        if (todoSlots == todoIds.length) {
+            int capacity = todoSlots * 2;
+            todoIds = Arrays.copyOf(todoIds, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+            todoDetails = Arrays.copyOf(todoDetails, capacity);
+        }
+
+        int slot = todoSlots++;
+        nextTodoId++;
+        todoIds[slot] = nextTodoId;
+        authors[slot] = todo.getAuthor();
+        todoDetails[slot] = todo.getDetails();
+        todoIndex.put(nextTodoId, slot);
+        liveTodos++;
+
+        for (Task task : todo.getTasks())
+            storeTask(slot, task);
+
+        return view(slot);
+    }
+
+    @Override
+    public synchronized Optional<Todo> find(Long todoId) {
+        if (todoId == null)
+            return Optional.empty();
+        int slot = todoIndex.get(todoId);
+        return slot == LongIntHashMap.MISSING ? Optional.empty() : Optional.of(view(slot));
+    }
+
+    @Override
+    public synchronized Optional<Long> findTodoIdOfTask(Long taskId) {
+        int member = taskId == null ? LongIntHashMap.MISSING : taskIndex.get(taskId);
+        return member == LongIntHashMap.MISSING ? Optional.empty() : Optional.of(todoIds[taskOwners[member]]);
+    }
+
+    @Override
+    public synchronized List<Todo> findAll(int page, int size) {
+        long offset = (long) page * size;
+        if (offset >= liveTodos)
+            return Collections.emptyList();
+
+        List<Todo> result = new ArrayList<>(Math.min(size, liveTodos));
+        long skipped = 0;
+        for (int slot = 0; slot < todoSlots && result.size() < size; slot++) {
+            if (todoIds[slot] == 0)
+                continue;
+            if (skipped < offset)
+                skipped++;
+            else
+                result.add(view(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Slots and ids are handed out together and neither is reused, so the todo with id n is always in slot n - 1 and
+     * the page can start right after afterId's slot.
+     */
+    @Override
+    public synchronized List<Todo> findAllAfter(long afterId, int size) {
+        List<Todo> result = new ArrayList<>(Math.min(size, liveTodos));
+        for (long slot = Math.max(afterId, 0); slot < todoSlots && result.size() < size; slot++) {
+            if (todoIds[(int) slot] != 0)
+                result.add(view((int) slot));
+        }
+        return result;
+    }
+
+    /**
+     * Reads down the authors column from afterId's slot. There is no index by author: it would cost a map entry per
+     * todo, which is what this repository is meant to avoid.
+     */
+    @Override
+    public synchronized List<Todo> findByAuthorAfter(String author, long afterId, int size) {
+        List<Todo> result = new ArrayList<>(Math.min(size, liveTodos));
+        for (long slot = Math.max(afterId, 0); slot < todoSlots && result.size() < size; slot++) {
+            if (todoIds[(int) slot] != 0 && Objects.equals(author, authors[(int) slot]))
+                result.add(view((int) slot));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Todo addTask(Long todoId, Task task) {
+        int slot = todoIndex.get(idOf(todoId));
+        if (slot == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        Todo todo = view(slot);
+        storeTask(slot, task);
+        task.setTodo(todo);
+        return todo;
+    }
+
+    @Override
+    public synchronized Todo addTasks(Long todoId, List<Task> tasks) {
+        int slot = todoIndex.get(idOf(todoId));
+        if (slot == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        Todo todo = view(slot);
+        for (Task task : tasks) {
+            storeTask(slot, task);
+            task.setTodo(todo);
+        }
+        return todo;
+    }
+
+    /**
+     * Completed flags are a column of their own, so this only writes a byte per task and never touches the todos.
+     */
+    @Override
+    public synchronized void completeTasks(Collection<Long> ids) {
+        for (int member : membersOf(ids))
+            taskCompleted[member] = COMPLETED_TRUE;
+    }
+
+    @Override
+    public synchronized void delete(Long id) {
+        int slot = todoIndex.remove(idOf(id));
+        if (slot == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        for (int member = chains.first(slot); member != SlotChains.NONE; member = chains.next(member)) {
+            taskIndex.remove(taskIds[member]);
+            freeTask(member);
+        }
+        chains.clear(slot);
+
+        todoIds[slot] = 0;
+        authors[slot] = null;
+        todoDetails[slot] = null;
+        liveTodos--;
+    }
+
+    @Override
+    public synchronized void deleteTask(Long id) {
+        int member = taskIndex.remove(idOf(id));
+        if (member == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        chains.unlink(taskOwners[member], member);
+        freeTask(member);
+    }
+
+    @Override
+    public synchronized void deleteTasks(Collection<Long> ids) {
+        for (int member : membersOf(ids)) {
+            taskIndex.remove(taskIds[member]);
+            chains.unlink(taskOwners[member], member);
+            freeTask(member);
+        }
+    }
+
+    /**
+     * The indexes are keyed by primitive longs, so a null id is turned away here, as missing like any other.
+     */
+    private static long idOf(Long id) {
+        if (id == null)
+            throw new NoSuchElementException();
+        return id;
+    }
+
+    /**
+     * The slots of the tasks, each one once. Throws NoSuchElementException if any of the tasks doesn't exist.
+     */
+    private int[] membersOf(Collection<Long> ids) {
+        Set<Long> distinct = new HashSet<>(ids);
+        int[] members = new int[distinct.size()];
+        int count = 0;
+        for (Long id : distinct) {
+            int member = id == null ? LongIntHashMap.MISSING : taskIndex.get(id);
+            if (member == LongIntHashMap.MISSING)
+                throw new NoSuchElementException();
+            members[count++] = member;
+        }
+        return members;
+    }
+
+    public synchronized void clear() {
+        nextTodoId = 0;
+        nextTaskId = 0;
+        liveTodos = 0;
+        todoSlots = 0;
+        taskSlots = 0;
+        freeTaskCount = 0;
+        Arrays.fill(authors, null);
+        Arrays.fill(todoDetails, null);
+        Arrays.fill(taskDetails, null);
+        todoIndex.clear();
+        taskIndex.clear();
+        chains.clearAll();
+    }
+
+    private void storeTask(int todoSlot, Task task) {
+        int member;
+        if (freeTaskCount > 0) {
+            member = freeTaskSlots[--freeTaskCount];
+        } else {
+            if (taskSlots == taskIds.length) {
+                int capacity = taskSlots * 2;
+                taskIds = Arrays.copyOf(taskIds, capacity);
+                taskOwners = Arrays.copyOf(taskOwners, capacity);
+                taskCompleted = Arrays.copyOf(taskCompleted, capacity);
+                taskDetails = Arrays.copyOf(taskDetails, capacity);
+            }
+            member = taskSlots++;
+        }
+
+        nextTaskId++;
+        task.setId(nextTaskId);
+        taskIds[member] = nextTaskId;
+        taskOwners[member] = todoSlot;
+        taskCompleted[member] = task.getCompleted() == null ? COMPLETED_NULL
+                : task.getCompleted() ? COMPLETED_TRUE : COMPLETED_FALSE;
+        taskDetails[member] = task.getDetails();
+        taskIndex.put(nextTaskId, member);
+        chains.append(todoSlot, member);
+    }
+
+    private void freeTask(int member) {
+        taskIds[member] = 0;
+        taskDetails[member] = null;
+        if (freeTaskCount == freeTaskSlots.length)
+            freeTaskSlots = Arrays.copyOf(freeTaskSlots, freeTaskCount * 2);
+        freeTaskSlots[freeTaskCount++] = member;
+    }
+
+    private Todo view(int slot) {
+        Todo todo = new Todo();
+        todo.setId(todoIds[slot]);
+        todo.setAuthor(authors[slot]);
+        todo.setDetails(todoDetails[slot]);
+        todo.setTasks(new ChainedTaskList(this, chains, slot, member -> taskView(member, todo)));
+        return todo;
+    }
+
+    private Task taskView(int member, Todo todo) {
+        Task task = new Task(todo);
+        task.setId(taskIds[member]);
+        task.setDetails(taskDetails[member]);
+        switch (taskCompleted[member]) {
+            case COMPLETED_TRUE:
+                task.setCompleted(true);
+                break;
+            case COMPLETED_FALSE:
+                task.setCompleted(false);
+                break;
+            default:
+                task.setCompleted(null);
+        }
+        return task;
+    }
+
+}
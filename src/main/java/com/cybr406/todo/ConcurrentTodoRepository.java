@@ -0,0 +1,291 @@
+package com.cybr406.todo;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A threadsafe alternative to InMemoryTodoRepository, meant to sit behind a servlet container's request thread pool.
+ *
+ * Ids come from AtomicLongs, so two requests can never be handed the same id. Todos live in a ConcurrentSkipListMap
+ * keyed by id, which gives lock-free lookups and keeps the todos sorted for paging. Every task id is also indexed to
+ * the todo that owns it, so deleteTask never has to search.
+ *
+ * Changes to a todo's task list are guarded by one of a fixed number of lock stripes chosen from the todo id. Writers
+ * touching different todos rarely contend, and each task list is a CopyOnWriteArrayList so readers (Jackson, for
+ * example) can iterate it without taking any lock at all.
+ *
+ * Enable it with todo.repository=concurrent in application.properties.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.repository", havingValue = "concurrent")
+public class ConcurrentTodoRepository implements TodoRepository {
+
+    private static final int STRIPES = 64;
+
+    private final Object[] stripes = new Object[STRIPES];
+
+    private final AtomicLong nextTodoId = new AtomicLong();
+
+    private final AtomicLong nextTaskId = new AtomicLong();
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final ConcurrentNavigableMap<Long, Todo> todos = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentMap<Long, Todo> taskOwners = new ConcurrentHashMap<>();
+
+    /**
+     * The todos of each author, sorted by id. An author's map is created and dropped inside compute, so a todo being
+     * added can't land in a map that is being removed. Todos without an author aren't indexed.
+     */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Long, Todo>> todosByAuthor = new ConcurrentHashMap<>();
+
+    public ConcurrentTodoRepository() {
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Object();
+    }
+
+    /**
+     * Throws NoSuchElementException for a null id, like for any other todo that doesn't exist.
+     */
+    private Object stripe(Long todoId) {
+        if (todoId == null)
+            throw new NoSuchElementException();
+        return stripes[stripeIndex(todoId)];
+    }
+
+    private static int stripeIndex(long todoId) {
+        return (int) (todoId ^ (todoId >>> 32)) & (STRIPES - 1);
+    }
+
+    /**
+     * Runs action while holding the stripes of every one of the todos. The stripes are taken in index order, so two
+     * callers can't each be holding a stripe the other is waiting for.
+     */
+    private void withStripes(Collection<Todo> todos, Runnable action) {
+        int[] indexes = todos.stream().mapToInt(todo -> stripeIndex(todo.getId())).distinct().sorted().toArray();
+        withStripes(indexes, 0, action);
+    }
+
+    private void withStripes(int[] indexes, int next, Runnable action) {
+        if (next == indexes.length) {
+            action.run();
+            return;
+        }
+        synchronized (stripes[indexes[next]]) {
+            withStripes(indexes, next + 1, action);
+        }
+    }
+
+    @Override
+    public long count() {
+        return count.get();
+    }
+
+    @Override
+    public Todo create(Todo todo) {
+        todo.setTasks(new CopyOnWriteArrayList<>(todo.getTasks()));
+        todo.setId(nextTodoId.incrementAndGet());
+        todos.put(todo.getId(), todo);
+        if (todo.getAuthor() != null) {
+            todosByAuthor.compute(todo.getAuthor(), (author, byAuthor) -> {
+                if (byAuthor == null)
+                    byAuthor = new ConcurrentSkipListMap<>();
+                byAuthor.put(todo.getId(), todo);
+                return byAuthor;
+            });
+        }
+        count.incrementAndGet();
+        return todo;
+    }
+
+    @Override
+    public Optional<Todo> find(Long todoId) {
+        if (todoId == null)
+            return Optional.empty();
+        return Optional.ofNullable(todos.get(todoId));
+    }
+
+    @Override
+    public Optional<Long> findTodoIdOfTask(Long taskId) {
+        Todo todo = taskId == null ? null : taskOwners.get(taskId);
+        return todo == null ? Optional.empty() : Optional.of(todo.getId());
+    }
+
+    @Override
+    public List<Todo> findAll(int page, int size) {
+        long offset = (long) page * size;
+        List<Todo> result = new ArrayList<>(size);
+        Iterator<Todo> iterator = todos.values().iterator();
+
+        for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++)
+            iterator.next();
+
+        while (result.size() < size && iterator.hasNext())
+            result.add(iterator.next());
+
+        return result;
+    }
+
+    @Override
+    public List<Todo> findAllAfter(long afterId, int size) {
+        List<Todo> result = new ArrayList<>(Math.min(size, 1024));
+        Iterator<Todo> iterator = todos.tailMap(afterId, false).values().iterator();
+        while (result.size() < size && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+
+    @Override
+    public List<Todo> findByAuthorAfter(String author, long afterId, int size) {
+        ConcurrentNavigableMap<Long, Todo> byAuthor = author == null ? null : todosByAuthor.get(author);
+        if (byAuthor == null)
+            return Collections.emptyList();
+
+        List<Todo> result = new ArrayList<>(Math.min(size, 1024));
+        Iterator<Todo> iterator = byAuthor.tailMap(afterId, false).values().iterator();
+        while (result.size() < size && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+
+    @Override
+    public Todo addTask(Long todoId, Task task) {
+        synchronized (stripe(todoId)) {
+            Todo todo = find(todoId)
+                    .orElseThrow(NoSuchElementException::new);
+            task.setTodo(todo);
+            task.setId(nextTaskId.incrementAndGet());
+            taskOwners.put(task.getId(), todo);
+            todo.getTasks().add(task);
+            return todo;
+        }
+    }
+
+    /**
+     * Adds the tasks with one addAll, so the todo's CopyOnWriteArrayList is copied once rather than once per task.
+     */
+    @Override
+    public Todo addTasks(Long todoId, List<Task> tasks) {
+        synchronized (stripe(todoId)) {
+            Todo todo = find(todoId)
+                    .orElseThrow(NoSuchElementException::new);
+            for (Task task : tasks) {
+                task.setTodo(todo);
+                task.setId(nextTaskId.incrementAndGet());
+                taskOwners.put(task.getId(), todo);
+            }
+            todo.getTasks().addAll(tasks);
+            return todo;
+        }
+    }
+
+    @Override
+    public void completeTasks(Collection<Long> taskIds) {
+        Map<Todo, Set<Long>> owners = ownersOf(taskIds);
+        withStripes(owners.keySet(), () -> {
+            checkOwners(owners);
+            owners.forEach((todo, ids) -> {
+                for (Task task : todo.getTasks()) {
+                    if (ids.contains(task.getId()))
+                        task.setCompleted(true);
+                }
+            });
+        });
+    }
+
+    @Override
+    public void delete(Long id) {
+        synchronized (stripe(id)) {
+            Todo todo = todos.remove(id);
+            if (todo == null)
+                throw new NoSuchElementException();
+            count.decrementAndGet();
+            if (todo.getAuthor() != null) {
+                todosByAuthor.computeIfPresent(todo.getAuthor(), (author, byAuthor) -> {
+                    byAuthor.remove(id);
+                    return byAuthor.isEmpty() ? null : byAuthor;
+                });
+            }
+            for (Task task : todo.getTasks())
+                taskOwners.remove(task.getId());
+        }
+    }
+
+    @Override
+    public void deleteTask(Long id) {
+        Todo owner = id == null ? null : taskOwners.get(id);
+        if (owner == null)
+            throw new NoSuchElementException();
+
+        synchronized (stripe(owner.getId())) {
+            // The todo may have been deleted while we were waiting for its stripe.
+            if (taskOwners.remove(id) == null)
+                throw new NoSuchElementException();
+            owner.getTasks().removeIf(task -> Objects.equals(id, task.getId()));
+        }
+    }
+
+    /**
+     * Removes each todo's tasks with one removeIf, so its CopyOnWriteArrayList is copied once.
+     */
+    @Override
+    public void deleteTasks(Collection<Long> taskIds) {
+        Map<Todo, Set<Long>> owners = ownersOf(taskIds);
+        withStripes(owners.keySet(), () -> {
+            checkOwners(owners);
+            owners.forEach((todo, ids) -> {
+                taskOwners.keySet().removeAll(ids);
+                todo.getTasks().removeIf(task -> ids.contains(task.getId()));
+            });
+        });
+    }
+
+    /**
+     * Groups the task ids by the todo that owns them. Throws NoSuchElementException if any of the tasks doesn't exist.
+     */
+    private Map<Todo, Set<Long>> ownersOf(Collection<Long> taskIds) {
+        Map<Todo, Set<Long>> owners = new IdentityHashMap<>();
+        for (Long id : taskIds) {
+            Todo todo = id == null ? null : taskOwners.get(id);
+            if (todo == null)
+                throw new NoSuchElementException();
+            owners.computeIfAbsent(todo, t -> new HashSet<>()).add(id);
+        }
+        return owners;
+    }
+
+    /**
+     * Makes sure none of the tasks were deleted, along with their todo or on their own, while ownersOf's caller was
+     * waiting for the stripes. Must hold the stripes of all the owners.
+     */
+    private void checkOwners(Map<Todo, Set<Long>> owners) {
+        owners.forEach((todo, ids) -> {
+            for (Long id : ids) {
+                if (taskOwners.get(id) != todo)
+                    throw new NoSuchElementException();
+            }
+        });
+    }
+
+    /**
+     * Wipes everything and resets the id counters. Only meant for tests, don't call it while other threads are writing.
+     */
+    public void clear() {
+        todos.clear();
+        taskOwners.clear();
+        todosByAuthor.clear();
+        count.set(0);
+        nextTodoId.set(0);
+        nextTaskId.set(0);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.cybr406.todo;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+
+/**
+ * Answers requests that couldn't get a database connection in time with 503 Service Unavailable and Retry-After, the
+ * same as requests the async executor has no room for (see ServiceUnavailableResolver), instead of 500.
+ *
+ * How long a request waits for a connection is spring.datasource.hikari.connection-timeout, 30 seconds unless the
+ * pool profile is active (see application-pool.properties).
+ */
+@Configuration
+public class ConnectionPoolConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
+        resolvers.add(0, new ServiceUnavailableResolver(ConnectionPoolConfiguration::isConnectionTimeout));
+    }
+
+    /**
+     * Hikari's timeout arrives wrapped by Hibernate and Spring, in an exception that depends on who asked for the
+     * connection.
+     */
+    private static boolean isConnectionTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof SQLTransientConnectionException)
+                return true;
+        return false;
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.cybr406.todo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the state of each database connection pool: its connections in use (active), idle and in total, the requests
+ * waiting for one (pending), how many of those gave up (timeouts), and how long requests waited for a connection
+ * (acquire) and then held it (usage). Everything comes from the hikaricp metrics, which /actuator/prometheus also
+ * publishes; this is the same at a glance, without a Prometheus server. Hikari refreshes the counts at most once a
+ * second, so they may be up to a second old.
+ *
+ * Pending above zero means the pool is saturated right now. The acquire histogram shows how long that has been costing
+ * requests, and a growing usage tail points at whatever holds connections too long.
+ */
+@RestController
+public class ConnectionPoolController {
+
+    private static final String PREFIX = "hikaricp.connections";
+
+    private final MeterRegistry registry;
+
+    public ConnectionPoolController(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @GetMapping("/pool/statistics")
+    public Map<String, Object> statistics() {
+        TreeSet<String> pools = new TreeSet<>();
+        for (Gauge gauge : registry.find(PREFIX).gauges())
+            pools.add(gauge.getId().getTag("pool"));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String pool : pools) {
+            Map<String, Object> statistics = new LinkedHashMap<>();
+            statistics.put("active", gauge(pool, PREFIX + ".active"));
+            statistics.put("idle", gauge(pool, PREFIX + ".idle"));
+            statistics.put("total", gauge(pool, PREFIX));
+            statistics.put("max", gauge(pool, PREFIX + ".max"));
+            statistics.put("pending", gauge(pool, PREFIX + ".pending"));
+            Counter timeouts = registry.find(PREFIX + ".timeout").tag("pool", pool).counter();
+            statistics.put("timeouts", timeouts == null ? 0 : (long) timeouts.count());
+            statistics.put("acquire", timings(registry.find(PREFIX + ".acquire").tag("pool", pool).timer()));
+            statistics.put("usage", timings(registry.find(PREFIX + ".usage").tag("pool", pool).timer()));
+            result.put(pool, statistics);
+        }
+        return result;
+    }
+
+    private long gauge(String pool, String name) {
+        Gauge gauge = registry.find(name).tag("pool", pool).gauge();
+        return gauge == null ? 0 : (long) gauge.value();
+    }
+
+    /**
+     * The count, mean and recent maximum in milliseconds, and a histogram of how many took at most each number of
+     * milliseconds. The histogram only has the buckets some of them fell in, out of the many Prometheus is sent.
+     */
+    private static Map<String, Object> timings(Timer timer) {
+        Map<String, Object> timings = new LinkedHashMap<>();
+        if (timer == null)
+            return timings;
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        timings.put("count", snapshot.count());
+        timings.put("meanMillis", snapshot.mean(TimeUnit.MILLISECONDS));
+        timings.put("maxMillis", snapshot.max(TimeUnit.MILLISECONDS));
+
+        Map<String, Double> histogram = new LinkedHashMap<>();
+        double previous = 0;
+        for (CountAtBucket bucket : snapshot.histogramCounts()) {
+            if (bucket.count() > previous)
+                histogram.put("le " + bucket.bucket(TimeUnit.MILLISECONDS), bucket.count());
+            previous = bucket.count();
+        }
+        timings.put("histogram", histogram);
+        return timings;
+    }
+
+}
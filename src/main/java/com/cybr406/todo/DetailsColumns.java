@@ -0,0 +1,43 @@
+package com.cybr406.todo;
+
+/**
+ * How the details of todos and tasks are split over two columns (see the details-varchar changeset). DETAILS is a
+ * VARCHAR holding up to INLINE_LENGTH characters, which is all of almost every todo. Details longer than that are cut
+ * short in DETAILS and also stored whole in DETAILS_OVERFLOW, a CLOB that is null for every other row.
+ *
+ * So short details are read and written without touching a LOB, DETAILS can be indexed, compared and sorted on, and
+ * long details still round trip. Code that reads or writes the columns with plain SQL goes through these methods so it
+ * splits and joins them the same way the entities do.
+ */
+final class DetailsColumns {
+
+    static final int INLINE_LENGTH = 1024;
+
+    private DetailsColumns() {
+    }
+
+    /**
+     * What goes in DETAILS: the details, cut to INLINE_LENGTH characters without splitting a surrogate pair.
+     */
+    static String inline(String details) {
+        if (details == null || details.length() <= INLINE_LENGTH)
+            return details;
+        int end = Character.isHighSurrogate(details.charAt(INLINE_LENGTH - 1)) ? INLINE_LENGTH - 1 : INLINE_LENGTH;
+        return details.substring(0, end);
+    }
+
+    /**
+     * What goes in DETAILS_OVERFLOW: the whole details if they don't fit in DETAILS, otherwise null.
+     */
+    static String overflow(String details) {
+        return details == null || details.length() <= INLINE_LENGTH ? null : details;
+    }
+
+    /**
+     * Puts the details back together from the two columns.
+     */
+    static String join(String inline, String overflow) {
+        return overflow != null ? overflow : inline;
+    }
+
+}
@@ -0,0 +1,540 @@
+package com.cybr406.todo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An InMemoryTodoRepository that survives restarts. Reads are served straight from memory. Every change is checked,
+ * written to a TodoWriteAheadLog and only then applied to memory, so a write the log refuses leaves nothing behind that
+ * a restart wouldn't see. How long a write waits for the disk depends on the Durability mode.
+ *
+ * Every todo.wal.snapshot-every log records the log is rolled over to a new file, and a background thread loads the
+ * previous snapshot, replays the log files written since, saves the result as a new snapshot and deletes the files it
+ * covers. It never looks at the live todos, so writers only wait for the roll. On startup the newest snapshot is loaded
+ * and only the log written after it is replayed.
+ *
+ * Every method is synchronized, except for the wait on the disk, so writers can share a group commit.
+ *
+ * Enable it with todo.repository=durable. The other settings are todo.wal.directory, todo.wal.durability (SYNC,
+ * GROUP_COMMIT or ASYNC), todo.wal.group-commit-interval in milliseconds and todo.wal.snapshot-every.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.repository", havingValue = "durable")
+public class DurableTodoRepository implements TodoRepository, Closeable {
+
+    /**
+     * How hard the write ahead log works to get records onto the disk before a write returns.
+     */
+    public enum Durability {
+        /**
+         * Every record is fsync'd before the write returns. Nothing acknowledged is ever lost, but every write pays
+         * for a full disk flush.
+         */
+        SYNC,
+        /**
+         * Writers wait, but a background thread fsyncs once per group commit interval for everybody who is waiting.
+         * Nothing acknowledged is lost, and concurrent writers share the cost of each flush.
+         */
+        GROUP_COMMIT,
+        /**
+         * Writes return immediately and a background thread fsyncs once per group commit interval. A crash can lose
+         * the last interval's worth of acknowledged writes.
+         */
+        ASYNC
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(DurableTodoRepository.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x544F444F;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Path directory;
+
+    private final long snapshotEvery;
+
+    private final InMemoryTodoRepository todos = new InMemoryTodoRepository();
+
+    private final TodoWriteAheadLog wal;
+
+    private final ExecutorService snapshots = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    private long recordsSinceSnapshot = 0;
+
+    @Autowired
+    public DurableTodoRepository(
+            @Value("${todo.wal.directory:data/wal}") String directory,
+            @Value("${todo.wal.durability:GROUP_COMMIT}") Durability durability,
+            @Value("${todo.wal.group-commit-interval:2}") long groupCommitIntervalMillis,
+            @Value("${todo.wal.snapshot-every:100000}") long snapshotEvery) throws IOException {
+        this(Paths.get(directory), durability, groupCommitIntervalMillis, snapshotEvery);
+    }
+
+    public DurableTodoRepository(Path directory, Durability durability, long groupCommitIntervalMillis,
+                                 long snapshotEvery) throws IOException {
+        this.directory = directory;
+        this.snapshotEvery = snapshotEvery;
+        Files.createDirectories(directory);
+
+        long snapshot = loadNewestSnapshot(todos);
+        List<Long> generations = TodoWriteAheadLog.generations(directory);
+        long generation = snapshot > 0 ? snapshot : generations.isEmpty() ? 1 : generations.get(0);
+        long validLength = 0;
+        TodoWriteAheadLog.Replay replay = replayInto(todos);
+
+        for (int i = 0; i < generations.size(); i++) {
+            if (generations.get(i) < generation)
+                continue;
+            Path file = TodoWriteAheadLog.file(directory, generations.get(i));
+            validLength = TodoWriteAheadLog.replay(file, replay);
+            generation = generations.get(i);
+            if (i < generations.size() - 1 && validLength < Files.size(file))
+                throw new IllegalStateException(file + " is corrupt, and it isn't the newest log file.");
+        }
+
+        wal = new TodoWriteAheadLog(directory, generation, validLength, durability, groupCommitIntervalMillis);
+    }
+
+    private static TodoWriteAheadLog.Replay replayInto(InMemoryTodoRepository todos) {
+        return new TodoWriteAheadLog.Replay() {
+            @Override
+            public void create(Todo todo) {
+                todos.restore(todo);
+            }
+
+            @Override
+            public void addTask(long todoId, Task task) {
+                todos.restoreTask(todoId, task);
+            }
+
+            @Override
+            public void delete(long id) {
+                todos.delete(id);
+            }
+
+            @Override
+            public void deleteTask(long id) {
+                todos.deleteTask(id);
+            }
+
+            @Override
+            public void completeTask(long id) {
+                todos.completeTasks(Collections.singleton(id));
+            }
+        };
+    }
+
+    @Override
+    public synchronized long count() {
+        return todos.count();
+    }
+
+    @Override
+    public Todo create(Todo todo) {
+        long position;
+        synchronized (this) {
+            List<Task> tasks = todo.getTasks();
+            todo.setTasks(new ArrayList<>());
+            todo.setId(todos.getNextTodoId() + 1);
+            position = logged(wal::logCreate, todo);
+            todos.restore(todo);
+            for (Task task : tasks)
+                position = addLogged(todo.getId(), task);
+        }
+        awaitDurable(position);
+        return todo;
+    }
+
+    @Override
+    public synchronized Optional<Todo> find(Long todoId) {
+        return todos.find(todoId);
+    }
+
+    @Override
+    public synchronized Optional<Long> findTodoIdOfTask(Long taskId) {
+        return todos.findTodoIdOfTask(taskId);
+    }
+
+    @Override
+    public synchronized List<Todo> findAll(int page, int size) {
+        return todos.findAll(page, size);
+    }
+
+    @Override
+    public synchronized List<Todo> findAllAfter(long afterId, int size) {
+        return todos.findAllAfter(afterId, size);
+    }
+
+    @Override
+    public synchronized List<Todo> findByAuthorAfter(String author, long afterId, int size) {
+        return todos.findByAuthorAfter(author, afterId, size);
+    }
+
+    @Override
+    public Todo addTask(Long todoId, Task task) {
+        long position;
+        Todo todo;
+        synchronized (this) {
+            todo = todos.find(todoId)
+                    .orElseThrow(NoSuchElementException::new);
+            position = addLogged(todo.getId(), task);
+        }
+        awaitDurable(position);
+        return todo;
+    }
+
+    /**
+     * Logs a record per task, but waits for the disk once for all of them.
+     */
+    @Override
+    public Todo addTasks(Long todoId, List<Task> tasks) {
+        long position = 0;
+        Todo todo;
+        synchronized (this) {
+            todo = todos.find(todoId)
+                    .orElseThrow(NoSuchElementException::new);
+            for (Task task : tasks)
+                position = addLogged(todo.getId(), task);
+        }
+        awaitDurable(position);
+        return todo;
+    }
+
+    @Override
+    public void completeTasks(Collection<Long> taskIds) {
+        long position = 0;
+        synchronized (this) {
+            Set<Long> ids = checkTasks(taskIds);
+            List<Long> logged = new ArrayList<>(ids.size());
+            try {
+                for (Long id : ids) {
+                    position = logged(wal::logCompleteTask, id);
+                    logged.add(id);
+                }
+            } finally {
+                // Applies whatever made it into the log, even if a later record didn't.
+                todos.completeTasks(logged);
+            }
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public void delete(Long id) {
+        long position;
+        synchronized (this) {
+            if (!todos.find(id).isPresent())
+                throw new NoSuchElementException();
+            position = logged(wal::logDelete, id);
+            todos.delete(id);
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public void deleteTask(Long id) {
+        long position;
+        synchronized (this) {
+            if (!todos.containsTask(id))
+                throw new NoSuchElementException();
+            position = logged(wal::logDeleteTask, id);
+            todos.deleteTask(id);
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public void deleteTasks(Collection<Long> taskIds) {
+        long position = 0;
+        synchronized (this) {
+            Set<Long> ids = checkTasks(taskIds);
+            List<Long> logged = new ArrayList<>(ids.size());
+            try {
+                for (Long id : ids) {
+                    position = logged(wal::logDeleteTask, id);
+                    logged.add(id);
+                }
+            } finally {
+                todos.deleteTasks(logged);
+            }
+        }
+        awaitDurable(position);
+    }
+
+    /**
+     * Throws NoSuchElementException unless every task exists, before anything is logged. A task listed twice must only
+     * be logged once, or replaying the second record would fail, so the ids come back without duplicates. Must hold the
+     * lock.
+     */
+    private Set<Long> checkTasks(Collection<Long> taskIds) {
+        Set<Long> ids = new LinkedHashSet<>(taskIds);
+        for (Long id : ids) {
+            if (!todos.containsTask(id))
+                throw new NoSuchElementException();
+        }
+        return ids;
+    }
+
+    /**
+     * Logs the task under the next task id, then adds it to the todo. Must hold the lock.
+     */
+    private long addLogged(long todoId, Task task) {
+        task.setId(todos.getNextTaskId() + 1);
+        long position = logged(t -> wal.logAddTask(todoId, t), task);
+        todos.restoreTask(todoId, task);
+        return position;
+    }
+
+    private interface LogWrite<T> {
+        long write(T value) throws IOException;
+    }
+
+    /**
+     * Writes one log record and kicks off a snapshot when enough of them have piled up. The snapshot is built from the
+     * log files alone, so it doesn't matter that this record hasn't been applied yet. Must hold the lock.
+     */
+    private <T> long logged(LogWrite<T> write, T value) {
+        long position;
+        try {
+            position = write.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to the write ahead log.", e);
+        }
+
+        if (++recordsSinceSnapshot >= snapshotEvery && snapshotRunning.compareAndSet(false, true)) {
+            try {
+                long generation = roll();
+                snapshots.execute(() -> {
+                    try {
+                        compact(generation);
+                    } catch (IOException | RuntimeException e) {
+                        log.error("Could not write a todo snapshot.", e);
+                    } finally {
+                        snapshotRunning.set(false);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                snapshotRunning.set(false);
+                log.error("Could not start a todo snapshot.", e);
+            }
+        }
+
+        return position;
+    }
+
+    private void awaitDurable(long position) {
+        try {
+            wal.awaitDurable(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("The write may not have reached the disk.", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot right now and deletes the log files it replaces. It is built on the snapshot thread, after any
+     * snapshot that is already running, since each one starts from the one before.
+     */
+    public void snapshot() throws IOException {
+        Future<?> done;
+        synchronized (this) {
+            long generation = roll();
+            done = snapshots.submit(() -> {
+                compact(generation);
+                return null;
+            });
+        }
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a snapshot.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts a new log file and returns its generation, the first one the next snapshot won't contain. This is all a
+     * snapshot does while holding the lock. Must hold the lock.
+     */
+    private long roll() throws IOException {
+        long generation = wal.roll();
+        recordsSinceSnapshot = 0;
+        return generation;
+    }
+
+    /**
+     * Rebuilds the repository as it was when the given generation was started, from the newest snapshot and the log
+     * files written since, and saves it as a snapshot. Runs without the lock: those log files are closed, so nothing
+     * else touches them. Only the snapshot thread calls this.
+     */
+    private void compact(long generation) throws IOException {
+        InMemoryTodoRepository state = new InMemoryTodoRepository();
+        long from = loadNewestSnapshot(state);
+        TodoWriteAheadLog.Replay replay = replayInto(state);
+
+        for (long logGeneration : TodoWriteAheadLog.generations(directory)) {
+            if (logGeneration < from || logGeneration >= generation)
+                continue;
+            Path file = TodoWriteAheadLog.file(directory, logGeneration);
+            if (TodoWriteAheadLog.replay(file, replay) < Files.size(file))
+                throw new IllegalStateException(file + " is corrupt, and it isn't the newest log file.");
+        }
+
+        write(generation, state);
+    }
+
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve(String.format("snapshot-%08d.dat", generation));
+    }
+
+    private void write(long generation, InMemoryTodoRepository state) throws IOException {
+        Path file = snapshotFile(directory, generation);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        List<Todo> all = state.findAll(0, Integer.MAX_VALUE);
+
+        try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(state.getNextTodoId());
+            out.writeLong(state.getNextTaskId());
+            out.writeInt(all.size());
+            for (Todo todo : all) {
+                out.writeLong(todo.getId());
+                TodoWriteAheadLog.writeString(out, todo.getAuthor());
+                TodoWriteAheadLog.writeString(out, todo.getDetails());
+                out.writeInt(todo.getTasks().size());
+                for (Task task : todo.getTasks()) {
+                    out.writeLong(task.getId());
+                    TodoWriteAheadLog.writeCompleted(out, task.getCompleted());
+                    TodoWriteAheadLog.writeString(out, task.getDetails());
+                }
+            }
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+
+        // Everything older than this snapshot is no longer needed.
+        for (long logGeneration : TodoWriteAheadLog.generations(directory)) {
+            if (logGeneration < generation)
+                Files.deleteIfExists(TodoWriteAheadLog.file(directory, logGeneration));
+        }
+        for (long snapshotGeneration : snapshotGenerations()) {
+            if (snapshotGeneration < generation)
+                Files.deleteIfExists(snapshotFile(directory, snapshotGeneration));
+        }
+    }
+
+    private List<Long> snapshotGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.dat")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                generations.add(Long.parseLong(name.substring(9, name.length() - 4)));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Loads the newest snapshot into todos, if there is one, and returns the first log generation it doesn't cover (or
+     * 0).
+     */
+    private long loadNewestSnapshot(InMemoryTodoRepository todos) throws IOException {
+        List<Long> generations = snapshotGenerations();
+        if (generations.isEmpty())
+            return 0;
+
+        long generation = generations.get(generations.size() - 1);
+        Path file = snapshotFile(directory, generation);
+
+        try (InputStream fileIn = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(fileIn, 64 * 1024), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+                throw new IllegalStateException(file + " is not a todo snapshot.");
+
+            long nextTodoId = in.readLong();
+            long nextTaskId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Todo todo = new Todo();
+                todo.setId(in.readLong());
+                todo.setAuthor(TodoWriteAheadLog.readString(in));
+                todo.setDetails(TodoWriteAheadLog.readString(in));
+                todos.restore(todo);
+
+                int tasks = in.readInt();
+                for (int t = 0; t < tasks; t++) {
+                    Task task = new Task();
+                    task.setId(in.readLong());
+                    task.setCompleted(TodoWriteAheadLog.readCompleted(in));
+                    task.setDetails(TodoWriteAheadLog.readString(in));
+                    todos.restoreTask(todo.getId(), task);
+                }
+            }
+
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected)
+                throw new IllegalStateException(file + " failed its checksum.");
+
+            todos.reserveIds(nextTodoId, nextTaskId);
+        }
+
+        return generation;
+    }
+
+    /**
+     * Waits for a running snapshot, then flushes and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshots.shutdown();
+        try {
+            snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            wal.close();
+        }
+    }
+
+}
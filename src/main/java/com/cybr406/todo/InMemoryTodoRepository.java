@@ -1,5 +1,6 @@
 package com.cybr406.todo;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
@@ -7,23 +8,46 @@ import java.util.*;
 import static java.lang.Integer.min;
 
 /**
- * This implementation of TodoRepository uses Lists to save items in memory. It generates unique id's similar to a
- * database using auto-increment.
+ * This implementation of TodoRepository uses hash maps to save items in memory. It generates unique id's similar to a
+ * database using auto-increment. Todos are indexed by id and by author, and tasks by the todo that owns them, so
+ * everything except paging is a constant time lookup.
  *
  * Since this implementation saves everything in memory, all data added or modified while its running will
  * be lost when it is restarted. This can be quite handy for demos and unit tests.
  *
  * You might notice that this class is not threadsafe. What if two requests increment nextTodoId at the same time?
- * Let's not worry about stuff like that for now for the sake of making this code super simple.
+ * Let's not worry about stuff like that for now for the sake of making this code super simple. When that does matter,
+ * set todo.repository=concurrent and ConcurrentTodoRepository will be used instead.
  */
 @Component
+@ConditionalOnProperty(name = "todo.repository", havingValue = "memory", matchIfMissing = true)
 public class InMemoryTodoRepository implements TodoRepository {
 
     private long nextTodoId = 0;
 
     private long nextTaskId = 0;
 
-    private List<Todo> todos = new ArrayList<>();
+    /**
+     * Todos keyed by id, for find and everything that changes a todo.
+     */
+    private Map<Long, Todo> todos = new HashMap<>();
+
+    /**
+     * The same todos sorted by id, which is what findAll pages through and what findAllAfter seeks in. Only paging
+     * reads it; create and delete keep it up to date.
+     */
+    private NavigableMap<Long, Todo> sortedTodos = new TreeMap<>();
+
+    /**
+     * Maps every task id to the todo that owns it, so deleteTask doesn't have to look through every task of every todo.
+     */
+    private Map<Long, Todo> taskOwners = new HashMap<>();
+
+    /**
+     * A secondary index of the todos of each author, sorted by id, for findByAuthorAfter. Authors never change, so it
+     * only needs updating when a todo is created or deleted.
+     */
+    private Map<String, TreeMap<Long, Todo>> todosByAuthor = new HashMap<>();
 
     @Override
     public long count() {
@@ -32,30 +56,66 @@ public class InMemoryTodoRepository implements TodoRepository {
 
     @Override
     public Todo create(Todo todo) {
-        todos.add(todo);
         nextTodoId++;
         todo.setId(nextTodoId);
+        todos.put(todo.getId(), todo);
+        sortedTodos.put(todo.getId(), todo);
+        indexAuthor(todo);
         return todo;
     }
 
     @Override
     public Optional<Todo> find(Long todoId) {
-        return todos.stream()
-                .filter(todo -> todo.getId().equals(todoId))
-                .findFirst();
+        if (todoId == null)
+            return Optional.empty();
+        return Optional.ofNullable(todos.get(todoId));
+    }
+
+    @Override
+    public Optional<Long> findTodoIdOfTask(Long taskId) {
+        Todo todo = taskId == null ? null : taskOwners.get(taskId);
+        return todo == null ? Optional.empty() : Optional.of(todo.getId());
     }
 
     @Override
     public List<Todo> findAll(int page, int size) {
         int offset = page * size;
 
-        if (todos.isEmpty())
-            return todos;
-
         if (offset >= todos.size())
             return Collections.emptyList();
 
-        return todos.subList(offset, min(offset + size, todos.size()));
+        List<Todo> result = new ArrayList<>(min(size, todos.size() - offset));
+        Iterator<Todo> iterator = sortedTodos.values().iterator();
+        for (int i = 0; i < offset; i++)
+            iterator.next();
+        while (result.size() < size && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+
+    /**
+     * Seeks to afterId in the sorted index instead of walking it from the start, so deleted ids cost nothing.
+     */
+    @Override
+    public List<Todo> findAllAfter(long afterId, int size) {
+        List<Todo> result = new ArrayList<>(min(size, todos.size()));
+        Iterator<Todo> iterator = sortedTodos.tailMap(afterId, false).values().iterator();
+        while (result.size() < size && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
+    }
+
+    @Override
+    public List<Todo> findByAuthorAfter(String author, long afterId, int size) {
+        TreeMap<Long, Todo> byAuthor = todosByAuthor.get(author);
+        if (byAuthor == null)
+            return Collections.emptyList();
+
+        List<Todo> result = new ArrayList<>(min(size, byAuthor.size()));
+        Iterator<Todo> iterator = byAuthor.tailMap(afterId, false).values().iterator();
+        while (result.size() < size && iterator.hasNext())
+            result.add(iterator.next());
+        return result;
     }
 
     @Override
@@ -66,30 +126,137 @@ public class InMemoryTodoRepository implements TodoRepository {
         todo.getTasks().add(task);
         nextTaskId++;
         task.setId(nextTaskId);
+        taskOwners.put(task.getId(), todo);
         return todo;
     }
 
     @Override
-    public void delete(Long id) {
-        Todo todo = find(id)
+    public Todo addTasks(Long todoId, List<Task> tasks) {
+        Todo todo = find(todoId)
                 .orElseThrow(NoSuchElementException::new);
-        todos.remove(todo);
+        for (Task task : tasks) {
+            task.setTodo(todo);
+            nextTaskId++;
+            task.setId(nextTaskId);
+            taskOwners.put(task.getId(), todo);
+        }
+        todo.getTasks().addAll(tasks);
+        return todo;
+    }
+
+    @Override
+    public void completeTasks(Collection<Long> taskIds) {
+        ownersOf(taskIds).forEach((todo, ids) -> {
+            for (Task task : todo.getTasks()) {
+                if (ids.contains(task.getId()))
+                    task.setCompleted(true);
+            }
+        });
+    }
+
+    @Override
+    public void delete(Long id) {
+        Todo todo = id == null ? null : todos.remove(id);
+        if (todo == null)
+            throw new NoSuchElementException();
+        sortedTodos.remove(id);
+        TreeMap<Long, Todo> byAuthor = todosByAuthor.get(todo.getAuthor());
+        byAuthor.remove(id);
+        if (byAuthor.isEmpty())
+            todosByAuthor.remove(todo.getAuthor());
+        for (Task task : todo.getTasks())
+            taskOwners.remove(task.getId());
     }
 
     @Override
     public void deleteTask(Long id) {
-        Task task = todos.stream()
-                .flatMap(t -> t.getTasks().stream())
-                .filter(t -> Objects.equals(id, t.getId()))
-                .findFirst()
+        Todo todo = taskOwners.remove(id);
+        if (todo == null)
+            throw new NoSuchElementException();
+        todo.getTasks().removeIf(t -> Objects.equals(id, t.getId()));
+    }
+
+    @Override
+    public void deleteTasks(Collection<Long> taskIds) {
+        ownersOf(taskIds).forEach((todo, ids) -> {
+            todo.getTasks().removeIf(task -> ids.contains(task.getId()));
+            taskOwners.keySet().removeAll(ids);
+        });
+    }
+
+    /**
+     * Groups the task ids by the todo that owns them, so each todo's task list is only walked once. Throws
+     * NoSuchElementException if any of the tasks doesn't exist.
+     */
+    private Map<Todo, Set<Long>> ownersOf(Collection<Long> taskIds) {
+        // Todo's hashCode covers its tasks, which are about to change.
+        Map<Todo, Set<Long>> owners = new IdentityHashMap<>();
+        for (Long id : taskIds) {
+            Todo todo = taskOwners.get(id);
+            if (todo == null)
+                throw new NoSuchElementException();
+            owners.computeIfAbsent(todo, t -> new HashSet<>()).add(id);
+        }
+        return owners;
+    }
+
+    /**
+     * Puts back a todo that was saved earlier, keeping the id it already has. DurableTodoRepository uses this when it
+     * loads a snapshot or replays its log.
+     */
+    void restore(Todo todo) {
+        todos.put(todo.getId(), todo);
+        sortedTodos.put(todo.getId(), todo);
+        indexAuthor(todo);
+        nextTodoId = Math.max(nextTodoId, todo.getId());
+    }
+
+    /**
+     * Puts back a task that was saved earlier, keeping the id it already has.
+     */
+    void restoreTask(Long todoId, Task task) {
+        Todo todo = find(todoId)
                 .orElseThrow(NoSuchElementException::new);
-        task.getTodo().getTasks().remove(task);
+        task.setTodo(todo);
+        todo.getTasks().add(task);
+        taskOwners.put(task.getId(), todo);
+        nextTaskId = Math.max(nextTaskId, task.getId());
+    }
+
+    /**
+     * Whether a task with this id exists, so DurableTodoRepository can check a change before it logs it.
+     */
+    boolean containsTask(Long id) {
+        return id != null && taskOwners.containsKey(id);
+    }
+
+    long getNextTodoId() {
+        return nextTodoId;
+    }
+
+    long getNextTaskId() {
+        return nextTaskId;
+    }
+
+    /**
+     * Makes sure ids handed out from now on are larger than the given ones, even if those todos and tasks were deleted.
+     */
+    void reserveIds(long todoId, long taskId) {
+        nextTodoId = Math.max(nextTodoId, todoId);
+        nextTaskId = Math.max(nextTaskId, taskId);
     }
 
     public void clear() {
         nextTodoId = 0;
         nextTaskId = 0;
-        todos = new ArrayList<>();
+        todos = new HashMap<>();
+        sortedTodos = new TreeMap<>();
+        taskOwners = new HashMap<>();
+        todosByAuthor = new HashMap<>();
+    }
+
+    private void indexAuthor(Todo todo) {
+        todosByAuthor.computeIfAbsent(todo.getAuthor(), author -> new TreeMap<>()).put(todo.getId(), todo);
     }
 
 }
@@ -0,0 +1,76 @@
+package com.cybr406.todo;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Publishes the changes made to todos and tasks through JPA to the TodoChangeFeed. This is the default source of
+ * changes (todo.changes.source = jpa).
+ *
+ * Hibernate calls this after each transaction that inserted or deleted a todo or task has committed, and not at all if
+ * it rolled back, so subscribers never hear about a change they then can't find. Tasks deleted by the database along
+ * with their todo aren't reported on their own: the todo's DELETED event covers them.
+ *
+ * Rows TodoBulkWriter inserts with plain JDBC never reach Hibernate, so it reports them through todosInserted once
+ * they are committed. The same goes for the single-statement deletes of TodoDeleter.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.changes.source", havingValue = "jpa", matchIfMissing = true)
+public class JpaTodoChanges implements TodoPostCommitListener, TodoBulkWriter.Listener, TodoDeleter.Listener {
+
+    private final TodoChangeFeed feed;
+
+    public JpaTodoChanges(TodoChangeFeed feed, EntityManagerFactory entityManagerFactory) {
+        this.feed = feed;
+        TodoPostCommitListener.register(entityManagerFactory, this);
+    }
+
+    /**
+     * Each todo's CREATED event covers the tasks it was created with.
+     */
+    @Override
+    public void todosInserted(List<Long> ids) {
+        for (Long id : ids)
+            feed.publish(TodoChangeEvent.Type.CREATED, id, null);
+    }
+
+    @Override
+    public void todoDeleted(long id) {
+        feed.publish(TodoChangeEvent.Type.DELETED, id, null);
+    }
+
+    @Override
+    public void taskDeleted(Long todoId, long taskId) {
+        feed.publish(TodoChangeEvent.Type.TASK_DELETED, todoId, taskId);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Todo) {
+            feed.publish(TodoChangeEvent.Type.CREATED, (Long) event.getId(), null);
+        } else if (event.getEntity() instanceof Task) {
+            Task task = (Task) event.getEntity();
+            feed.publish(TodoChangeEvent.Type.TASK_ADDED, todoIdOf(task), task.getId());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Todo) {
+            feed.publish(TodoChangeEvent.Type.DELETED, (Long) event.getId(), null);
+        } else if (event.getEntity() instanceof Task) {
+            Task task = (Task) event.getEntity();
+            feed.publish(TodoChangeEvent.Type.TASK_DELETED, todoIdOf(task), (Long) event.getId());
+        }
+    }
+
+    private static Long todoIdOf(Task task) {
+        return task.getTodo() == null ? null : task.getTodo().getId();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.cybr406.todo;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to non-negative int values that doesn't box either one. It uses open addressing with
+ * linear probing, so the whole map is two arrays and adding an entry never allocates unless the map has to grow.
+ *
+ * Not threadsafe, callers are expected to do their own locking.
+ */
+final class LongIntHashMap {
+
+    static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    private int resizeAt;
+
+    LongIntHashMap() {
+        this(16);
+    }
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != MISSING) {
+            if (keys[i] == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return ~i;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value stored for key, or MISSING if there isn't one.
+     */
+    int get(long key) {
+        int i = indexOf(key);
+        return i < 0 ? MISSING : values[i];
+    }
+
+    void put(long key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Values must not be negative.");
+
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+
+        i = ~i;
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt)
+            grow();
+    }
+
+    /**
+     * Removes key and returns the value it had, or MISSING if it wasn't there.
+     */
+    int remove(long key) {
+        int i = indexOf(key);
+        if (i < 0)
+            return MISSING;
+
+        int removed = values[i];
+        int mask = keys.length - 1;
+
+        // Shift later entries of the same probe run back into the hole so lookups never stop early.
+        int hole = i;
+        for (int j = (i + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        values[hole] = MISSING;
+        size--;
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING)
+                put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+}
@@ -0,0 +1,610 @@
+package com.cybr406.todo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * A TodoRepository that keeps todos and tasks off the Java heap, in memory-mapped segment files. The files are the
+ * store: nothing needs to be loaded or saved, and after a restart the repository only has to scan the record headers
+ * to rebuild its small id indexes.
+ *
+ * Every record starts with the same 32 byte header, followed by the UTF-8 text of the record:
+ *
+ * <pre>
+ *  0  byte  type           0 = no more records in this segment, 1 = todo, 2 = task
+ *  1  byte  state          0 = live, 1 = deleted
+ *  2  byte  completed      tasks only: 0 = null, 1 = false, 2 = true
+ *  3  byte  unused
+ *  4  int   length         header plus text, rounded up to a multiple of 8
+ *  8  long  id
+ * 16  long  todo id        tasks only, the todo the task belongs to
+ * 24  int   author length  todos only, -1 when null
+ * 28  int   details length -1 when null
+ * </pre>
+ *
+ * Records are only ever appended. The type byte is written last, so a record cut off by a crash is never seen on the
+ * next start, and an end of segment marker is written after every record, so nor is anything a cut off record left
+ * behind once a shorter one is written over it. Deleting only flips the state byte, the space isn't reclaimed.
+ *
+ * The id to record indexes and the lists of which tasks belong to which todo are on the heap, as primitive arrays.
+ * Todo and Task objects are built on demand, the same way ColumnarTodoRepository does it. Every method is synchronized.
+ *
+ * Enable it with todo.repository=mapped. The files go in todo.mapped.directory, each one todo.mapped.segment-size
+ * bytes long. todo.mapped.fsync decides whether every write is forced to disk before returning (ALWAYS) or left for
+ * the operating system to write back, with a final flush when the repository is closed (NEVER).
+ */
+@Component
+@ConditionalOnProperty(name = "todo.repository", havingValue = "mapped")
+public class MappedTodoRepository implements TodoRepository, Closeable {
+
+    public enum FsyncPolicy {
+        ALWAYS,
+        NEVER
+    }
+
+    static final int HEADER_SIZE = 32;
+
+    private static final byte TYPE_END = 0;
+
+    private static final byte TYPE_TODO = 1;
+
+    private static final byte TYPE_TASK = 2;
+
+    private static final byte STATE_DELETED = 1;
+
+    private static final byte COMPLETED_NULL = 0;
+
+    private static final byte COMPLETED_FALSE = 1;
+
+    private static final byte COMPLETED_TRUE = 2;
+
+    private static final long NO_ADDRESS = -1;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final FsyncPolicy fsync;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private int writeSegment = -1;
+
+    private int writeOffset = 0;
+
+    private long nextTodoId = 0;
+
+    private long nextTaskId = 0;
+
+    private int liveTodos = 0;
+
+    // Todo slots stay in id order and are never reused. A deleted todo's address is NO_ADDRESS.
+
+    private int todoSlots = 0;
+
+    private long[] todoAddresses = new long[16];
+
+    // The id of the todo in each slot, kept after it is deleted so the slots can be binary searched by id.
+    private long[] todoSlotIds = new long[16];
+
+    private final LongIntHashMap todoIndex = new LongIntHashMap();
+
+    private int taskSlots = 0;
+
+    private long[] taskAddresses = new long[16];
+
+    private int[] taskOwners = new int[16];
+
+    private int[] freeTaskSlots = new int[16];
+
+    private int freeTaskCount = 0;
+
+    private final LongIntHashMap taskIndex = new LongIntHashMap();
+
+    private final SlotChains chains = new SlotChains();
+
+    @Autowired
+    public MappedTodoRepository(
+            @Value("${todo.mapped.directory:data/todos}") String directory,
+            @Value("${todo.mapped.segment-size:67108864}") int segmentSize,
+            @Value("${todo.mapped.fsync:NEVER}") FsyncPolicy fsync) {
+        this(Paths.get(directory), segmentSize, fsync);
+    }
+
+    public MappedTodoRepository(Path directory, int segmentSize, FsyncPolicy fsync) {
+        if (segmentSize < HEADER_SIZE * 4)
+            throw new IllegalArgumentException("Segments must be at least " + HEADER_SIZE * 4 + " bytes.");
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+
+        try {
+            Files.createDirectories(directory);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open todo segments in " + directory, e);
+        }
+    }
+
+    private void open() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+
+        for (Path file : files) {
+            if (!file.getFileName().toString().equals(segmentName(segments.size())))
+                throw new IOException("Segment " + file + " is out of sequence.");
+            segments.add(map(file, Files.size(file)));
+            writeSegment = segments.size() - 1;
+            writeOffset = recover(writeSegment);
+        }
+    }
+
+    private static String segmentName(int index) {
+        return String.format("segment-%05d.dat", index);
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            if (raf.length() < size)
+                raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long address(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private ByteBuffer bufferAt(long address) {
+        ByteBuffer buffer = segments.get((int) (address >>> 32)).duplicate();
+        buffer.position((int) address);
+        return buffer.slice();
+    }
+
+    /**
+     * Rebuilds the indexes from the records of one segment and returns the offset just past its last record.
+     */
+    private int recover(int segment) {
+        ByteBuffer buffer = segments.get(segment);
+        int offset = 0;
+
+        while (offset + HEADER_SIZE <= buffer.capacity() && buffer.get(offset) != TYPE_END) {
+            byte type = buffer.get(offset);
+            int length = buffer.getInt(offset + 4);
+            if (length < HEADER_SIZE || offset + length > buffer.capacity())
+                throw new IllegalStateException("Corrupt record at offset " + offset + " of " + segmentName(segment));
+
+            long id = buffer.getLong(offset + 8);
+            long address = address(segment, offset);
+
+            if (type == TYPE_TODO) {
+                nextTodoId = Math.max(nextTodoId, id);
+                if (buffer.get(offset + 1) != STATE_DELETED)
+                    indexTodo(id, address);
+            } else if (type == TYPE_TASK) {
+                nextTaskId = Math.max(nextTaskId, id);
+                if (buffer.get(offset + 1) != STATE_DELETED) {
+                    int owner = todoIndex.get(buffer.getLong(offset + 16));
+                    if (owner != LongIntHashMap.MISSING)
+                        indexTask(owner, id, address);
+                }
+            } else {
+                throw new IllegalStateException("Unknown record type " + type + " in " + segmentName(segment));
+            }
+
+            offset += length;
+        }
+
+        return offset;
+    }
+
+    private int indexTodo(long id, long address) {
+        if (todoSlots == todoAddresses.length) {
+            todoAddresses = Arrays.copyOf(todoAddresses, todoSlots * 2);
+            todoSlotIds = Arrays.copyOf(todoSlotIds, todoSlots * 2);
+        }
+        int slot = todoSlots++;
+        todoAddresses[slot] = address;
+        todoSlotIds[slot] = id;
+        todoIndex.put(id, slot);
+        liveTodos++;
+        return slot;
+    }
+
+    private void indexTask(int owner, long id, long address) {
+        int member;
+        if (freeTaskCount > 0) {
+            member = freeTaskSlots[--freeTaskCount];
+        } else {
+            if (taskSlots == taskAddresses.length) {
+                taskAddresses = Arrays.copyOf(taskAddresses, taskSlots * 2);
+                taskOwners = Arrays.copyOf(taskOwners, taskSlots * 2);
+            }
+            member = taskSlots++;
+        }
+        taskAddresses[member] = address;
+        taskOwners[member] = owner;
+        taskIndex.put(id, member);
+        chains.append(owner, member);
+    }
+
+    private void freeTask(int member) {
+        taskAddresses[member] = NO_ADDRESS;
+        if (freeTaskCount == freeTaskSlots.length)
+            freeTaskSlots = Arrays.copyOf(freeTaskSlots, freeTaskCount * 2);
+        freeTaskSlots[freeTaskCount++] = member;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends a record and returns its address.
+     */
+    private long append(byte type, byte completed, long id, long todoId, byte[] author, byte[] details) {
+        int textLength = (author == null ? 0 : author.length) + (details == null ? 0 : details.length);
+        int length = (HEADER_SIZE + textLength + 7) & ~7;
+        if (length > segmentSize)
+            throw new IllegalArgumentException("A " + length + " byte record doesn't fit in a " + segmentSize + " byte segment.");
+
+        if (writeSegment < 0 || writeOffset + length > segments.get(writeSegment).capacity()) {
+            try {
+                Path file = directory.resolve(segmentName(segments.size()));
+                segments.add(map(file, segmentSize));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create a new todo segment.", e);
+            }
+            writeSegment = segments.size() - 1;
+            writeOffset = 0;
+        }
+
+        MappedByteBuffer segment = segments.get(writeSegment);
+        int offset = writeOffset;
+        ByteBuffer record = bufferAt(address(writeSegment, offset));
+        record.put(1, (byte) 0);
+        record.put(2, completed);
+        record.putInt(4, length);
+        record.putLong(8, id);
+        record.putLong(16, todoId);
+        record.putInt(24, author == null ? -1 : author.length);
+        record.putInt(28, details == null ? -1 : details.length);
+        record.position(HEADER_SIZE);
+        if (author != null)
+            record.put(author);
+        if (details != null)
+            record.put(details);
+
+        // What follows may be what's left of a longer record that a crash cut off before its type was written. Marking
+        // the end right after this record keeps the next start from reading those leftovers as a record.
+        if (offset + length < segment.capacity())
+            segment.put(offset + length, TYPE_END);
+
+        // Publishing the type last means a half written record still looks like the end of the segment.
+        segment.put(offset, type);
+        writeOffset += length;
+        sync(writeSegment);
+
+        return address(writeSegment, offset);
+    }
+
+    private void sync(int segment) {
+        if (fsync == FsyncPolicy.ALWAYS)
+            segments.get(segment).force();
+    }
+
+    private void markDeleted(long address) {
+        int segment = (int) (address >>> 32);
+        segments.get(segment).put((int) address + 1, STATE_DELETED);
+    }
+
+    private void markCompleted(long address) {
+        int segment = (int) (address >>> 32);
+        segments.get(segment).put((int) address + 2, COMPLETED_TRUE);
+    }
+
+    private String readText(ByteBuffer record, int position, int length) {
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        record.position(position);
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized long count() {
+        return liveTodos;
+    }
+
+    @Override
+    public synchronized Todo create(Todo todo) {
+        nextTodoId++;
+        long address = append(TYPE_TODO, COMPLETED_NULL, nextTodoId, 0,
+                encode(todo.getAuthor()), encode(todo.getDetails()));
+        int slot = indexTodo(nextTodoId, address);
+
+        for (Task task : todo.getTasks())
+            storeTask(slot, nextTodoId, task);
+
+        return view(slot);
+    }
+
+    @Override
+    public synchronized Optional<Todo> find(Long todoId) {
+        if (todoId == null)
+            return Optional.empty();
+        int slot = todoIndex.get(todoId);
+        return slot == LongIntHashMap.MISSING ? Optional.empty() : Optional.of(view(slot));
+    }
+
+    @Override
+    public synchronized Optional<Long> findTodoIdOfTask(Long taskId) {
+        int member = taskId == null ? LongIntHashMap.MISSING : taskIndex.get(taskId);
+        return member == LongIntHashMap.MISSING ? Optional.empty() : Optional.of(todoSlotIds[taskOwners[member]]);
+    }
+
+    @Override
+    public synchronized List<Todo> findAll(int page, int size) {
+        long offset = (long) page * size;
+        if (offset >= liveTodos)
+            return Collections.emptyList();
+
+        List<Todo> result = new ArrayList<>(Math.min(size, liveTodos));
+        long skipped = 0;
+        for (int slot = 0; slot < todoSlots && result.size() < size; slot++) {
+            if (todoAddresses[slot] == NO_ADDRESS)
+                continue;
+            if (skipped < offset)
+                skipped++;
+            else
+                result.add(view(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Deleted todos don't get a slot after a restart, so slot numbers don't line up with ids. The slots are still in id
+     * order though, so the page starts at a binary search for afterId and walks the slots from there.
+     */
+    @Override
+    public synchronized List<Todo> findAllAfter(long afterId, int size) {
+        if (afterId >= nextTodoId)
+            return Collections.emptyList();
+
+        List<Todo> result = new ArrayList<>(Math.min(size, liveTodos));
+        for (int slot = firstSlotAfter(afterId); slot < todoSlots && result.size() < size; slot++) {
+            if (todoAddresses[slot] != NO_ADDRESS)
+                result.add(view(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Compares the author's bytes with each record's in place, so only the matching todos are decoded.
+     */
+    @Override
+    public synchronized List<Todo> findByAuthorAfter(String author, long afterId, int size) {
+        if (afterId >= nextTodoId)
+            return Collections.emptyList();
+
+        byte[] encoded = encode(author);
+        List<Todo> result = new ArrayList<>(Math.min(size, liveTodos));
+        for (int slot = firstSlotAfter(afterId); slot < todoSlots && result.size() < size; slot++) {
+            if (todoAddresses[slot] != NO_ADDRESS && authorEquals(bufferAt(todoAddresses[slot]), encoded))
+                result.add(view(slot));
+        }
+        return result;
+    }
+
+    /**
+     * The first slot with an id greater than afterId, or todoSlots if there is none. The todo in it may have been
+     * deleted since.
+     */
+    private int firstSlotAfter(long afterId) {
+        int found = Arrays.binarySearch(todoSlotIds, 0, todoSlots, afterId);
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    private static boolean authorEquals(ByteBuffer record, byte[] author) {
+        int length = record.getInt(24);
+        if (author == null || length < 0)
+            return author == null && length < 0;
+        if (length != author.length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (record.get(HEADER_SIZE + i) != author[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Todo addTask(Long todoId, Task task) {
+        int slot = todoIndex.get(idOf(todoId));
+        if (slot == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        Todo todo = view(slot);
+        storeTask(slot, todoId, task);
+        task.setTodo(todo);
+        return todo;
+    }
+
+    @Override
+    public synchronized Todo addTasks(Long todoId, List<Task> tasks) {
+        int slot = todoIndex.get(idOf(todoId));
+        if (slot == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        Todo todo = view(slot);
+        for (Task task : tasks) {
+            storeTask(slot, todoId, task);
+            task.setTodo(todo);
+        }
+        return todo;
+    }
+
+    /**
+     * Flips the completed byte of each task record in place, then syncs every segment it touched once.
+     */
+    @Override
+    public synchronized void completeTasks(Collection<Long> taskIds) {
+        Set<Integer> touched = new HashSet<>();
+        for (int member : membersOf(taskIds)) {
+            markCompleted(taskAddresses[member]);
+            touched.add((int) (taskAddresses[member] >>> 32));
+        }
+        for (int segment : touched)
+            sync(segment);
+    }
+
+    /**
+     * The indexes are keyed by primitive longs, so a null id is turned away here, as missing like any other.
+     */
+    private static long idOf(Long id) {
+        if (id == null)
+            throw new NoSuchElementException();
+        return id;
+    }
+
+    private void storeTask(int slot, long todoId, Task task) {
+        byte completed = task.getCompleted() == null ? COMPLETED_NULL
+                : task.getCompleted() ? COMPLETED_TRUE : COMPLETED_FALSE;
+        nextTaskId++;
+        long address = append(TYPE_TASK, completed, nextTaskId, todoId, null, encode(task.getDetails()));
+        indexTask(slot, nextTaskId, address);
+        task.setId(nextTaskId);
+    }
+
+    @Override
+    public synchronized void delete(Long id) {
+        int slot = todoIndex.remove(idOf(id));
+        if (slot == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        Set<Integer> touched = new HashSet<>();
+        for (int member = chains.first(slot); member != SlotChains.NONE; member = chains.next(member)) {
+            taskIndex.remove(bufferAt(taskAddresses[member]).getLong(8));
+            markDeleted(taskAddresses[member]);
+            touched.add((int) (taskAddresses[member] >>> 32));
+            freeTask(member);
+        }
+        chains.clear(slot);
+
+        markDeleted(todoAddresses[slot]);
+        touched.add((int) (todoAddresses[slot] >>> 32));
+        todoAddresses[slot] = NO_ADDRESS;
+        liveTodos--;
+
+        for (int segment : touched)
+            sync(segment);
+    }
+
+    @Override
+    public synchronized void deleteTask(Long id) {
+        int member = taskIndex.remove(idOf(id));
+        if (member == LongIntHashMap.MISSING)
+            throw new NoSuchElementException();
+
+        long address = taskAddresses[member];
+        markDeleted(address);
+        chains.unlink(taskOwners[member], member);
+        freeTask(member);
+        sync((int) (address >>> 32));
+    }
+
+    @Override
+    public synchronized void deleteTasks(Collection<Long> taskIds) {
+        Set<Integer> touched = new HashSet<>();
+        for (int member : membersOf(taskIds)) {
+            long address = taskAddresses[member];
+            taskIndex.remove(bufferAt(address).getLong(8));
+            markDeleted(address);
+            touched.add((int) (address >>> 32));
+            chains.unlink(taskOwners[member], member);
+            freeTask(member);
+        }
+        for (int segment : touched)
+            sync(segment);
+    }
+
+    /**
+     * The slots of the tasks, each one once. Throws NoSuchElementException if any of the tasks doesn't exist.
+     */
+    private int[] membersOf(Collection<Long> taskIds) {
+        Set<Long> distinct = new HashSet<>(taskIds);
+        int[] members = new int[distinct.size()];
+        int count = 0;
+        for (Long id : distinct) {
+            int member = id == null ? LongIntHashMap.MISSING : taskIndex.get(id);
+            if (member == LongIntHashMap.MISSING)
+                throw new NoSuchElementException();
+            members[count++] = member;
+        }
+        return members;
+    }
+
+    /**
+     * Flushes every segment to disk and releases them. The repository can't be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        for (MappedByteBuffer segment : segments)
+            segment.force();
+        segments.clear();
+    }
+
+    private Todo view(int slot) {
+        ByteBuffer record = bufferAt(todoAddresses[slot]);
+        int authorLength = record.getInt(24);
+        int detailsLength = record.getInt(28);
+
+        Todo todo = new Todo();
+        todo.setId(record.getLong(8));
+        todo.setAuthor(readText(record, HEADER_SIZE, authorLength));
+        todo.setDetails(readText(record, HEADER_SIZE + Math.max(authorLength, 0), detailsLength));
+        todo.setTasks(new ChainedTaskList(this, chains, slot, member -> taskView(member, todo)));
+        return todo;
+    }
+
+    private Task taskView(int member, Todo todo) {
+        ByteBuffer record = bufferAt(taskAddresses[member]);
+
+        Task task = new Task(todo);
+        task.setId(record.getLong(8));
+        task.setDetails(readText(record, HEADER_SIZE, record.getInt(28)));
+        switch (record.get(2)) {
+            case COMPLETED_TRUE:
+                task.setCompleted(true);
+                break;
+            case COMPLETED_FALSE:
+                task.setCompleted(false);
+                break;
+            default:
+                task.setCompleted(null);
+        }
+        return task;
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+
+import java.util.Arrays;
+
+/**
+ * The R2DBC side of the reactive API (see ReactiveTodoController). Only used when the application runs as a reactive
+ * web application, which the reactive profile turns on.
+ *
+ * todo.r2dbc.url picks the database, with todo.r2dbc.username and todo.r2dbc.password, which default to the
+ * DataSource's. The default is a connection pool on the same in-memory H2 database as the JDBC DataSource, so the
+ * schema Liquibase creates through JDBC is the one R2DBC reads and writes.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTodoConfiguration implements WebFluxConfigurer {
+
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ObjectMapper objectMapper;
+
+    public ReactiveTodoConfiguration(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Spring Boot would serve a reactive application from Tomcat too, because Tomcat is on the classpath for the servlet
+     * stack. Netty is what a reactive application is normally run on.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ConnectionFactory todoConnectionFactory(
+            @Value("${todo.r2dbc.url:r2dbc:pool:h2:mem:///testdb}") String url,
+            @Value("${todo.r2dbc.username:${spring.datasource.username:sa}}") String username,
+            @Value("${todo.r2dbc.password:${spring.datasource.password:}}") String password) {
+        return ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient todoDatabaseClient(ConnectionFactory todoConnectionFactory) {
+        return DatabaseClient.create(todoConnectionFactory);
+    }
+
+    /**
+     * Spring Data's Pageable, so GET /todos takes the same page, size and sort parameters as the servlet version.
+     */
+    @Override
+    public void configureArgumentResolvers(ArgumentResolverConfigurer configurer) {
+        configurer.addCustomResolver(new ReactivePageableHandlerMethodArgumentResolver());
+    }
+
+    /**
+     * Jackson only streams application/stream+json out of the box, and writes any other Flux as a single JSON array
+     * once every element has arrived. Newline delimited JSON is streamed the same way here, one element per line as it
+     * comes, so an NDJSON response is only ever as far ahead of the client as the network lets it be. Ordered after
+     * Spring Boot's own Jackson codecs, which it replaces.
+     */
+    @Bean
+    @Order(1)
+    public CodecCustomizer ndjsonCodecCustomizer() {
+        MimeType[] mimeTypes = {
+                MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), NDJSON
+        };
+        return configurer -> {
+            Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, mimeTypes);
+            encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, NDJSON));
+            configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+            configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper, mimeTypes));
+        };
+    }
+
+}
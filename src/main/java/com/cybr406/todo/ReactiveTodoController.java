@@ -0,0 +1,175 @@
+package com.cybr406.todo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The todo and task routes of TodoRestController, served by WebFlux and backed by ReactiveTodoRepository, for running
+ * the API without a thread per request. Start the application with the reactive profile to use it instead of the
+ * servlet stack; the two never run side by side.
+ *
+ * Not everything the servlet stack does is here yet:
+ * <ul>
+ *     <li>GET /todos/changes, the server-sent change feed, and GET /todos/search have no reactive route.</li>
+ *     <li>GET /todos ignores view=summary and view=detail and always answers with whole todos.</li>
+ *     <li>GET /todos/{id} sends no ETag and doesn't answer If-None-Match with 304, and adding tasks doesn't check
+ *     If-Match.</li>
+ * </ul>
+ *
+ * On top of the servlet routes, GET /todos streams every todo as newline delimited JSON when asked for
+ * application/x-ndjson, the same as GET /todos/export. Todos are read from the database only as fast as the client
+ * takes them.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTodoController {
+
+    /**
+     * The same limit Spring Data puts on the size of a Pageable.
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    ReactiveTodoRepository reactiveTodoRepository;
+
+    @PostMapping("/todos")
+    public Mono<ResponseEntity<Todo>> createTodo(@Valid @RequestBody Todo todo) {
+        return reactiveTodoRepository.save(todo).map(saved -> new ResponseEntity<>(saved, HttpStatus.CREATED));
+    }
+
+    /**
+     * Takes a JSON array or newline delimited JSON. Todos are inserted as they are read, in one transaction, and the
+     * response is the new ids in the same order, or 400 without saving anything if any todo is invalid.
+     */
+    @PostMapping(path = "/todos/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public Mono<ResponseEntity<List<Long>>> createTodos(@RequestBody Flux<Todo> todos) {
+        return reactiveTodoRepository.saveAll(todos)
+                .map(ids -> new ResponseEntity<>(ids, HttpStatus.CREATED))
+                .onErrorReturn(IllegalArgumentException.class, new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+    }
+
+    @GetMapping(path = {"/todos", "/todos/export"}, produces = NDJSON)
+    public Flux<Todo> export() {
+        return reactiveTodoRepository.findAll();
+    }
+
+    @GetMapping("/todos/{id}")
+    public Mono<ResponseEntity<Todo>> findTodo(@PathVariable long id) {
+        return reactiveTodoRepository.findById(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("/todos")
+    public Mono<Page<Todo>> findAll(Pageable page) {
+        return Mono.defer(() -> reactiveTodoRepository.findAll(page))
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e));
+    }
+
+    /**
+     * Cursor version of GET /todos, see TodoRestController.findAllAfter.
+     */
+    @GetMapping(path = "/todos", params = {"after", "!author"})
+    public Mono<ResponseEntity<TodoCursorPage>> findAllAfter(@RequestParam String after,
+                                                             @RequestParam(defaultValue = "20") int size) {
+        return cursorPage(after, size, reactiveTodoRepository::findAllAfter);
+    }
+
+    /**
+     * One author's todos, see TodoRestController.findByAuthor.
+     */
+    @GetMapping(path = "/todos", params = "author")
+    public Mono<ResponseEntity<TodoCursorPage>> findByAuthor(@RequestParam String author,
+                                                             @RequestParam(defaultValue = "") String after,
+                                                             @RequestParam(defaultValue = "20") int size) {
+        return cursorPage(after, size,
+                (afterId, limit) -> reactiveTodoRepository.findByAuthorAfter(author, afterId, limit));
+    }
+
+    private Mono<ResponseEntity<TodoCursorPage>> cursorPage(String after, int size,
+                                                            BiFunction<Long, Integer, Mono<List<Todo>>> query) {
+        long afterId;
+        try {
+            afterId = TodoCursorPage.decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+
+        // Ask for one extra row to find out whether there is another page without counting.
+        return query.apply(afterId, pageSize + 1).map(todos -> {
+            String next = null;
+            if (todos.size() > pageSize) {
+                todos = todos.subList(0, pageSize);
+                next = TodoCursorPage.encodeCursor(todos.get(pageSize - 1).getId());
+            }
+            return ResponseEntity.ok(new TodoCursorPage(todos, pageSize, next));
+        });
+    }
+
+    @DeleteMapping("/todos/{id}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable long id) {
+        return reactiveTodoRepository.deleteById(id)
+                .map(deleted -> new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
+    }
+
+    @PostMapping("/todos/{id}/tasks")
+    public Mono<ResponseEntity<Todo>> addTask(@PathVariable long id, @Valid @RequestBody Task task) {
+        return reactiveTodoRepository.addTask(id, task)
+                .map(todo -> new ResponseEntity<>(todo, HttpStatus.CREATED))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * Adds every task in a JSON array in one transaction, see TodoRestController.addTasks.
+     */
+    @PostMapping(path = "/todos/{id}/tasks/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Todo>> addTasks(@PathVariable long id, @RequestBody List<Task> tasks) {
+        if (tasks.contains(null))
+            return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        return reactiveTodoRepository.addTasks(id, tasks)
+                .map(todo -> new ResponseEntity<>(todo, HttpStatus.CREATED))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @DeleteMapping("/tasks/{id}")
+    public Mono<ResponseEntity<Void>> deleteTask(@PathVariable long id) {
+        return reactiveTodoRepository.deleteTaskById(id)
+                .map(deleted -> new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
+    }
+
+    @PostMapping(path = "/tasks/complete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Void>> completeTasks(@RequestBody List<Long> ids) {
+        return changeTasks(ids, reactiveTodoRepository::completeTasks);
+    }
+
+    @PostMapping(path = "/tasks/delete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Void>> deleteTasks(@RequestBody List<Long> ids) {
+        return changeTasks(ids, reactiveTodoRepository::deleteTasks);
+    }
+
+    private static Mono<ResponseEntity<Void>> changeTasks(List<Long> ids, Function<List<Long>, Mono<Boolean>> change) {
+        if (ids.contains(null))
+            return Mono.just(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        return change.apply(ids)
+                .map(changed -> new ResponseEntity<>(changed ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
+    }
+
+}
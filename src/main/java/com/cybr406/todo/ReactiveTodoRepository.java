@@ -0,0 +1,385 @@
+package com.cybr406.todo;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and writes todos and tasks through R2DBC, in the same TODO and TASK tables and the same shapes as
+ * TodoJpaRepository and TaskJpaRepository. Nothing here blocks: every method returns straight away and the work happens
+ * as the result is subscribed to.
+ *
+ * R2DBC has no relationships, so tasks are loaded by hand. A single todo and the full stream come from one join
+ * ordered by todo id, with consecutive rows of the same todo folded together. Pages of todos load their tasks with one
+ * IN query, since a LIMIT on the join would count tasks instead of todos.
+ *
+ * Writes made here don't go through Hibernate, so they don't evict its second-level cache. Don't combine the reactive
+ * and cache profiles.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTodoRepository {
+
+    private static final String SELECT_TODO_WITH_TASKS =
+            "SELECT T.ID, T.AUTHOR, T.DETAILS, T.DETAILS_OVERFLOW, K.ID AS TASK_ID, K.COMPLETED, "
+                    + "K.DETAILS AS TASK_DETAILS, K.DETAILS_OVERFLOW AS TASK_DETAILS_OVERFLOW "
+                    + "FROM TODO T LEFT JOIN TASK K ON K.TODO_ID = T.ID ";
+
+    private static final String SELECT_TASKS_OF =
+            "SELECT ID, TODO_ID, COMPLETED, DETAILS, DETAILS_OVERFLOW FROM TASK WHERE TODO_ID IN (:ids) "
+                    + "ORDER BY TODO_ID, ID";
+
+    /**
+     * What GET /todos can be sorted by, and the column behind each.
+     */
+    private static final Map<String, String> SORTABLE = new HashMap<>();
+
+    static {
+        SORTABLE.put("id", "ID");
+        SORTABLE.put("author", "AUTHOR");
+        SORTABLE.put("details", "DETAILS");
+    }
+
+    private final DatabaseClient databaseClient;
+
+    private final TransactionalOperator transactionalOperator;
+
+    public ReactiveTodoRepository(DatabaseClient todoDatabaseClient, ConnectionFactory todoConnectionFactory) {
+        this.databaseClient = todoDatabaseClient;
+        transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(todoConnectionFactory));
+    }
+
+    public Mono<Todo> findById(long id) {
+        return databaseClient.execute(SELECT_TODO_WITH_TASKS + "WHERE T.ID = :id ORDER BY K.ID")
+                .bind("id", id)
+                .map(ReactiveTodoRepository::todoRow)
+                .all()
+                .collectList()
+                .filter(rows -> !rows.isEmpty())
+                .map(ReactiveTodoRepository::fold);
+    }
+
+    /**
+     * Every todo with its tasks, in id order. Rows are read from the database only as fast as they are requested.
+     */
+    public Flux<Todo> findAll() {
+        return databaseClient.execute(SELECT_TODO_WITH_TASKS + "ORDER BY T.ID, K.ID")
+                .map(ReactiveTodoRepository::todoRow)
+                .all()
+                .bufferUntilChanged(row -> row.todo.getId())
+                .map(ReactiveTodoRepository::fold);
+    }
+
+    /**
+     * One page of todos with their tasks, and the total count, like JpaRepository.findAll(Pageable).
+     *
+     * @throws IllegalArgumentException if the page is sorted by something other than id, author or details.
+     */
+    public Mono<Page<Todo>> findAll(Pageable pageable) {
+        String sql = "SELECT ID, AUTHOR, DETAILS, DETAILS_OVERFLOW FROM TODO ORDER BY " + orderBy(pageable.getSort())
+                + " LIMIT :limit OFFSET :offset";
+        Mono<List<Todo>> content = databaseClient.execute(sql)
+                .bind("limit", pageable.getPageSize())
+                .bind("offset", pageable.getOffset())
+                .map(ReactiveTodoRepository::todo)
+                .all()
+                .collectList()
+                .flatMap(this::withTasks);
+        Mono<Long> total = databaseClient.execute("SELECT COUNT(*) FROM TODO")
+                .map(row -> row.get(0, Long.class))
+                .one();
+        return Mono.zip(content, total, (todos, count) -> new PageImpl<>(todos, pageable, count));
+    }
+
+    /**
+     * Up to limit todos with ids greater than afterId, in id order, like
+     * TodoJpaRepository.findByIdGreaterThanOrderByIdAsc.
+     */
+    public Mono<List<Todo>> findAllAfter(long afterId, int limit) {
+        return databaseClient.execute("SELECT ID, AUTHOR, DETAILS, DETAILS_OVERFLOW FROM TODO WHERE ID > :after ORDER BY ID LIMIT :limit")
+                .bind("after", afterId)
+                .bind("limit", limit)
+                .map(ReactiveTodoRepository::todo)
+                .all()
+                .collectList()
+                .flatMap(this::withTasks);
+    }
+
+    /**
+     * Same as findAllAfter, for one author's todos, like TodoJpaRepository.findByAuthorAndIdGreaterThanOrderByIdAsc.
+     */
+    public Mono<List<Todo>> findByAuthorAfter(String author, long afterId, int limit) {
+        return databaseClient.execute("SELECT ID, AUTHOR, DETAILS, DETAILS_OVERFLOW FROM TODO WHERE AUTHOR = :author AND ID > :after "
+                + "ORDER BY ID LIMIT :limit")
+                .bind("author", author)
+                .bind("after", afterId)
+                .bind("limit", limit)
+                .map(ReactiveTodoRepository::todo)
+                .all()
+                .collectList()
+                .flatMap(this::withTasks);
+    }
+
+    /**
+     * Inserts the todo, without its tasks like TodoJpaRepository.save, and returns it with its new id.
+     */
+    public Mono<Todo> save(Todo todo) {
+        return insertTodo(todo).map(id -> {
+            todo.setId(id);
+            todo.setTasks(new ArrayList<>());
+            return todo;
+        });
+    }
+
+    /**
+     * Inserts every todo with its tasks, in one transaction, and returns the new ids in the same order. Todos are
+     * inserted as they arrive, so a streamed request body is never held in memory as a whole.
+     *
+     * The Mono fails with an IllegalArgumentException, and nothing is saved, if a todo has a blank author or details.
+     */
+    public Mono<List<Long>> saveAll(Flux<Todo> todos) {
+        return todos
+                .concatMap(todo -> validate(todo)
+                        .then(insertTodo(todo))
+                        .flatMap(id -> Flux.fromIterable(todo.getTasks())
+                                .concatMap(task -> insertTask(id, task))
+                                .then(Mono.just(id))))
+                .collectList()
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Adds the task to the todo and returns the todo with all of its tasks, or nothing if there is no such todo. Bumps
+     * the todo's version, like TodoTaskWriter does.
+     */
+    public Mono<Todo> addTask(long todoId, Task task) {
+        return databaseClient.execute("UPDATE TODO SET VERSION = VERSION + 1 WHERE ID = :id")
+                .bind("id", todoId)
+                .fetch()
+                .rowsUpdated()
+                .filter(rows -> rows > 0)
+                .flatMap(updated -> insertTask(todoId, task))
+                .as(transactionalOperator::transactional)
+                .flatMap(taskId -> findById(todoId));
+    }
+
+    /**
+     * Adds all of the tasks to the todo in one transaction, bumping its version once, and returns the todo with all of
+     * its tasks, or nothing if there is no such todo.
+     */
+    public Mono<Todo> addTasks(long todoId, List<Task> tasks) {
+        return databaseClient.execute("UPDATE TODO SET VERSION = VERSION + 1 WHERE ID = :id")
+                .bind("id", todoId)
+                .fetch()
+                .rowsUpdated()
+                .filter(rows -> rows > 0)
+                .flatMap(updated -> Flux.fromIterable(tasks)
+                        .concatMap(task -> insertTask(todoId, task))
+                        .then(Mono.just(todoId)))
+                .as(transactionalOperator::transactional)
+                .flatMap(this::findById);
+    }
+
+    /**
+     * Marks every task completed and returns whether they all exist. If any of them doesn't, nothing is changed.
+     */
+    public Mono<Boolean> completeTasks(Collection<Long> taskIds) {
+        return changeTasks(taskIds, "UPDATE TASK SET COMPLETED = TRUE WHERE ID IN (:ids)");
+    }
+
+    /**
+     * Deletes every task and returns whether they all existed. If any of them didn't, nothing is deleted.
+     */
+    public Mono<Boolean> deleteTasks(Collection<Long> taskIds) {
+        return changeTasks(taskIds, "DELETE FROM TASK WHERE ID IN (:ids)");
+    }
+
+    /**
+     * Bumps the version of every todo the tasks belong to once, then runs the statement on all of the tasks. Both are
+     * one statement each however many tasks there are, in one transaction that is rolled back if the statement didn't
+     * find every task.
+     */
+    private Mono<Boolean> changeTasks(Collection<Long> taskIds, String sql) {
+        Set<Long> ids = new HashSet<>(taskIds);
+        if (ids.isEmpty())
+            return Mono.just(true);
+
+        return databaseClient.execute(
+                "UPDATE TODO SET VERSION = VERSION + 1 WHERE ID IN (SELECT TODO_ID FROM TASK WHERE ID IN (:ids))")
+                .bind("ids", ids)
+                .then()
+                .then(databaseClient.execute(sql)
+                        .bind("ids", ids)
+                        .fetch()
+                        .rowsUpdated())
+                .flatMap(rows -> rows == ids.size()
+                        ? Mono.just(true)
+                        : Mono.<Boolean>error(new NoSuchElementException()))
+                .as(transactionalOperator::transactional)
+                .onErrorReturn(NoSuchElementException.class, false);
+    }
+
+    /**
+     * Deletes the todo, and through the foreign key its tasks. Returns whether there was one.
+     */
+    public Mono<Boolean> deleteById(long id) {
+        return databaseClient.execute("DELETE FROM TODO WHERE ID = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    /**
+     * Deletes the task, bumping its todo's version, and returns whether there was one.
+     */
+    public Mono<Boolean> deleteTaskById(long id) {
+        return databaseClient.execute(
+                "UPDATE TODO SET VERSION = VERSION + 1 WHERE ID = (SELECT TODO_ID FROM TASK WHERE ID = :id)")
+                .bind("id", id)
+                .then()
+                .then(databaseClient.execute("DELETE FROM TASK WHERE ID = :id")
+                        .bind("id", id)
+                        .fetch()
+                        .rowsUpdated())
+                .map(rows -> rows > 0)
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<Long> insertTodo(Todo todo) {
+        DatabaseClient.GenericInsertSpec<Map<String, Object>> insert = databaseClient.insert()
+                .into("TODO")
+                .value("AUTHOR", todo.getAuthor())
+                .value("VERSION", 0L);
+        return withDetails(insert, todo.getDetails())
+                .map(row -> row.get("ID", Long.class))
+                .one();
+    }
+
+    private Mono<Long> insertTask(long todoId, Task task) {
+        DatabaseClient.GenericInsertSpec<Map<String, Object>> insert = databaseClient.insert()
+                .into("TASK")
+                .value("TODO_ID", todoId);
+        insert = task.getCompleted() == null
+                ? insert.nullValue("COMPLETED", Boolean.class)
+                : insert.value("COMPLETED", task.getCompleted());
+        return withDetails(insert, task.getDetails()).map(row -> row.get("ID", Long.class)).one();
+    }
+
+    /**
+     * Sets DETAILS and DETAILS_OVERFLOW, see DetailsColumns.
+     */
+    private static DatabaseClient.GenericInsertSpec<Map<String, Object>> withDetails(
+            DatabaseClient.GenericInsertSpec<Map<String, Object>> insert, String details) {
+        String inline = DetailsColumns.inline(details);
+        String overflow = DetailsColumns.overflow(details);
+        insert = inline == null
+                ? insert.nullValue("DETAILS", String.class)
+                : insert.value("DETAILS", inline);
+        return overflow == null
+                ? insert.nullValue("DETAILS_OVERFLOW", String.class)
+                : insert.value("DETAILS_OVERFLOW", overflow);
+    }
+
+    private static Mono<Todo> validate(Todo todo) {
+        if (isBlank(todo.getAuthor()) || isBlank(todo.getDetails()))
+            return Mono.error(new IllegalArgumentException("Every todo needs an author and details."));
+        return Mono.just(todo);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private Mono<List<Todo>> withTasks(List<Todo> todos) {
+        if (todos.isEmpty())
+            return Mono.just(todos);
+
+        Map<Long, Todo> byId = todos.stream().collect(Collectors.toMap(Todo::getId, Function.identity()));
+        return databaseClient.execute(SELECT_TASKS_OF)
+                .bind("ids", byId.keySet())
+                .map(row -> new TodoRow(byId.get(row.get("TODO_ID", Long.class)), task(row, "ID", "DETAILS", "DETAILS_OVERFLOW")))
+                .all()
+                .doOnNext(row -> row.todo.getTasks().add(row.task))
+                .then(Mono.just(todos));
+    }
+
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted())
+            return "ID";
+
+        StringBuilder orderBy = new StringBuilder();
+        for (Sort.Order order : sort) {
+            String column = SORTABLE.get(order.getProperty());
+            if (column == null)
+                throw new IllegalArgumentException("Todos can't be sorted by " + order.getProperty() + ".");
+            orderBy.append(column).append(order.isAscending() ? " ASC, " : " DESC, ");
+        }
+        // Ties are broken by id so pages don't overlap.
+        return orderBy.append("ID").toString();
+    }
+
+    private static Todo todo(Row row) {
+        Todo todo = new Todo();
+        todo.setId(row.get("ID", Long.class));
+        todo.setAuthor(row.get("AUTHOR", String.class));
+        todo.setDetails(DetailsColumns.join(row.get("DETAILS", String.class),
+                row.get("DETAILS_OVERFLOW", String.class)));
+        return todo;
+    }
+
+    private static Task task(Row row, String id, String details, String detailsOverflow) {
+        Task task = new Task();
+        task.setId(row.get(id, Long.class));
+        task.setCompleted(row.get("COMPLETED", Boolean.class));
+        task.setDetails(DetailsColumns.join(row.get(details, String.class), row.get(detailsOverflow, String.class)));
+        return task;
+    }
+
+    private static TodoRow todoRow(Row row) {
+        return new TodoRow(todo(row), row.get("TASK_ID") == null ? null : task(row, "TASK_ID", "TASK_DETAILS", "TASK_DETAILS_OVERFLOW"));
+    }
+
+    /**
+     * Turns the join rows of one todo back into the todo with its tasks.
+     */
+    private static Todo fold(List<TodoRow> rows) {
+        Todo todo = rows.get(0).todo;
+        for (TodoRow row : rows) {
+            if (row.task != null)
+                todo.getTasks().add(row.task);
+        }
+        return todo;
+    }
+
+    /**
+     * One row of the todo and task join: a todo, and one of its tasks or null if it has none.
+     */
+    private static class TodoRow {
+
+        final Todo todo;
+
+        final Task task;
+
+        TodoRow(Todo todo, Task task) {
+            this.todo = todo;
+            this.task = task;
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.cybr406.todo;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sends read-only transactions, like the ones TodoReader runs for every GET, to a read replica, so reads can be scaled
+ * out by adding replicas while writes still all go to the primary. Turned on by setting todo.datasource.replica.url,
+ * which the replica profile does (see application-replica.properties).
+ *
+ * The primary is configured with the usual spring.datasource properties. The replica is configured with
+ * todo.datasource.replica.url, username and password, which default to the primary's, and its pool with
+ * todo.datasource.replica.hikari. The two pools aren't beans of their own: Boot initializes every DataSource bean
+ * against the one DataSource, which would be the ReadReplicaDataSource still being built. So they are built here,
+ * reporting to Micrometer as hikaricp metrics tagged pool=primary and pool=replica, and closed by the
+ * ReadReplicaDataSource.
+ *
+ * A replica lags behind the primary, so a client that writes and then reads at once may not see its write. Only
+ * read-only transactions are routed: reads inside a read-write transaction, and reads outside any transaction, go to
+ * the primary.
+ *
+ * The replica can't be combined with the second-level cache (the cache profile). A read from the replica puts the row
+ * it found into the cache, even when it is older than a write the cache has already been told about, and everyone is
+ * then served the old row until it expires. So the application refuses to start with both.
+ */
+@Configuration
+@ConditionalOnProperty(name = "todo.datasource.replica.url")
+public class ReadReplicaConfiguration {
+
+    public ReadReplicaConfiguration(
+            @Value("${spring.jpa.properties.hibernate.cache.use_second_level_cache:false}") boolean secondLevelCache) {
+        if (secondLevelCache)
+            throw new IllegalStateException("The read replica (todo.datasource.replica.url) can't be used with the "
+                    + "second-level cache (the cache profile), which would cache rows read from a stale replica.");
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig primaryPool(DataSourceProperties properties) {
+        HikariConfig pool = new HikariConfig();
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setJdbcUrl(properties.determineUrl());
+        pool.setUsername(properties.determineUsername());
+        pool.setPassword(properties.determinePassword());
+        pool.setPoolName("primary");
+        return pool;
+    }
+
+    @Bean
+    @ConfigurationProperties("todo.datasource.replica.hikari")
+    public HikariConfig replicaPool(
+            DataSourceProperties properties,
+            @Value("${todo.datasource.replica.url}") String url,
+            @Value("${todo.datasource.replica.username:#{null}}") String username,
+            @Value("${todo.datasource.replica.password:#{null}}") String password) {
+        HikariConfig pool = new HikariConfig();
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setJdbcUrl(url);
+        pool.setUsername(username != null ? username : properties.determineUsername());
+        pool.setPassword(password != null ? password : properties.determinePassword());
+        pool.setPoolName("replica");
+        return pool;
+    }
+
+    @Bean
+    public ReadReplicaDataSource dataSource(@Qualifier("primaryPool") HikariConfig primaryPool,
+                                            @Qualifier("replicaPool") HikariConfig replicaPool,
+                                            ObjectProvider<MeterRegistry> registry) {
+        return new ReadReplicaDataSource(pool(primaryPool, registry), pool(replicaPool, registry));
+    }
+
+    private HikariDataSource pool(HikariConfig config, ObjectProvider<MeterRegistry> registry) {
+        registry.ifAvailable(r -> config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(r)));
+        return new HikariDataSource(config);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.cybr406.todo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call to a TodoRepository and to the Spring Data repositories, as todo.repository tagged with the
+ * repository, the method and the exception thrown (or "none").
+ *
+ * Looking a timer up in the registry means building its tags and id on every call, so the timers for successful calls
+ * are kept here per repository and method. Failed calls are rare enough to go through the registry.
+ */
+@Aspect
+@Component
+public class RepositoryMetrics {
+
+    public static final String TIMER = "todo.repository";
+
+    private final MeterRegistry registry;
+
+    private final Map<Class<?>, Map<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    public RepositoryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(* com.cybr406.todo.TodoRepository+.*(..)) || "
+            + "execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            timer(joinPoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(joinPoint, method(joinPoint), e.getClass().getSimpleName())
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(ProceedingJoinPoint joinPoint) {
+        Map<Method, Timer> methods = timers.get(joinPoint.getThis().getClass());
+        if (methods == null)
+            methods = timers.computeIfAbsent(joinPoint.getThis().getClass(), proxy -> new ConcurrentHashMap<>());
+
+        Method method = method(joinPoint);
+        Timer timer = methods.get(method);
+        if (timer == null)
+            timer = methods.computeIfAbsent(method, m -> timer(joinPoint, m, "none"));
+        return timer;
+    }
+
+    private static Method method(ProceedingJoinPoint joinPoint) {
+        return ((MethodSignature) joinPoint.getSignature()).getMethod();
+    }
+
+    private Timer timer(ProceedingJoinPoint joinPoint, Method method, String exception) {
+        return Timer.builder(TIMER)
+                .description("Time spent in repository calls")
+                .tag("repository", repository(joinPoint.getThis()))
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(registry);
+    }
+
+    /**
+     * Spring Data repositories are all implemented by the same class, so they're named after the interface the
+     * application declared instead. The other repositories are named after their own class.
+     */
+    private static String repository(Object proxy) {
+        for (Class<?> type : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+            if (Repository.class.isAssignableFrom(type))
+                return type.getSimpleName();
+        }
+        return AopProxyUtils.ultimateTargetClass(proxy).getSimpleName();
+    }
+
+}
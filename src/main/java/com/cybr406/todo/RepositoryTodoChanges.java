@@ -0,0 +1,76 @@
+package com.cybr406.todo;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the changes made through the TodoRepository (whichever implementation todo.repository picks) to the
+ * TodoChangeFeed, when todo.changes.source = repository.
+ *
+ * TodoRepository methods take effect as soon as they return, so there's nothing to wait for. Calls that throw, like
+ * deleting a todo that doesn't exist, changed nothing and aren't published.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "todo.changes.source", havingValue = "repository")
+public class RepositoryTodoChanges {
+
+    private final TodoChangeFeed feed;
+
+    public RepositoryTodoChanges(TodoChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    @AfterReturning(pointcut = "execution(* com.cybr406.todo.TodoRepository+.create(..))", returning = "todo")
+    public void created(Todo todo) {
+        feed.publish(TodoChangeEvent.Type.CREATED, todo.getId(), null);
+    }
+
+    @AfterReturning("execution(* com.cybr406.todo.TodoRepository+.addTask(..)) && args(todoId, task)")
+    public void taskAdded(Long todoId, Task task) {
+        feed.publish(TodoChangeEvent.Type.TASK_ADDED, todoId, task.getId());
+    }
+
+    @AfterReturning("execution(* com.cybr406.todo.TodoRepository+.addTasks(..)) && args(todoId, tasks)")
+    public void tasksAdded(Long todoId, List<Task> tasks) {
+        for (Task task : tasks)
+            feed.publish(TodoChangeEvent.Type.TASK_ADDED, todoId, task.getId());
+    }
+
+    @AfterReturning("execution(* com.cybr406.todo.TodoRepository+.delete(..)) && args(id)")
+    public void deleted(Long id) {
+        feed.publish(TodoChangeEvent.Type.DELETED, id, null);
+    }
+
+    /**
+     * The task is gone once deleteTask returns, so the todo that owned it is looked up first.
+     */
+    @Around("execution(* com.cybr406.todo.TodoRepository+.deleteTask(..)) && args(id) && target(repository)")
+    public Object taskDeleted(ProceedingJoinPoint call, Long id, TodoRepository repository) throws Throwable {
+        Long todoId = repository.findTodoIdOfTask(id).orElse(null);
+        Object result = call.proceed();
+        feed.publish(TodoChangeEvent.Type.TASK_DELETED, todoId, id);
+        return result;
+    }
+
+    @Around("execution(* com.cybr406.todo.TodoRepository+.deleteTasks(..)) && args(ids) && target(repository)")
+    public Object tasksDeleted(ProceedingJoinPoint call, Collection<Long> ids, TodoRepository repository)
+            throws Throwable {
+        Map<Long, Long> todoIds = new LinkedHashMap<>();
+        for (Long id : ids)
+            todoIds.putIfAbsent(id, repository.findTodoIdOfTask(id).orElse(null));
+        Object result = call.proceed();
+        todoIds.forEach((id, todoId) -> feed.publish(TodoChangeEvent.Type.TASK_DELETED, todoId, id));
+        return result;
+    }
+
+}
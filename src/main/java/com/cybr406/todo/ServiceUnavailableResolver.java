@@ -0,0 +1,46 @@
+package com.cybr406.todo;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Answers the exceptions it is given a test for with 503 Service Unavailable and Retry-After, instead of 500. It tells
+ * clients and load balancers the application is saturated rather than broken, and to come back in a moment. Any other
+ * exception is left to the next resolver.
+ *
+ * Used for requests the async executor has no room for (see AsyncExecutionConfiguration) and requests that couldn't get
+ * a database connection in time (see ConnectionPoolConfiguration). Add it first, so it gets to see the exception before
+ * Spring's own resolvers turn it into a 500.
+ */
+public class ServiceUnavailableResolver implements HandlerExceptionResolver {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final Predicate<Throwable> saturated;
+
+    public ServiceUnavailableResolver(Predicate<Throwable> saturated) {
+        this.saturated = saturated;
+    }
+
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                         Exception e) {
+        if (!saturated.test(e))
+            return null;
+        try {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+        } catch (IOException ignored) {
+            // The client is gone, there is nobody to tell.
+        }
+        return new ModelAndView();
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.cybr406.todo;
+
+import java.util.Arrays;
+
+/**
+ * Keeps an ordered list of member slots for every owner slot, stored as doubly linked lists in plain int arrays. The
+ * repositories that keep rows in arrays use it to remember which task slots belong to which todo slot, without an
+ * ArrayList per todo.
+ *
+ * Appending and unlinking are constant time. Not threadsafe, callers are expected to do their own locking.
+ */
+final class SlotChains {
+
+    static final int NONE = -1;
+
+    private int[] head = new int[0];
+
+    private int[] tail = new int[0];
+
+    private int[] length = new int[0];
+
+    private int[] next = new int[0];
+
+    private int[] prev = new int[0];
+
+    private void ensureOwner(int owner) {
+        if (owner < head.length)
+            return;
+        int capacity = Math.max(owner + 1, head.length * 2);
+        int old = head.length;
+        head = Arrays.copyOf(head, capacity);
+        tail = Arrays.copyOf(tail, capacity);
+        length = Arrays.copyOf(length, capacity);
+        Arrays.fill(head, old, capacity, NONE);
+        Arrays.fill(tail, old, capacity, NONE);
+    }
+
+    private void ensureMember(int member) {
+        if (member < next.length)
+            return;
+        int capacity = Math.max(member + 1, next.length * 2);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+    }
+
+    void append(int owner, int member) {
+        ensureOwner(owner);
+        ensureMember(member);
+        next[member] = NONE;
+        prev[member] = tail[owner];
+        if (tail[owner] == NONE)
+            head[owner] = member;
+        else
+            next[tail[owner]] = member;
+        tail[owner] = member;
+        length[owner]++;
+    }
+
+    void unlink(int owner, int member) {
+        if (prev[member] == NONE)
+            head[owner] = next[member];
+        else
+            next[prev[member]] = next[member];
+
+        if (next[member] == NONE)
+            tail[owner] = prev[member];
+        else
+            prev[next[member]] = prev[member];
+
+        length[owner]--;
+    }
+
+    /**
+     * Forgets every member of owner. The members themselves are left alone, so callers should free them first.
+     */
+    void clear(int owner) {
+        if (owner >= head.length)
+            return;
+        head[owner] = NONE;
+        tail[owner] = NONE;
+        length[owner] = 0;
+    }
+
+    void clearAll() {
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+        Arrays.fill(length, 0);
+    }
+
+    int first(int owner) {
+        return owner < head.length ? head[owner] : NONE;
+    }
+
+    int next(int member) {
+        return next[member];
+    }
+
+    int length(int owner) {
+        return owner < length.length ? length[owner] : 0;
+    }
+
+}
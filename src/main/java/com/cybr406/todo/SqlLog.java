@@ -0,0 +1,134 @@
+package com.cybr406.todo;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.io.Reader;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs SQL statements from the JDBC side instead of Hibernate's SQL and binder loggers, and only the ones worth
+ * reading: statements slower than todo.sql-log.slow-threshold and statements that fail are logged at WARN with their
+ * bind values, and todo.sql-log.sample-rate of the rest are logged at INFO, without bind values unless
+ * todo.sql-log.sample-binds is set. Nothing is formatted for statements that aren't logged.
+ *
+ * Everything goes to the com.cybr406.todo.sql logger, which logback-spring.xml hands to an asynchronous appender in
+ * the sql-log profile, so request threads never wait on the console. Turn it on with the sql-log profile (see
+ * application-sql-log.properties) or todo.sql-log.enabled=true.
+ *
+ * Statements run through JdbcTemplate, like the bulk insert and the export, are logged the same way as Hibernate's.
+ */
+@Component
+@ConditionalOnProperty(name = "todo.sql-log.enabled", havingValue = "true")
+public class SqlLog implements BeanPostProcessor, QueryExecutionListener {
+
+    public static final String LOGGER = "com.cybr406.todo.sql";
+
+    private static final Logger log = LoggerFactory.getLogger(LOGGER);
+
+    /**
+     * Details are LOBs and may be huge, bind values longer than this are cut short.
+     */
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    /**
+     * Only the first few rows of a JDBC batch have their bind values logged.
+     */
+    private static final int MAX_BATCH_ROWS = 3;
+
+    private final long slowThresholdMillis;
+
+    private final double sampleRate;
+
+    private final boolean sampleBinds;
+
+    public SqlLog(@Value("${todo.sql-log.slow-threshold:100ms}") Duration slowThreshold,
+                  @Value("${todo.sql-log.sample-rate:0.01}") double sampleRate,
+                  @Value("${todo.sql-log.sample-binds:false}") boolean sampleBinds) {
+        this.slowThresholdMillis = slowThreshold.toMillis();
+        this.sampleRate = sampleRate;
+        this.sampleBinds = sampleBinds;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource)
+            return ProxyDataSourceBuilder.create(beanName, (DataSource) bean).listener(this).build();
+        return bean;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+        if (!execution.isSuccess()) {
+            if (log.isWarnEnabled())
+                log.warn("Failed after {} ms: {}", execution.getElapsedTime(), describe(execution, queries, true),
+                        execution.getThrowable());
+        } else if (execution.getElapsedTime() >= slowThresholdMillis) {
+            if (log.isWarnEnabled())
+                log.warn("Slow, {} ms: {}", execution.getElapsedTime(), describe(execution, queries, true));
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            if (log.isInfoEnabled())
+                log.info("{} ms: {}", execution.getElapsedTime(), describe(execution, queries, sampleBinds));
+        }
+    }
+
+    private static String describe(ExecutionInfo execution, List<QueryInfo> queries, boolean binds) {
+        StringBuilder description = new StringBuilder();
+        for (QueryInfo query : queries) {
+            if (description.length() > 0)
+                description.append("; ");
+            description.append(query.getQuery());
+            if (binds)
+                appendBinds(description, query.getParametersList());
+        }
+        if (execution.isBatch())
+            description.append(" (batch of ").append(execution.getBatchSize()).append(')');
+        return description.toString();
+    }
+
+    private static void appendBinds(StringBuilder description, List<List<ParameterSetOperation>> rows) {
+        for (int row = 0; row < rows.size() && row < MAX_BATCH_ROWS; row++) {
+            description.append(" [");
+            List<ParameterSetOperation> parameters = rows.get(row);
+            for (int i = 0; i < parameters.size(); i++) {
+                Object[] args = parameters.get(i).getArgs();
+                if (i > 0)
+                    description.append(", ");
+                description.append(args[0]).append('=').append(value(parameters.get(i)));
+            }
+            description.append(']');
+        }
+        if (rows.size() > MAX_BATCH_ROWS)
+            description.append(" and ").append(rows.size() - MAX_BATCH_ROWS).append(" more");
+    }
+
+    private static String value(ParameterSetOperation parameter) {
+        if (ParameterSetOperation.isSetNullParameterOperation(parameter))
+            return "null";
+        Object[] args = parameter.getArgs();
+        if (args.length < 2)
+            return "?";
+        if (args[1] instanceof Reader || args[1] instanceof InputStream)
+            return "(stream)";
+        String value = String.valueOf(args[1]);
+        return value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) + "..." : value;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.cybr406.todo;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread. SqlStatementMetrics resets the count when a
+ * request starts and records it when the request is done.
+ *
+ * Hibernate creates this class itself, from spring.jpa.properties.hibernate.session_factory.statement_inspector, so
+ * the count lives in a static thread local rather than in a bean.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static long count() {
+        return COUNT.get()[0];
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.cybr406.todo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+
+/**
+ * Records how many SQL statements each request ran, as todo.sql.statements tagged with the request's method and uri
+ * template, the same uri tag http.server.requests uses.
+ *
+ * Only statements Hibernate prepares are counted (see SqlStatementCounter). The JDBC batches of POST /todos/bulk and
+ * the cursors of GET /todos/export don't go through Hibernate.
+ *
+ * When a controller method runs asynchronously (see AsyncExecutionConfiguration) its statements are counted on the
+ * async thread and added to the ones run when the response is written.
+ */
+@Component
+public class SqlStatementMetrics implements HandlerInterceptor, CallableProcessingInterceptor, WebMvcConfigurer {
+
+    public static final String SUMMARY = "todo.sql.statements";
+
+    private static final String ASYNC_STATEMENTS = SqlStatementMetrics.class.getName() + ".asyncStatements";
+
+    private final MeterRegistry registry;
+
+    public SqlStatementMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        interceptors.addInterceptor(this);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlStatementCounter.reset();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder(SUMMARY)
+                .description("SQL statements run per request")
+                .tag("method", request.getMethod())
+                .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                .register(registry)
+                .record(SqlStatementCounter.count() + asyncStatements(request));
+    }
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        SqlStatementCounter.reset();
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        request.setAttribute(ASYNC_STATEMENTS, SqlStatementCounter.count(), RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private static long asyncStatements(HttpServletRequest request) {
+        Object statements = request.getAttribute(ASYNC_STATEMENTS);
+        return statements == null ? 0 : (Long) statements;
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.cybr406.todo;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.Objects;
 @Entity
-
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = TodoCache.TASKS)
 public class Task {
 
     @Id
@@ -18,7 +21,14 @@ public class Task {
 
     private Boolean completed;
 
+    /**
+     * Split the same way as Todo's details.
+     */
+    @Column(name = "DETAILS", length = DetailsColumns.INLINE_LENGTH)
+    private String detailsInline;
+
     @Lob
+    @Column(name = "DETAILS_OVERFLOW")
     private String details;
 
 
@@ -56,11 +66,12 @@ public class Task {
     }
 
     public String getDetails() {
-        return details;
+        return DetailsColumns.join(detailsInline, details);
     }
 
     public void setDetails(String details) {
-        this.details = details;
+        this.detailsInline = DetailsColumns.inline(details);
+        this.details = DetailsColumns.overflow(details);
     }
 
     @Override
@@ -70,11 +81,11 @@ public class Task {
         Task task = (Task) o;
         return Objects.equals(id, task.id) &&
                 Objects.equals(completed, task.completed) &&
-                Objects.equals(details, task.details);
+                Objects.equals(getDetails(), task.getDetails());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, completed, details);
+        return Objects.hash(id, completed, getDetails());
     }
 }
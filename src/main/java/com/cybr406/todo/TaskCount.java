@@ -0,0 +1,27 @@
+package com.cybr406.todo;
+
+/**
+ * How many tasks a todo has, as counted by TaskJpaRepository.countByTodoIdIn. A class filled by a JPQL constructor
+ * expression rather than an interface projection: Spring Data backs those with a proxy per row, which cost more
+ * allocation than everything else GET /todos?view=summary does.
+ */
+public class TaskCount {
+
+    private final Long todoId;
+
+    private final long tasks;
+
+    public TaskCount(Long todoId, long tasks) {
+        this.todoId = todoId;
+        this.tasks = tasks;
+    }
+
+    public Long getTodoId() {
+        return todoId;
+    }
+
+    public long getTasks() {
+        return tasks;
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A task of a TodoDetail. Fields that are null, like completed on a task that was never marked either way, are left out
+ * of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskDetail {
+
+    private final Long todoId;
+
+    private final Long id;
+
+    private final Boolean completed;
+
+    private final String details;
+
+    public TaskDetail(Long todoId, Long id, Boolean completed, String detailsInline, String detailsOverflow) {
+        this.todoId = todoId;
+        this.id = id;
+        this.completed = completed;
+        this.details = DetailsColumns.join(detailsInline, detailsOverflow);
+    }
+
+    /**
+     * Only used to hand the task to its todo; the JSON has it nested inside the todo already.
+     */
+    @JsonIgnore
+    public Long getTodoId() {
+        return todoId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+}
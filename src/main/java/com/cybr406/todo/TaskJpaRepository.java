@@ -4,8 +4,50 @@ package com.cybr406.todo;
 import com.cybr406.todo.Task;
 import com.sun.xml.bind.v2.model.core.ID;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TaskJpaRepository extends JpaRepository<Task, Long> {
+
+    /**
+     * The tasks with the given ids, with the todos they belong to joined in, so the batch methods of TodoTaskWriter
+     * load everything they work on in one query instead of one more per todo.
+     */
+    @Query("select t from Task t left join fetch t.todo where t.id in :ids")
+    List<Task> findWithTodoByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * The tasks of the given todos as TaskDetail rows, in id order, for GET /todos?view=detail.
+     */
+    @Query("select new com.cybr406.todo.TaskDetail(t.todo.id, t.id, t.completed, t.detailsInline, t.details) "
+            + "from Task t where t.todo.id in :todoIds order by t.id")
+    List<TaskDetail> findDetailsByTodoIdIn(@Param("todoIds") Collection<Long> todoIds);
+
+    /**
+     * How many tasks each of the given todos has. Todos without tasks are left out.
+     */
+    @Query("select new com.cybr406.todo.TaskCount(t.todo.id, count(t)) from Task t "
+            + "where t.todo.id in :todoIds group by t.todo.id")
+    List<TaskCount> countByTodoIdIn(@Param("todoIds") Collection<Long> todoIds);
+
+    /**
+     * Just the id of the task's todo, without loading the task or the todo.
+     */
+    @Query("select t.todo.id from Task t where t.id = :id")
+    Optional<Long> findTodoIdById(@Param("id") Long id);
+
+    /**
+     * Deletes the task with one DELETE and returns how many rows it deleted, 0 or 1.
+     */
+    @Modifying
+    @Query("delete from Task t where t.id = :id")
+    int removeById(@Param("id") Long id);
+
 }
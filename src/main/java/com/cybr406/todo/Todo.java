@@ -1,5 +1,12 @@
 package com.cybr406.todo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import java.util.ArrayList;
@@ -7,6 +14,8 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = TodoCache.TODOS)
 public class Todo {
 
     @Id
@@ -17,13 +26,40 @@ public class Todo {
     @NotBlank
     private String author;
 
+    /**
+     * The details are split over a VARCHAR and, when they don't fit in it, a CLOB. See DetailsColumns. Only
+     * getDetails and setDetails deal with the split. The large object field keeps the name details, so it is still
+     * the @Lob details field it has always been; it just only holds details too long for DETAILS.
+     */
+    @Column(name = "DETAILS", length = DetailsColumns.INLINE_LENGTH)
+    private String detailsInline;
+
     @Lob
-    @NotBlank
+    @Column(name = "DETAILS_OVERFLOW")
     private String details;
 
+    /**
+     * Lazy, but batched: the first time any todo's tasks are read, Hibernate loads the tasks of up to 100 todos in the
+     * same persistence context with one IN query. Serializing a page of todos costs one query for all of their tasks
+     * instead of one per todo.
+     *
+     * Deleting a todo deletes its tasks in the database (see TodoDeleter). Liquibase's foreign key already does that;
+     * @OnDelete makes the schema Hibernate generates when Liquibase is off do the same.
+     */
     @OneToMany( mappedBy = "todo")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = TodoCache.TODO_TASKS)
     private List<Task> tasks = new ArrayList<>();
 
+    /**
+     * Goes up by one whenever the todo or its list of tasks changes (see TodoTaskWriter), so it is the todo's ETag. Not
+     * part of the JSON, clients get it from the ETag header.
+     */
+    @Version
+    @JsonIgnore
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -40,12 +76,14 @@ public class Todo {
         this.author = author;
     }
 
+    @NotBlank
     public String getDetails() {
-        return details;
+        return DetailsColumns.join(detailsInline, details);
     }
 
     public void setDetails(String details) {
-        this.details = details;
+        this.detailsInline = DetailsColumns.inline(details);
+        this.details = DetailsColumns.overflow(details);
     }
 
     public List<Task> getTasks() {
@@ -56,6 +94,14 @@ public class Todo {
         this.tasks = tasks;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -63,13 +109,13 @@ public class Todo {
         Todo todo = (Todo) o;
         return Objects.equals(id, todo.id) &&
                 Objects.equals(author, todo.author) &&
-                Objects.equals(details, todo.details) &&
+                Objects.equals(getDetails(), todo.getDetails()) &&
                 Objects.equals(tasks, todo.tasks);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, author, details, tasks);
+        return Objects.hash(id, author, getDetails(), tasks);
     }
 
 }
@@ -0,0 +1,138 @@
+package com.cybr406.todo;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Inserts many todos, and their tasks, with JDBC batches instead of one save per todo.
+ *
+ * Todo and Task ids are IDENTITY columns, and Hibernate turns off insert batching for those because it needs each id
+ * back before it can insert the next row. Plain JDBC doesn't have that problem: a whole batch of inserts is sent at
+ * once and the generated ids are read back from the statement afterwards, in the same order as the rows.
+ */
+@Component
+public class TodoBulkWriter {
+
+    private static final String INSERT_TODO = "INSERT INTO TODO (AUTHOR, DETAILS, DETAILS_OVERFLOW, VERSION) VALUES (?, ?, ?, 0)";
+
+    private static final String INSERT_TASK = "INSERT INTO TASK (TODO_ID, COMPLETED, DETAILS, DETAILS_OVERFLOW) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TodoCache todoCache;
+
+    private final ObjectProvider<Listener> listeners;
+
+    private final int batchSize;
+
+    public TodoBulkWriter(JdbcTemplate jdbcTemplate, TodoCache todoCache, ObjectProvider<Listener> listeners,
+                          @Value("${todo.bulk.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.todoCache = todoCache;
+        this.listeners = listeners;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Inserts every todo from the iterator, batchSize at a time, and returns the new ids in the same order. Todos are
+     * only held in memory one batch at a time, so the iterator can stream them straight from a request body.
+     *
+     * Everything runs in one transaction. If any todo is invalid nothing is saved.
+     *
+     * @throws IllegalArgumentException if a todo has a blank author or details.
+     */
+    @Transactional
+    public List<Long> createAll(Iterator<Todo> todos) {
+        todoCache.evictQueries();
+        List<Long> created = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            List<Long> ids = new ArrayList<>();
+            List<Todo> batch = new ArrayList<>(batchSize);
+
+            try (PreparedStatement insertTodo = connection.prepareStatement(INSERT_TODO, new String[] {"ID"});
+                 PreparedStatement insertTask = connection.prepareStatement(INSERT_TASK)) {
+                while (todos.hasNext()) {
+                    batch.add(validate(todos.next()));
+                    if (batch.size() == batchSize || !todos.hasNext()) {
+                        insert(insertTodo, insertTask, batch, ids);
+                        batch.clear();
+                    }
+                }
+            }
+
+            return ids;
+        });
+        AfterCommit.run(() -> listeners.orderedStream().forEach(listener -> listener.todosInserted(created)));
+        return created;
+    }
+
+    /**
+     * Something that needs to know about todos that were inserted behind Hibernate's back.
+     */
+    public interface Listener {
+
+        /**
+         * Called once the todos, and the tasks they were created with, are committed.
+         */
+        void todosInserted(List<Long> ids);
+
+    }
+
+    private static Todo validate(Todo todo) {
+        if (todo == null || isBlank(todo.getAuthor()) || isBlank(todo.getDetails()))
+            throw new IllegalArgumentException("Every todo needs an author and details.");
+        return todo;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private void insert(PreparedStatement insertTodo, PreparedStatement insertTask, List<Todo> batch, List<Long> ids)
+            throws SQLException {
+        for (Todo todo : batch) {
+            insertTodo.setString(1, todo.getAuthor());
+            insertTodo.setString(2, DetailsColumns.inline(todo.getDetails()));
+            insertTodo.setString(3, DetailsColumns.overflow(todo.getDetails()));
+            insertTodo.addBatch();
+        }
+        insertTodo.executeBatch();
+
+        int tasks = 0;
+        try (ResultSet keys = insertTodo.getGeneratedKeys()) {
+            for (Todo todo : batch) {
+                if (!keys.next())
+                    throw new SQLException("The database returned fewer ids than todos inserted.");
+                todo.setId(keys.getLong(1));
+                ids.add(todo.getId());
+
+                for (Task task : todo.getTasks()) {
+                    insertTask.setLong(1, todo.getId());
+                    if (task.getCompleted() == null)
+                        insertTask.setNull(2, Types.BOOLEAN);
+                    else
+                        insertTask.setBoolean(2, task.getCompleted());
+                    insertTask.setString(3, DetailsColumns.inline(task.getDetails()));
+                    insertTask.setString(4, DetailsColumns.overflow(task.getDetails()));
+                    insertTask.addBatch();
+
+                    // Tasks aren't limited per todo, so flush them on their own schedule.
+                    if (++tasks % batchSize == 0)
+                        insertTask.executeBatch();
+                }
+            }
+        }
+
+        if (tasks % batchSize != 0)
+            insertTask.executeBatch();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.cybr406.todo;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Names the Hibernate second-level cache regions for todos and tasks, and evicts the entries Hibernate can't keep up to
+ * date by itself.
+ *
+ * The cache is off unless the "cache" profile is active (see application-cache.properties and application.conf). When it
+ * is off every method here does nothing.
+ *
+ * Hibernate keeps its own cache consistent for anything done through an EntityManager, but not when rows change behind
+ * its back:
+ *
+ * <ul>
+ *     <li>Todo.tasks is the inverse side of Task.todo, so saving or deleting a Task doesn't touch the cached list of
+ *     tasks on its todo.</li>
+ *     <li>Deleting a todo deletes its tasks through the ON DELETE CASCADE foreign key, which Hibernate never sees.</li>
+ *     <li>TodoBulkWriter inserts with plain JDBC, so cached query results don't know about the new rows.</li>
+ * </ul>
+ */
+@Component
+public class TodoCache {
+
+    public static final String TODOS = "todos";
+
+    public static final String TASKS = "tasks";
+
+    public static final String TODO_TASKS = "todo-tasks";
+
+    private static final String TASKS_ROLE = Todo.class.getName() + ".tasks";
+
+    private final Cache cache;
+
+    private final boolean enabled;
+
+    public TodoCache(EntityManagerFactory entityManagerFactory) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        cache = sessionFactory.getCache();
+        enabled = sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Call when a task is added to or removed from a todo.
+     */
+    public void evictTasksOf(Long todoId) {
+        afterCommit(() -> cache.evictCollectionData(TASKS_ROLE, todoId));
+    }
+
+    /**
+     * Call when a todo is deleted. Its tasks are deleted by the database, and there's no cheap way to know their ids, so
+     * the whole task region goes.
+     */
+    public void evictTodo(Long todoId) {
+        afterCommit(() -> {
+            cache.evictEntityData(Todo.class, todoId);
+            cache.evictCollectionData(TASKS_ROLE, todoId);
+            cache.evictEntityData(Task.class);
+        });
+    }
+
+    /**
+     * Call when todos or tasks were inserted without going through Hibernate.
+     */
+    public void evictQueries() {
+        afterCommit(cache::evictQueryRegions);
+    }
+
+    /**
+     * Evicts now and again once the current transaction commits, so a reader running alongside can't put the old data
+     * back before the change is visible.
+     */
+    private static void afterCommit(Runnable eviction) {
+        eviction.run();
+        AfterCommit.register(eviction);
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Something that happened to a todo or one of its tasks, as sent by GET /todos/changes. Events only say what changed,
+ * not what it looks like now: clients that care fetch the todo, and can use its ETag to do that cheaply.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TodoChangeEvent {
+
+    public enum Type {
+        CREATED, DELETED, TASK_ADDED, TASK_DELETED
+    }
+
+    private final long sequence;
+
+    private final Type type;
+
+    private final Long todoId;
+
+    private final Long taskId;
+
+    public TodoChangeEvent(long sequence, Type type, Long todoId, Long taskId) {
+        this.sequence = sequence;
+        this.type = type;
+        this.todoId = todoId;
+        this.taskId = taskId;
+    }
+
+    /**
+     * Goes up by one with every event, starting at 1 each time the application starts.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The todo that was changed. Null only for a TASK_DELETED event about a task that didn't belong to a todo.
+     */
+    public Long getTodoId() {
+        return todoId;
+    }
+
+    /**
+     * The task that was added or deleted, or null if the event is about the todo itself.
+     */
+    public Long getTaskId() {
+        return taskId;
+    }
+
+}
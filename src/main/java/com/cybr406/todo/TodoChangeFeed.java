@@ -0,0 +1,287 @@
+package com.cybr406.todo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Numbers every change to a todo or its tasks, keeps the last few in memory and sends them to subscribers as
+ * server-sent events (see GET /todos/changes). Changes are published by JpaTodoChanges or RepositoryTodoChanges,
+ * depending on todo.changes.source.
+ *
+ * The last todo.changes.buffer-size events are kept in a ring buffer, so a client that was disconnected can resume from
+ * the last sequence it saw. If that event has already been overwritten, the client gets a "reset" event instead and
+ * has to reload what it shows, then carries on from there.
+ *
+ * Events are never sent by the request that made the change, so subscribers don't slow down writes. Sending to a
+ * client blocks while its connection is full, so every subscriber is sent to by its own task on a sender pool, one task
+ * at a time, and a slow client only holds up itself. A subscriber that falls more than todo.changes.max-lag events
+ * behind the ones published since it subscribed is closed. Its EventSource reconnects with Last-Event-ID and resumes
+ * from the buffer, or gets a reset.
+ *
+ * Every todo.changes.heartbeat milliseconds an SSE comment is sent to every subscriber, which keeps proxies from closing
+ * idle connections and notices clients that have gone away.
+ */
+@Component
+public class TodoChangeFeed implements Closeable {
+
+    private final TodoChangeEvent[] buffer;
+
+    /**
+     * The sequence of the newest event. The event with sequence s is at buffer[s % buffer.length].
+     */
+    private long lastSequence;
+
+    private final long maxLag;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Decides who needs sending to and who has fallen behind, and runs the heartbeat. It never sends anything itself, so
+     * it can't be held up by a client.
+     */
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-changes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Does the sending. There is at most one task per subscriber, so at most one thread per subscriber, and idle threads
+     * go away after a minute.
+     */
+    private final ExecutorService senders = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "todo-changes-send-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Whether a delivery round is already waiting to run, so a burst of changes only schedules one.
+     */
+    private final AtomicBoolean deliveryPending = new AtomicBoolean();
+
+    public TodoChangeFeed(int bufferSize, long heartbeat) {
+        this(bufferSize, heartbeat, bufferSize);
+    }
+
+    @Autowired
+    public TodoChangeFeed(@Value("${todo.changes.buffer-size:10000}") int bufferSize,
+                          @Value("${todo.changes.heartbeat:15000}") long heartbeat,
+                          @Value("${todo.changes.max-lag:1000}") long maxLag) {
+        buffer = new TodoChangeEvent[Math.max(1, bufferSize)];
+        this.maxLag = Math.max(1, maxLag);
+        dispatcher.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Numbers the change, keeps it and sends it to every subscriber. Only call this once the change is committed.
+     */
+    public TodoChangeEvent publish(TodoChangeEvent.Type type, Long todoId, Long taskId) {
+        TodoChangeEvent event;
+        synchronized (this) {
+            event = new TodoChangeEvent(lastSequence + 1, type, todoId, taskId);
+            buffer[(int) (event.getSequence() % buffer.length)] = event;
+            lastSequence = event.getSequence();
+        }
+        if (!subscribers.isEmpty())
+            scheduleDelivery();
+        return event;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * The events after the given sequence, oldest first, or null if some of them are no longer in the buffer. A sequence
+     * from before the application was restarted can be larger than the last one, and gets null too.
+     */
+    public synchronized List<TodoChangeEvent> since(long after) {
+        if (after < 0 || after > lastSequence || after < lastSequence - buffer.length)
+            return null;
+
+        List<TodoChangeEvent> events = new ArrayList<>((int) (lastSequence - after));
+        for (long sequence = after + 1; sequence <= lastSequence; sequence++)
+            events.add(buffer[(int) (sequence % buffer.length)]);
+        return events;
+    }
+
+    /**
+     * Starts sending events after the given sequence, or from now on if it is null, to a new SSE stream. Each event's
+     * SSE id is its sequence, which is what a reconnecting EventSource sends back in Last-Event-ID.
+     */
+    public SseEmitter subscribe(Long after) {
+        return subscribe(new SseEmitter(), after);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, Long after) {
+        Subscriber subscriber = new Subscriber(emitter, after == null ? getLastSequence() : after);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        subscribers.add(subscriber);
+        scheduleDelivery();
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void scheduleDelivery() {
+        if (deliveryPending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::deliver);
+            } catch (RejectedExecutionException e) {
+                // Closed.
+            }
+        }
+    }
+
+    private void deliver() {
+        // Cleared first, so a change published while this round runs schedules another one.
+        deliveryPending.set(false);
+        long last = getLastSequence();
+        for (Subscriber subscriber : subscribers) {
+            // Events from before it subscribed, that it is catching up on, don't count.
+            if (last - Math.max(subscriber.delivered, subscriber.joined) > maxLag)
+                subscriber.fallBehind();
+            else
+                subscriber.schedule();
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers)
+            subscriber.emitter.complete();
+        subscribers.clear();
+    }
+
+    /**
+     * One SSE stream, and the sequence of the last event it was sent. Only one of its tasks runs at a time: schedule
+     * counts the requests for one, and the task that is running keeps going until it has caught up with all of them.
+     */
+    private class Subscriber {
+
+        final SseEmitter emitter;
+
+        final long joined = getLastSequence();
+
+        final AtomicInteger requested = new AtomicInteger();
+
+        volatile long delivered;
+
+        volatile boolean heartbeatDue;
+
+        volatile boolean behind;
+
+        Subscriber(SseEmitter emitter, long after) {
+            this.emitter = emitter;
+            this.delivered = after;
+        }
+
+        void schedule() {
+            if (requested.getAndIncrement() == 0) {
+                try {
+                    senders.execute(this::run);
+                } catch (RejectedExecutionException e) {
+                    // Closed.
+                }
+            }
+        }
+
+        /**
+         * Stops sending to this subscriber. Its emitter is completed by its own task, which may still be stuck in a
+         * send, so the dispatcher doesn't wait for it.
+         */
+        void fallBehind() {
+            subscribers.remove(this);
+            behind = true;
+            schedule();
+        }
+
+        private void run() {
+            int handled = requested.get();
+            while (true) {
+                if (behind) {
+                    emitter.complete();
+                    return;
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    send(SseEmitter.event().comment("heartbeat"));
+                }
+                deliver();
+
+                handled = requested.addAndGet(-handled);
+                if (handled == 0)
+                    return;
+            }
+        }
+
+        private void deliver() {
+            List<TodoChangeEvent> events = since(delivered);
+            if (events == null) {
+                long last = getLastSequence();
+                if (send(SseEmitter.event().name("reset").id(String.valueOf(last)).data(last)))
+                    delivered = last;
+                return;
+            }
+
+            for (TodoChangeEvent event : events) {
+                if (behind || !send(SseEmitter.event()
+                        .id(String.valueOf(event.getSequence()))
+                        .data(event, MediaType.APPLICATION_JSON)))
+                    return;
+                delivered = event.getSequence();
+            }
+        }
+
+        /**
+         * Sends the event, or drops the subscriber if its client has gone away.
+         */
+        boolean send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return false;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.cybr406.todo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of todos from GET /todos?after=, for clients that page with a cursor instead of a page number.
+ *
+ * next is an opaque cursor to pass as after to get the following page, or null when this is the last page. There is
+ * no total count, since working that out is exactly the extra query cursor paging is meant to avoid.
+ */
+public class TodoCursorPage {
+
+    private static final String CURSOR_PREFIX = "todo:";
+
+    private List<Todo> content;
+
+    private int size;
+
+    private String next;
+
+    public TodoCursorPage(List<Todo> content, int size, String next) {
+        this.content = content;
+        this.size = size;
+        this.next = next;
+    }
+
+    /**
+     * Turns the id of the last todo on a page into a cursor. Clients shouldn't rely on what's inside it.
+     */
+    public static String encodeCursor(long id) {
+        byte[] bytes = (CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Reads the todo id back out of a cursor. An empty cursor means start from the beginning.
+     *
+     * @throws IllegalArgumentException if the cursor wasn't made by encodeCursor.
+     */
+    public static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return 0;
+
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (!decoded.startsWith(CURSOR_PREFIX))
+            throw new IllegalArgumentException("Not a todo cursor: " + cursor);
+        long id = Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+        if (id < 0)
+            throw new IllegalArgumentException("Not a todo cursor: " + cursor);
+        return id;
+    }
+
+    public List<Todo> getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.cybr406.todo;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Deletes single todos and tasks with one DELETE each, instead of checking that the row exists, loading it and then
+ * deleting it. How many rows the DELETE matched says whether there was one.
+ *
+ * The DELETEs are bulk JPQL statements, so Hibernate never sees the entities go and doesn't fire its delete events.
+ * Anything that listens for those is told through Listener instead, once the transaction has committed. Hibernate does
+ * drop whatever the second-level cache holds for the table it deletes from.
+ */
+@Component
+public class TodoDeleter {
+
+    private final TodoJpaRepository todoJpaRepository;
+
+    private final TaskJpaRepository taskJpaRepository;
+
+    private final TodoCache todoCache;
+
+    private final ObjectProvider<Listener> listeners;
+
+    public TodoDeleter(TodoJpaRepository todoJpaRepository, TaskJpaRepository taskJpaRepository, TodoCache todoCache,
+                       ObjectProvider<Listener> listeners) {
+        this.todoJpaRepository = todoJpaRepository;
+        this.taskJpaRepository = taskJpaRepository;
+        this.todoCache = todoCache;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Deletes the todo, and through the ON DELETE CASCADE foreign key its tasks, and returns whether there was one.
+     */
+    @Transactional
+    public boolean deleteTodo(long id) {
+        if (todoJpaRepository.removeById(id) == 0)
+            return false;
+
+        todoCache.evictTodo(id);
+        AfterCommit.run(() -> listeners.orderedStream().forEach(listener -> listener.todoDeleted(id)));
+        return true;
+    }
+
+    /**
+     * Deletes the task, bumping its todo's version, and returns whether there was one.
+     *
+     * The todo's id is read first, on its own, because the cache and the listeners need it. The version goes up with a
+     * plain UPDATE rather than an optimistic lock, so a task added to the todo at the same moment can fail with a
+     * conflict, but another delete never does.
+     */
+    @Transactional
+    public boolean deleteTask(long taskId) {
+        Optional<Long> todoId = taskJpaRepository.findTodoIdById(taskId);
+        if (taskJpaRepository.removeById(taskId) == 0)
+            return false;
+
+        todoId.ifPresent(id -> {
+            todoJpaRepository.incrementVersion(id);
+            todoCache.evictTasksOf(id);
+        });
+        Long owner = todoId.orElse(null);
+        AfterCommit.run(() -> listeners.orderedStream().forEach(listener -> listener.taskDeleted(owner, taskId)));
+        return true;
+    }
+
+    /**
+     * Something that needs to know about todos and tasks that were deleted behind Hibernate's back.
+     */
+    public interface Listener {
+
+        /**
+         * Called once the todo, and with it its tasks, is deleted and committed.
+         */
+        void todoDeleted(long id);
+
+        /**
+         * Called once the task is deleted and committed. todoId is null if the task didn't belong to a todo.
+         */
+        void taskDeleted(Long todoId, long taskId);
+
+    }
+
+}
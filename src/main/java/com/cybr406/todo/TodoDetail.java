@@ -0,0 +1,46 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A todo as listed by GET /todos?view=detail: the same fields as a Todo, with its tasks, but read as plain rows by JPQL
+ * constructor expressions (see TodoJpaRepository.findDetails and TaskJpaRepository.findDetailsByTodoIdIn) instead of
+ * as entities. Fields that are null are left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TodoDetail {
+
+    private final Long id;
+
+    private final String author;
+
+    private final String details;
+
+    private final List<TaskDetail> tasks = new ArrayList<>();
+
+    public TodoDetail(Long id, String author, String detailsInline, String detailsOverflow) {
+        this.id = id;
+        this.author = author;
+        this.details = DetailsColumns.join(detailsInline, detailsOverflow);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    public List<TaskDetail> getTasks() {
+        return tasks;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.time.Duration;
+
+/**
+ * Writes every todo, with its tasks, as newline delimited JSON: one todo per line, in id order, in the same shape GET
+ * /todos/{id} uses.
+ *
+ * Nothing is collected into lists. Two forward-only result sets are read side by side, todos ordered by id and tasks
+ * ordered by todo id, and merged as they go, so only the current todo and the driver's fetch buffers are ever in
+ * memory. Both orders come straight from an index, so the database doesn't have to sort anything either. On H2 the
+ * queries also run with LAZY_QUERY_EXECUTION, without which H2 builds the whole result before returning the first row.
+ *
+ * The export runs in one read-only, repeatable read transaction so every task it writes belongs to a todo it writes.
+ */
+@Component
+public class TodoExporter {
+
+    private static final String SELECT_TODOS = "SELECT ID, AUTHOR, DETAILS, DETAILS_OVERFLOW FROM TODO ORDER BY ID";
+
+    private static final String SELECT_TASKS =
+            "SELECT ID, TODO_ID, COMPLETED, DETAILS, DETAILS_OVERFLOW FROM TASK WHERE TODO_ID IS NOT NULL "
+                    + "ORDER BY TODO_ID, ID";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final int fetchSize;
+
+    private final Duration timeout;
+
+    public TodoExporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        ObjectMapper objectMapper, @Value("${todo.export.fetch-size:1000}") int fetchSize,
+                        @Value("${todo.export.timeout:1h}") Duration timeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.timeout = timeout;
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * How long GET /todos/export may stream before the request times out. Only the export gets this long; see
+     * AsyncRequestTimeouts.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Writes the export to out and returns how many todos were written. out is flushed but not closed.
+     */
+    public long export(OutputStream out) {
+        Long todos = transactionTemplate.execute(status ->
+                jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                    boolean h2 = "H2".equals(connection.getMetaData().getDatabaseProductName());
+                    if (h2)
+                        setLazy(connection, true);
+                    try {
+                        return export(connection, out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        if (h2)
+                            setLazy(connection, false);
+                    }
+                }));
+        return todos == null ? 0 : todos;
+    }
+
+    private static void setLazy(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? 1 : 0));
+        }
+    }
+
+    private long export(Connection connection, OutputStream out) throws SQLException, IOException {
+        long count = 0;
+
+        try (PreparedStatement selectTodos = prepare(connection, SELECT_TODOS);
+             PreparedStatement selectTasks = prepare(connection, SELECT_TASKS);
+             ResultSet todos = selectTodos.executeQuery();
+             ResultSet tasks = selectTasks.executeQuery();
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            boolean moreTasks = tasks.next();
+
+            while (todos.next()) {
+                long todoId = todos.getLong(1);
+                json.writeStartObject();
+                json.writeNumberField("id", todoId);
+                json.writeStringField("author", todos.getString(2));
+                json.writeStringField("details", DetailsColumns.join(todos.getString(3), todos.getString(4)));
+                json.writeArrayFieldStart("tasks");
+
+                // Tasks are in todo id order too, so this todo's tasks are next in line.
+                while (moreTasks && tasks.getLong(2) < todoId)
+                    moreTasks = tasks.next();
+                while (moreTasks && tasks.getLong(2) == todoId) {
+                    json.writeStartObject();
+                    json.writeNumberField("id", tasks.getLong(1));
+                    boolean completed = tasks.getBoolean(3);
+                    if (tasks.wasNull())
+                        json.writeNullField("completed");
+                    else
+                        json.writeBooleanField("completed", completed);
+                    json.writeStringField("details", DetailsColumns.join(tasks.getString(4), tasks.getString(5)));
+                    json.writeEndObject();
+                    moreTasks = tasks.next();
+                }
+
+                json.writeEndArray();
+                json.writeEndObject();
+                json.writeRaw('\n');
+                count++;
+            }
+
+            json.flush();
+        }
+
+        return count;
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+}
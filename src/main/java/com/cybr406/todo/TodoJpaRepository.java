@@ -1,9 +1,90 @@
 package com.cybr406.todo;
 
 import com.cybr406.todo.Task;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Page;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TodoJpaRepository extends JpaRepository<Todo,Long> {
+
+    /**
+     * The list queries may be answered from the query cache when the "cache" profile is on. Hibernate drops the cached
+     * results whenever the TODO table changes.
+     */
+    @Override
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    Page<Todo> findAll(Pageable pageable);
+
+    /**
+     * Seeks to the first todo after the given id using the primary key index. Returning a List instead of a Page means
+     * Spring Data only applies the Pageable's limit, without running a count query.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<Todo> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Same seek as findByIdGreaterThanOrderByIdAsc, for one author's todos. TODO_AUTHOR_ID_INDEX on (AUTHOR, ID) lets
+     * the database jump to the author and read their todos already in id order. Ordering by author as well changes
+     * nothing about the result, but H2 only skips the sort when the ORDER BY matches the index column for column.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    @Query("select t from Todo t where t.author = :author and t.id > :id order by t.author, t.id")
+    List<Todo> findByAuthorAndIdGreaterThanOrderByIdAsc(@Param("author") String author, @Param("id") Long id,
+                                                        Pageable pageable);
+
+    /**
+     * Same as findById, but joins in the tasks so the todo and everything it will be serialized with come back in one
+     * query. Written out in JPQL because the same thing as a derived query with an @EntityGraph is rebuilt from the
+     * criteria API on every call, which made it about ten times slower.
+     */
+    @Query("select t from Todo t left join fetch t.tasks where t.id = :id")
+    Optional<Todo> findWithTasksById(@Param("id") Long id);
+
+    /**
+     * Just the version of a todo, to answer a conditional GET without loading the todo or its tasks.
+     */
+    @Query("select t.version from Todo t where t.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * A page of todos read into TodoSummary rows instead of entities, so nothing is added to the persistence context.
+     * How many tasks each has is filled in afterwards, for the whole page at once, with TaskJpaRepository.countByTodoIdIn.
+     */
+    @Query(value = "select new com.cybr406.todo.TodoSummary(t.id, t.author, t.detailsInline, t.details) from Todo t",
+            countQuery = "select count(t) from Todo t")
+    Page<TodoSummary> findSummaries(Pageable pageable);
+
+    /**
+     * A page of todos read into TodoDetail rows instead of entities. Their tasks are read separately, for the whole page
+     * at once, with TaskJpaRepository.findDetailsByTodoIdIn.
+     */
+    @Query(value = "select new com.cybr406.todo.TodoDetail(t.id, t.author, t.detailsInline, t.details) from Todo t",
+            countQuery = "select count(t) from Todo t")
+    Page<TodoDetail> findDetails(Pageable pageable);
+
+    /**
+     * Deletes the todo with one DELETE and returns how many rows it deleted, 0 or 1. Unlike deleteById, nothing is
+     * loaded first: its tasks go through the ON DELETE CASCADE foreign key.
+     */
+    @Modifying
+    @Query("delete from Todo t where t.id = :id")
+    int removeById(@Param("id") Long id);
+
+    /**
+     * Bumps the version of the todo, as if it had been changed through JPA, and returns how many rows it updated.
+     */
+    @Modifying
+    @Query("update Todo t set t.version = t.version + 1 where t.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
 }
@@ -0,0 +1,43 @@
+package com.cybr406.todo;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Something that wants to hear from Hibernate about todos and tasks inserted or deleted through JPA, once the
+ * transaction that did it has committed. Nothing is heard about a transaction that rolled back.
+ *
+ * Hibernate has no way to pick these up from the application context, so implementations call register with
+ * themselves, usually at the end of their constructor.
+ */
+public interface TodoPostCommitListener extends PostCommitInsertEventListener, PostCommitDeleteEventListener {
+
+    /**
+     * Adds the listener to the insert and delete listeners of the session factory behind entityManagerFactory.
+     */
+    static void register(EntityManagerFactory entityManagerFactory, TodoPostCommitListener listener) {
+        EventListenerRegistry listeners = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+
+    @Override
+    default void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    default void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    default boolean requiresPostCommitHanding(EntityPersister persister) {
+        return persister.getMappedClass() == Todo.class || persister.getMappedClass() == Task.class;
+    }
+
+}
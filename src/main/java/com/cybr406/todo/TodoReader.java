@@ -0,0 +1,132 @@
+package com.cybr406.todo;
+
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Everything the GET endpoints of TodoRestController read, each in a read-only transaction.
+ *
+ * Read-only means Hibernate loads the entities read-only and never flushes: it keeps no snapshot of them to compare
+ * against at the end, and doesn't dirty check anything. It also means the transaction may run on a read replica when
+ * one is configured (see ReadReplicaConfiguration), while every write keeps going to the primary.
+ *
+ * The tasks of the todos returned are loaded before the transaction ends, rather than while the response is being
+ * written, so they are read the same way and from the same database as the todos.
+ *
+ * Pages sorted by details are sorted by the DETAILS column, the same as ReactiveTodoRepository does. The details field
+ * of Todo is the DETAILS_OVERFLOW CLOB, which is null unless the details are too long for DETAILS, so sorting by the
+ * field itself would leave almost every todo in id order.
+ */
+@Component
+@Transactional(readOnly = true)
+public class TodoReader {
+
+    private final TodoJpaRepository todoJpaRepository;
+
+    private final TaskJpaRepository taskJpaRepository;
+
+    private final TodoCache todoCache;
+
+    public TodoReader(TodoJpaRepository todoJpaRepository, TaskJpaRepository taskJpaRepository, TodoCache todoCache) {
+        this.todoJpaRepository = todoJpaRepository;
+        this.taskJpaRepository = taskJpaRepository;
+        this.todoCache = todoCache;
+    }
+
+    public Page<Todo> findAll(Pageable page) {
+        return withTasks(todoJpaRepository.findAll(sortable(page)));
+    }
+
+    /**
+     * The todo with its tasks. With the second-level cache on, findById is answered from the todo and task caches
+     * without any SQL at all. Without it, one join query beats loading the todo and then its tasks.
+     */
+    public Optional<Todo> findWithTasks(Long id) {
+        return todoCache.isEnabled()
+                ? todoJpaRepository.findById(id).map(this::withTasks)
+                : todoJpaRepository.findWithTasksById(id);
+    }
+
+    public Optional<Long> findVersion(Long id) {
+        return todoJpaRepository.findVersionById(id);
+    }
+
+    public List<Todo> findAfter(long afterId, Pageable page) {
+        return withTasks(todoJpaRepository.findByIdGreaterThanOrderByIdAsc(afterId, page));
+    }
+
+    public List<Todo> findByAuthorAfter(String author, long afterId, Pageable page) {
+        return withTasks(todoJpaRepository.findByAuthorAndIdGreaterThanOrderByIdAsc(author, afterId, page));
+    }
+
+    /**
+     * The page of todos, then how many tasks each of them has with one more query.
+     */
+    public Page<TodoSummary> findSummaries(Pageable page) {
+        Page<TodoSummary> todos = todoJpaRepository.findSummaries(sortable(page));
+        if (todos.isEmpty())
+            return todos;
+
+        Map<Long, TodoSummary> byId = new HashMap<>();
+        for (TodoSummary todo : todos)
+            byId.put(todo.getId(), todo);
+        for (TaskCount count : taskJpaRepository.countByTodoIdIn(byId.keySet()))
+            byId.get(count.getTodoId()).setTaskCount(count.getTasks());
+        return todos;
+    }
+
+    /**
+     * The page of todos, then the tasks of all of them with one more query.
+     */
+    public Page<TodoDetail> findDetails(Pageable page) {
+        Page<TodoDetail> todos = todoJpaRepository.findDetails(sortable(page));
+        if (todos.isEmpty())
+            return todos;
+
+        Map<Long, TodoDetail> byId = new HashMap<>();
+        for (TodoDetail todo : todos)
+            byId.put(todo.getId(), todo);
+        for (TaskDetail task : taskJpaRepository.findDetailsByTodoIdIn(byId.keySet()))
+            byId.get(task.getTodoId()).getTasks().add(task);
+        return todos;
+    }
+
+    /**
+     * Swaps the details sort property for detailsInline, the field mapped to DETAILS. Everything else is left alone.
+     */
+    private static Pageable sortable(Pageable page) {
+        if (page.isUnpaged() || page.getSort().getOrderFor("details") == null)
+            return page;
+
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : page.getSort())
+            orders.add(order.getProperty().equals("details") ? order.withProperty("detailsInline") : order);
+        return PageRequest.of(page.getPageNumber(), page.getPageSize(), Sort.by(orders));
+    }
+
+    /**
+     * Initializing the first todo's tasks loads those of the whole page, thanks to Todo.tasks' @BatchSize.
+     */
+    private <T extends Iterable<Todo>> T withTasks(T todos) {
+        for (Todo todo : todos)
+            Hibernate.initialize(todo.getTasks());
+        return todos;
+    }
+
+    private Todo withTasks(Todo todo) {
+        Hibernate.initialize(todo.getTasks());
+        return todo;
+    }
+
+}
@@ -2,6 +2,7 @@ package com.cybr406.todo;
 
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 @Repository
@@ -13,12 +14,47 @@ public interface TodoRepository {
 
     Optional<Todo> find(Long todoId);
 
+    /**
+     * The id of the todo that owns the task, or empty if there is no such task.
+     */
+    Optional<Long> findTodoIdOfTask(Long taskId);
+
     List<Todo> findAll(int page, int size);
 
+    /**
+     * Returns up to size todos with an id greater than afterId, in id order. Unlike findAll, the cost doesn't grow with
+     * how far into the list the page is: pass the id of the last todo of one page to get the next. Use 0 for the first
+     * page.
+     */
+    List<Todo> findAllAfter(long afterId, int size);
+
+    /**
+     * Same as findAllAfter, but only todos by the given author.
+     */
+    List<Todo> findByAuthorAfter(String author, long afterId, int size);
+
     Todo addTask(Long todoId, Task task);
 
+    /**
+     * Adds every task to the todo in one go and returns the todo. Throws NoSuchElementException, adding nothing, if
+     * there is no such todo.
+     */
+    Todo addTasks(Long todoId, List<Task> tasks);
+
+    /**
+     * Marks every task completed. Each todo that owns some of the tasks is locked or visited once, however many of its
+     * tasks are in the list. Throws NoSuchElementException, changing nothing, if any of the tasks doesn't exist.
+     */
+    void completeTasks(Collection<Long> taskIds);
+
     void delete(Long id);
 
     void deleteTask(Long id);
 
+    /**
+     * Deletes every task, visiting each owning todo once like completeTasks. Throws NoSuchElementException, deleting
+     * nothing, if any of the tasks doesn't exist.
+     */
+    void deleteTasks(Collection<Long> taskIds);
+
 }
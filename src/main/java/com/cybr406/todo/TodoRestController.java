@@ -1,23 +1,71 @@
 package com.cybr406.todo;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class TodoRestController {
+
+    /**
+     * The same limit Spring Data puts on the size of a Pageable.
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     TodoJpaRepository todoJpaRepository;
 
     @Autowired
-    TaskJpaRepository taskJpaRepository;
+    TodoReader todoReader;
+
+    @Autowired
+    TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    TodoExporter todoExporter;
+
+    @Autowired
+    TodoTaskWriter todoTaskWriter;
+
+    @Autowired
+    TodoDeleter todoDeleter;
+
+    @Autowired
+    TodoChangeFeed todoChangeFeed;
+
+    @Autowired
+    TodoSearch todoSearch;
+
+    @Autowired
+    ObjectMapper objectMapper;
 
     @PostMapping("/todos")
     public ResponseEntity<Todo> createTodo(@Valid @RequestBody Todo todo) {
@@ -28,12 +76,90 @@ public class TodoRestController {
         }
 
     }
+    /**
+     * Creates many todos (with their tasks) in one request and one transaction, using batched inserts. The body is a
+     * JSON array of todos. Responds with the new ids in the same order, or 400 without saving anything if any todo is
+     * invalid.
+     */
+    @PostMapping(path = "/todos/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Long>> createTodos(@RequestBody List<Todo> todos) {
+        try {
+            return new ResponseEntity<>(todoBulkWriter.createAll(todos.iterator()), HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Same as the JSON array version, but reads newline delimited JSON, one todo per line. The todos are inserted as they
+     * are read instead of being parsed into one big list first, so very large imports don't need much memory.
+     */
+    @PostMapping(path = "/todos/bulk", consumes = NDJSON)
+    public ResponseEntity<List<Long>> createTodosFromNdjson(InputStream body) throws IOException {
+        try (MappingIterator<Todo> todos = objectMapper.readerFor(Todo.class).readValues(body)) {
+            return new ResponseEntity<>(todoBulkWriter.createAll(todos), HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse errors (and a body that is cut short) in unchecked exceptions.
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof IOException)
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            throw e;
+        }
+    }
+
+    /**
+     * Streams every todo and its tasks as newline delimited JSON, one todo per line. Rows go from the database to the
+     * response as they are read, so the export takes the same memory whether there are ten todos or ten million. It
+     * has todo.export.timeout to finish, rather than the default async timeout every other request gets.
+     */
+    @GetMapping(path = "/todos/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> export(HttpServletRequest request) {
+        AsyncRequestTimeouts.set(request, todoExporter.getTimeout());
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(todoExporter::export);
+    }
+
+    /**
+     * Pushes every change to todos and tasks as server-sent events, instead of clients polling for them. Starts with the
+     * changes after the sequence in Last-Event-ID or after, if either is given and still remembered, and otherwise with
+     * the next change. See TodoChangeFeed.
+     */
+    @GetMapping(path = "/todos/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> changes(@RequestParam(required = false) Long after,
+                                              @RequestHeader(value = "Last-Event-ID", required = false)
+                                                      String lastEventId) {
+        if (lastEventId != null) {
+            try {
+                after = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+        return ResponseEntity.ok(todoChangeFeed.subscribe(after));
+    }
+
+    /**
+     * Answers with the todo's version as a strong ETag. Clients that poll can send it back in If-None-Match and get 304
+     * Not Modified while the todo and its tasks are unchanged, which only costs reading the version.
+     */
     @GetMapping("/todos/{id}")
-    public ResponseEntity<Todo> findTo(@PathVariable Long id){
-        Optional<Todo> list =todoJpaRepository.findById(id);
+    public ResponseEntity<Todo> findTo(@PathVariable Long id,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                               String ifNoneMatch){
+        if (ifNoneMatch != null) {
+            Optional<Long> version = todoReader.findVersion(id);
+            if (!version.isPresent())
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            if (matchesAny(ifNoneMatch, etag(version.get())))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag(version.get())).build();
+        }
+
+        Optional<Todo> list = todoReader.findWithTasks(id);
         if (list.isPresent()) {
             Todo test = list.get();
-            return new ResponseEntity<>(test, HttpStatus.OK);
+            return ResponseEntity.ok().eTag(etag(test.getVersion())).body(test);
         }
         else{
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -43,27 +169,142 @@ public class TodoRestController {
 
     @GetMapping ("/todos")
     public Page<Todo> findAll(Pageable page){
-        return (Page<Todo>) todoJpaRepository.findAll( page);
+        return todoReader.findAll( page);
+    }
+
+    /**
+     * Leaner versions of GET /todos, paged the same way. view=summary lists each todo with how many tasks it has instead
+     * of its tasks, and view=detail with its tasks. Both are read as plain rows rather than entities, and leave null
+     * fields out of the JSON.
+     */
+    @GetMapping(path = "/todos", params = {"view", "!after", "!author"})
+    public ResponseEntity<Page<?>> findAllAsView(@RequestParam String view, Pageable page) {
+        switch (view) {
+            case "summary":
+                return new ResponseEntity<>(todoReader.findSummaries(page), HttpStatus.OK);
+            case "detail":
+                return new ResponseEntity<>(todoReader.findDetails(page), HttpStatus.OK);
+            default:
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Cursor version of GET /todos. Instead of an OFFSET and a COUNT(*), every page is a seek on the primary key, so
+     * page 10,000 costs the same as page 1. Start with an empty after and keep passing the next cursor from each
+     * response until it comes back null.
+     */
+    @GetMapping(path = "/todos", params = {"after", "!author"})
+    public ResponseEntity<TodoCursorPage> findAllAfter(@RequestParam String after,
+                                                       @RequestParam(defaultValue = "20") int size) {
+        return cursorPage(after, size, todoReader::findAfter);
+    }
+
+    /**
+     * One author's todos, paged with a cursor the same way as GET /todos?after=. Leave after out for the first page.
+     */
+    @GetMapping(path = "/todos", params = "author")
+    public ResponseEntity<TodoCursorPage> findByAuthor(@RequestParam String author,
+                                                       @RequestParam(defaultValue = "") String after,
+                                                       @RequestParam(defaultValue = "20") int size) {
+        return cursorPage(after, size,
+                (afterId, page) -> todoReader.findByAuthorAfter(author, afterId, page));
+    }
+
+    private ResponseEntity<TodoCursorPage> cursorPage(String after, int size,
+                                                      BiFunction<Long, Pageable, List<Todo>> query) {
+        long afterId;
+        try {
+            afterId = TodoCursorPage.decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        size = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+
+        // Ask for one extra row to find out whether there is another page without counting.
+        List<Todo> todos = query.apply(afterId, PageRequest.of(0, size + 1));
+        String next = null;
+        if (todos.size() > size) {
+            todos = todos.subList(0, size);
+            next = TodoCursorPage.encodeCursor(todos.get(size - 1).getId());
+        }
+        return new ResponseEntity<>(new TodoCursorPage(todos, size, next), HttpStatus.OK);
+    }
+
+    /**
+     * Todos whose details or task details contain any word of q, most relevant first. A word ending in * matches any
+     * word starting with it. Pages like GET /todos, except that sort is ignored. See TodoSearch.
+     */
+    @GetMapping(path = "/todos/search", params = "q")
+    public ResponseEntity<Page<TodoSearchHit>> search(@RequestParam String q, Pageable page) {
+        if (q.trim().isEmpty())
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(todoSearch.search(q, page), HttpStatus.OK);
     }
 
     @DeleteMapping ("/todos/{id}")
     public ResponseEntity delete(@PathVariable long id){
-        if (todoJpaRepository.existsById(id)){
-            todoJpaRepository.deleteById(id);
+        if (todoDeleter.deleteTodo(id)){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }else
         return new ResponseEntity(HttpStatus.NOT_FOUND) ;
     }
 
+    /**
+     * Adds a task and bumps the todo's version. With If-Match set to an ETag from GET /todos/{id}, the task is only
+     * added if the todo hasn't changed since, otherwise the answer is 412 Precondition Failed. If-Match may list several
+     * ETags, any one of which will do, and compares strongly: W/ ETags never match. A task added to the same todo by
+     * another request at the same moment makes this one fail with 409 Conflict.
+     */
     @PostMapping ("/todos/{id}/tasks")
-    public ResponseEntity<Todo> testall(@PathVariable long id, @Valid@RequestBody Task task) {
-        Optional<Todo> optionalTodo = todoJpaRepository.findById(id);
+    public ResponseEntity<Todo> testall(@PathVariable long id, @Valid@RequestBody Task task,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return addTasksIfMatch(id, ifMatch, expectedVersion -> todoTaskWriter.addTask(id, task, expectedVersion));
+    }
+
+    /**
+     * Adds every task in the body, a JSON array, in one transaction. Otherwise the same as adding one task: the todo's
+     * version goes up once, If-Match works the same way, and the answer is the todo with all of its tasks.
+     */
+    @PostMapping(path = "/todos/{id}/tasks/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Todo> addTasks(
+            @PathVariable long id, @RequestBody List<Task> tasks,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (tasks.contains(null))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return addTasksIfMatch(id, ifMatch, expectedVersion -> todoTaskWriter.addTasks(id, tasks, expectedVersion));
+    }
+
+    private ResponseEntity<Todo> addTasksIfMatch(long id, String ifMatch, Function<Long, Optional<Todo>> add) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+            List<Long> versions = parseEtags(ifMatch);
+            if (versions.isEmpty())
+                return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+            if (versions.size() == 1) {
+                expectedVersion = versions.get(0);
+            } else {
+                // Only one of them can be the todo's version. The writer still checks it again under the lock.
+                Optional<Long> version = todoReader.findVersion(id);
+                if (!version.isPresent())
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                if (!versions.contains(version.get()))
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag(version.get())).build();
+                expectedVersion = version.get();
+            }
+        }
+
+        Optional<Todo> optionalTodo;
+        try {
+            optionalTodo = add.apply(expectedVersion);
+        } catch (TodoTaskWriter.VersionMismatchException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(etag(e.getActualVersion())).build();
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
         if (optionalTodo.isPresent()) {
-            Todo todo= optionalTodo.get();
-            todo.getTasks().add(task);
-            task.setTodo(todo);
-            taskJpaRepository.save(task);
-            return  new ResponseEntity<>(todo,HttpStatus.CREATED);
+            Todo todo = optionalTodo.get();
+            return ResponseEntity.status(HttpStatus.CREATED).eTag(etag(todo.getVersion())).body(todo);
         } else
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
@@ -71,14 +312,91 @@ public class TodoRestController {
 
     @DeleteMapping("/tasks/{id}")
     public ResponseEntity deleteTask(@PathVariable long id) {
-        if (taskJpaRepository.existsById(id)) {
-            taskJpaRepository.deleteById(id);
-            todoJpaRepository.existsById(id);
+        boolean deleted;
+        try {
+            deleted = todoDeleter.deleteTask(id);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        if (deleted) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         } else {
             return new ResponseEntity(HttpStatus.NOT_FOUND);
         }
     }
 
+    /**
+     * Marks every task in the body, a JSON array of task ids, completed in one transaction. Answers 404 without
+     * changing anything if any of the tasks doesn't exist, and 409 if one of their todos was changed at the same time.
+     */
+    @PostMapping(path = "/tasks/complete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> completeTasks(@RequestBody List<Long> ids) {
+        return changeTasks(ids, todoTaskWriter::completeTasks);
+    }
+
+    /**
+     * Deletes every task in the body, a JSON array of task ids, in one transaction. Answers like POST /tasks/complete.
+     */
+    @PostMapping(path = "/tasks/delete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> deleteTasks(@RequestBody List<Long> ids) {
+        return changeTasks(ids, todoTaskWriter::deleteTasks);
+    }
+
+    private static ResponseEntity<Void> changeTasks(List<Long> ids, Predicate<List<Long>> change) {
+        if (ids.contains(null))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        try {
+            return new ResponseEntity<>(change.test(ids) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+    }
+
+    private static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The version in a strong ETag made by etag, or null if it isn't one.
+     */
+    private static Long parseEtag(String etag) {
+        etag = etag.trim();
+        if (etag.length() < 3 || etag.charAt(0) != '"' || etag.charAt(etag.length() - 1) != '"')
+            return null;
+        try {
+            return Long.parseLong(etag.substring(1, etag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The versions in the strong ETags of an If-Match header. Weak ETags and anything else that isn't one of ours are
+     * left out, since If-Match compares strongly.
+     */
+    private static List<Long> parseEtags(String ifMatch) {
+        List<Long> versions = new ArrayList<>();
+        for (String candidate : ifMatch.split(",")) {
+            Long version = parseEtag(candidate);
+            if (version != null)
+                versions.add(version);
+        }
+        return versions;
+    }
+
+    /**
+     * Whether an If-None-Match header matches the ETag. If-None-Match compares weakly, so W/ prefixes are ignored.
+     */
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(etag))
+                return true;
+        }
+        return false;
+    }
+
 }
 
@@ -0,0 +1,161 @@
+package com.cybr406.todo;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over the details of todos and their tasks (see TodoSearchIndex), for GET /todos/search. The details
+ * are CLOBs, and searching them in the database means a LIKE over every row.
+ *
+ * The index is built from the database when the application starts, and then kept up to date from the changes made
+ * through JPA: Hibernate calls this after each transaction that inserted or deleted a todo or task has committed.
+ * Todos inserted by TodoBulkWriter are read back from the database once they are committed, and TodoDeleter reports
+ * its deletes once they are. Changes made through R2DBC by the reactive stack only show up after a restart.
+ *
+ * Both the startup build and the bulk insert read rows a chunk at a time, seeking on the primary key, so neither holds
+ * more than one chunk in memory.
+ */
+@Component
+public class TodoSearch implements SmartInitializingSingleton, TodoPostCommitListener, TodoBulkWriter.Listener,
+        TodoDeleter.Listener {
+
+    private static final Logger log = LoggerFactory.getLogger(TodoSearch.class);
+
+    private static final int CHUNK = 10_000;
+
+    private static final String SELECT_TODOS =
+            "SELECT ID, DETAILS, DETAILS_OVERFLOW FROM TODO WHERE ID > ? AND ID <= ? ORDER BY ID LIMIT " + CHUNK;
+
+    private static final String SELECT_TASKS =
+            "SELECT ID, TODO_ID, DETAILS, DETAILS_OVERFLOW FROM TASK WHERE TODO_ID > ? AND TODO_ID <= ? "
+                    + "ORDER BY TODO_ID, ID";
+
+    private final TodoSearchIndex index = new TodoSearchIndex();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TodoJpaRepository todoJpaRepository;
+
+    public TodoSearch(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate,
+                      TodoJpaRepository todoJpaRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.todoJpaRepository = todoJpaRepository;
+        TodoPostCommitListener.register(entityManagerFactory, this);
+    }
+
+    /**
+     * Builds the index once every bean, and so the schema, is ready, before the web server takes requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Throws the index away and builds it again from every todo and task in the database.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        index.clear();
+        load(0, Long.MAX_VALUE);
+        log.info("Indexed {} todos for search in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Todos whose details or tasks match the query, best first. Words are matched whole, except for words ending in *,
+     * which match any word starting with them.
+     */
+    public Page<TodoSearchHit> search(String query, Pageable pageable) {
+        TodoSearchIndex.Result result = index.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        List<Long> ids = result.hits.stream().map(hit -> hit.todoId).collect(Collectors.toList());
+        Map<Long, Todo> todos = todoJpaRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Todo::getId, Function.identity()));
+
+        List<TodoSearchHit> hits = new ArrayList<>(ids.size());
+        for (TodoSearchIndex.Hit hit : result.hits) {
+            // Deleted since it was found.
+            Todo todo = todos.get(hit.todoId);
+            if (todo != null)
+                hits.add(new TodoSearchHit(todo, hit.score));
+        }
+        return new PageImpl<>(hits, pageable, result.total);
+    }
+
+    @Override
+    public void todosInserted(List<Long> ids) {
+        if (ids.isEmpty())
+            return;
+        // Bulk inserted ids come from one IDENTITY column, so they're close together. Anything in between that was
+        // already indexed is skipped by the index.
+        load(Collections.min(ids) - 1, Collections.max(ids));
+    }
+
+    @Override
+    public void todoDeleted(long id) {
+        index.removeTodo(id);
+    }
+
+    @Override
+    public void taskDeleted(Long todoId, long taskId) {
+        index.removeTask(taskId);
+    }
+
+    /**
+     * Indexes the todos with ids in (after, last], and their tasks, a chunk of todos at a time.
+     */
+    private void load(long after, long last) {
+        while (true) {
+            List<Long> chunk = new ArrayList<>(CHUNK);
+            jdbcTemplate.query(SELECT_TODOS, row -> {
+                long id = row.getLong(1);
+                index.addTodo(id, DetailsColumns.join(row.getString(2), row.getString(3)));
+                chunk.add(id);
+            }, after, last);
+            if (chunk.isEmpty())
+                return;
+
+            long chunkLast = chunk.get(chunk.size() - 1);
+            jdbcTemplate.query(SELECT_TASKS, row -> {
+                String details = DetailsColumns.join(row.getString(3), row.getString(4));
+                index.addTask(row.getLong(2), row.getLong(1), details);
+            }, after, chunkLast);
+            if (chunk.size() < CHUNK)
+                return;
+            after = chunkLast;
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Todo) {
+            Todo todo = (Todo) event.getEntity();
+            index.addTodo((Long) event.getId(), todo.getDetails());
+        } else if (event.getEntity() instanceof Task) {
+            Task task = (Task) event.getEntity();
+            if (task.getTodo() != null)
+                index.addTask(task.getTodo().getId(), (Long) event.getId(), task.getDetails());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Todo)
+            index.removeTodo((Long) event.getId());
+        else if (event.getEntity() instanceof Task)
+            index.removeTask((Long) event.getId());
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.cybr406.todo;
+
+/**
+ * One result of GET /todos/search: a todo with its tasks, and how well it matched. Scores only mean something compared
+ * with the other scores of the same search.
+ */
+public class TodoSearchHit {
+
+    private final Todo todo;
+
+    private final float score;
+
+    public TodoSearchHit(Todo todo, float score) {
+        this.todo = todo;
+        this.score = score;
+    }
+
+    public Todo getTodo() {
+        return todo;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+}
@@ -0,0 +1,437 @@
+package com.cybr406.todo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over the details of todos and tasks, ranked with BM25.
+ *
+ * Every todo's details, and every task's, is a document of its own with a number handed out in order. Each term has a
+ * postings list of the documents it appears in and how often, in document order. Documents are never changed: adding a
+ * task adds a document, and deleting a todo or task marks its document dead. Dead documents are skipped when
+ * searching and dropped by a compaction once they make up half the index. Like Lucene, document counts and lengths
+ * include dead documents until then, which only nudges scores a little.
+ *
+ * A search adds up the scores of every matching document per todo, so a todo matches through its own details or any of
+ * its tasks. The scores are collected in a dense array indexed by document number, which is borrowed from a pool and
+ * cleared after use, so searches don't allocate in proportion to the number of matches.
+ *
+ * Threadsafe: searches share a read lock and changes take the write lock.
+ */
+final class TodoSearchIndex {
+
+    /**
+     * BM25's term frequency saturation and length normalization.
+     */
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    /**
+     * A prefix query matches at most this many terms, in alphabetical order.
+     */
+    static final int MAX_PREFIX_TERMS = 1024;
+
+    private static final int NO_TASK = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private TreeMap<String, Postings> terms = new TreeMap<>();
+
+    private int documents;
+
+    private long[] documentTodo = new long[1024];
+
+    private long[] documentTask = new long[1024];
+
+    private int[] documentLength = new int[1024];
+
+    private long totalLength;
+
+    private BitSet dead = new BitSet();
+
+    private int deadDocuments;
+
+    /**
+     * The document of each todo's own details.
+     */
+    private LongIntHashMap todoDocuments = new LongIntHashMap();
+
+    private LongIntHashMap taskDocuments = new LongIntHashMap();
+
+    /**
+     * How many live task documents each todo has, so deleting the todo can count them as dead.
+     */
+    private LongIntHashMap taskCounts = new LongIntHashMap();
+
+    private final Queue<float[]> scratch = new ConcurrentLinkedQueue<>();
+
+    private static final class Postings {
+
+        int[] documents = new int[2];
+
+        int[] frequencies = new int[2];
+
+        int size;
+
+        void add(int document, int frequency) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            documents[size] = document;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+    }
+
+    static final class Hit {
+
+        final long todoId;
+
+        final float score;
+
+        Hit(long todoId, float score) {
+            this.todoId = todoId;
+            this.score = score;
+        }
+
+    }
+
+    static final class Result {
+
+        final List<Hit> hits;
+
+        final int total;
+
+        Result(List<Hit> hits, int total) {
+            this.hits = hits;
+            this.total = total;
+        }
+
+    }
+
+    /**
+     * Indexes a todo's details. Does nothing if the todo is already indexed.
+     */
+    void addTodo(long todoId, String details) {
+        lock.writeLock().lock();
+        try {
+            if (todoDocuments.get(todoId) == LongIntHashMap.MISSING)
+                todoDocuments.put(todoId, add(todoId, NO_TASK, details));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a task's details. Does nothing if the task is already indexed.
+     */
+    void addTask(long todoId, long taskId, String details) {
+        lock.writeLock().lock();
+        try {
+            if (taskDocuments.get(taskId) != LongIntHashMap.MISSING)
+                return;
+            taskDocuments.put(taskId, add(todoId, taskId, details));
+            int count = taskCounts.get(todoId);
+            taskCounts.put(todoId, count == LongIntHashMap.MISSING ? 1 : count + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a todo and its tasks.
+     */
+    void removeTodo(long todoId) {
+        lock.writeLock().lock();
+        try {
+            int document = todoDocuments.remove(todoId);
+            if (document == LongIntHashMap.MISSING)
+                return;
+            kill(document);
+            // Its task documents are skipped from now on because the todo is gone, and dropped by the next compaction.
+            int tasks = taskCounts.remove(todoId);
+            if (tasks != LongIntHashMap.MISSING)
+                deadDocuments += tasks;
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeTask(long taskId) {
+        lock.writeLock().lock();
+        try {
+            int document = taskDocuments.remove(taskId);
+            if (document == LongIntHashMap.MISSING)
+                return;
+            long todoId = documentTodo[document];
+            // If the todo is gone, the task was counted as dead along with it.
+            if (todoDocuments.get(todoId) == LongIntHashMap.MISSING)
+                return;
+            kill(document);
+            taskCounts.put(todoId, taskCounts.get(todoId) - 1);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            terms = new TreeMap<>();
+            documents = 0;
+            totalLength = 0;
+            dead = new BitSet();
+            deadDocuments = 0;
+            todoDocuments = new LongIntHashMap();
+            taskDocuments = new LongIntHashMap();
+            taskCounts = new LongIntHashMap();
+            scratch.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The number of todos indexed.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return todoDocuments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the todos matching any word of the query, best first, and returns limit of them starting at offset along
+     * with how many there are in total. A word ending in * matches every term starting with it.
+     */
+    Result search(String query, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Postings> matches = new ArrayList<>();
+            for (String word : query.trim().split("\\s+")) {
+                if (word.endsWith("*")) {
+                    List<String> stem = tokenize(word.substring(0, word.length() - 1));
+                    if (stem.isEmpty())
+                        continue;
+                    // Only the last token is a prefix, the others are whole terms: "e-ma*" is e and ma*.
+                    for (int i = 0; i < stem.size() - 1; i++)
+                        addIfPresent(matches, stem.get(i));
+                    String prefix = stem.get(stem.size() - 1);
+                    int expanded = 0;
+                    for (Postings postings : terms.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                        if (expanded++ == MAX_PREFIX_TERMS)
+                            break;
+                        matches.add(postings);
+                    }
+                } else {
+                    for (String term : tokenize(word))
+                        addIfPresent(matches, term);
+                }
+            }
+            return score(matches, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addIfPresent(List<Postings> matches, String term) {
+        Postings postings = terms.get(term);
+        if (postings != null)
+            matches.add(postings);
+    }
+
+    private Result score(List<Postings> matches, int offset, int limit) {
+        if (matches.isEmpty() || documents == 0)
+            return new Result(Collections.emptyList(), 0);
+
+        float averageLength = Math.max(1f, totalLength / (float) documents);
+        float[] scores = borrowScratch();
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        try {
+            for (Postings postings : matches) {
+                float idf = (float) Math.log(1 + (documents - postings.size + 0.5) / (postings.size + 0.5));
+                for (int i = 0; i < postings.size; i++) {
+                    int document = postings.documents[i];
+                    // Scores are collected on the todo's own document.
+                    int todoDocument = documentTask[document] == NO_TASK
+                            ? document
+                            : todoDocuments.get(documentTodo[document]);
+                    if (todoDocument == LongIntHashMap.MISSING || !isLive(document) || !isLive(todoDocument))
+                        continue;
+
+                    float frequency = postings.frequencies[i];
+                    float norm = K1 * (1 - B + B * documentLength[document] / averageLength);
+                    if (scores[todoDocument] == 0) {
+                        if (touchedCount == touched.length)
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = todoDocument;
+                    }
+                    scores[todoDocument] += idf * frequency * (K1 + 1) / (frequency + norm);
+                }
+            }
+
+            // The best offset + limit todos, worst on top so it's the one pushed out.
+            int wanted = (int) Math.min((long) offset + limit, touchedCount);
+            PriorityQueue<Hit> best = new PriorityQueue<>(Math.max(1, wanted), TodoSearchIndex::worstFirst);
+            for (int i = 0; i < touchedCount && wanted > 0; i++) {
+                int document = touched[i];
+                Hit hit = new Hit(documentTodo[document], scores[document]);
+                if (best.size() < wanted) {
+                    best.add(hit);
+                } else if (worstFirst(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(best.size());
+            while (!best.isEmpty())
+                hits.add(best.poll());
+            Collections.reverse(hits);
+            return new Result(hits.subList(Math.min(offset, hits.size()), hits.size()), touchedCount);
+        } finally {
+            for (int i = 0; i < touchedCount; i++)
+                scores[touched[i]] = 0;
+            scratch.add(scores);
+        }
+    }
+
+    /**
+     * Lower scores first, and among equal scores higher ids, so results come out in a stable order.
+     */
+    private static int worstFirst(Hit a, Hit b) {
+        int byScore = Float.compare(a.score, b.score);
+        return byScore != 0 ? byScore : Long.compare(b.todoId, a.todoId);
+    }
+
+    private float[] borrowScratch() {
+        float[] scores;
+        while ((scores = scratch.poll()) != null) {
+            if (scores.length >= documents)
+                return scores;
+            // Too small since the index grew, let it go.
+        }
+        return new float[Math.max(documents, 1024)];
+    }
+
+    private boolean isLive(int document) {
+        return !dead.get(document);
+    }
+
+    private int add(long todoId, long taskId, String text) {
+        List<String> tokens = tokenize(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens)
+            frequencies.merge(token, 1, Integer::sum);
+
+        int document = documents++;
+        if (document == documentTodo.length) {
+            documentTodo = Arrays.copyOf(documentTodo, document * 2);
+            documentTask = Arrays.copyOf(documentTask, document * 2);
+            documentLength = Arrays.copyOf(documentLength, document * 2);
+        }
+        documentTodo[document] = todoId;
+        documentTask[document] = taskId;
+        documentLength[document] = tokens.size();
+        totalLength += tokens.size();
+
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet())
+            terms.computeIfAbsent(entry.getKey(), term -> new Postings()).add(document, entry.getValue());
+        return document;
+    }
+
+    private void kill(int document) {
+        dead.set(document);
+        deadDocuments++;
+    }
+
+    private void compactIfNeeded() {
+        if (documents >= 1024 && deadDocuments * 2 >= documents)
+            compact();
+    }
+
+    /**
+     * Renumbers the live documents from 0, in the same order, and rewrites every postings list without the dead ones.
+     */
+    private void compact() {
+        int[] renumbered = new int[documents];
+        int live = 0;
+        long length = 0;
+        LongIntHashMap todos = new LongIntHashMap(todoDocuments.size());
+        LongIntHashMap tasks = new LongIntHashMap(taskDocuments.size());
+        for (int document = 0; document < documents; document++) {
+            boolean task = documentTask[document] != NO_TASK;
+            if (!isLive(document) || (task && todoDocuments.get(documentTodo[document]) == LongIntHashMap.MISSING)) {
+                renumbered[document] = -1;
+                continue;
+            }
+            renumbered[document] = live;
+            documentTodo[live] = documentTodo[document];
+            documentTask[live] = documentTask[document];
+            documentLength[live] = documentLength[document];
+            length += documentLength[document];
+            if (task)
+                tasks.put(documentTask[live], live);
+            else
+                todos.put(documentTodo[live], live);
+            live++;
+        }
+
+        Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            int kept = 0;
+            for (int i = 0; i < postings.size; i++) {
+                int document = renumbered[postings.documents[i]];
+                if (document < 0)
+                    continue;
+                postings.documents[kept] = document;
+                postings.frequencies[kept] = postings.frequencies[i];
+                kept++;
+            }
+            postings.size = kept;
+            if (kept == 0)
+                iterator.remove();
+        }
+
+        documents = live;
+        totalLength = length;
+        dead = new BitSet();
+        deadDocuments = 0;
+        todoDocuments = todos;
+        taskDocuments = tasks;
+        scratch.clear();
+    }
+
+    /**
+     * Splits text into lower case runs of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null)
+            return tokens;
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+}
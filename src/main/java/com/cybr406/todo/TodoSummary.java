@@ -0,0 +1,47 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A todo as listed by GET /todos?view=summary: how many tasks it has instead of the tasks themselves. Read straight
+ * into this class by a JPQL constructor expression (see TodoJpaRepository.findSummaries), so listing todos this way
+ * never loads an entity. Fields that are null are left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TodoSummary {
+
+    private final Long id;
+
+    private final String author;
+
+    private final String details;
+
+    private long taskCount;
+
+    public TodoSummary(Long id, String author, String detailsInline, String detailsOverflow) {
+        this.id = id;
+        this.author = author;
+        this.details = DetailsColumns.join(detailsInline, detailsOverflow);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    public long getTaskCount() {
+        return taskCount;
+    }
+
+    void setTaskCount(long taskCount) {
+        this.taskCount = taskCount;
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.cybr406.todo;
+
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+
+/**
+ * Adds tasks to todos and removes them, bumping the todo's version each time. Single tasks are deleted by
+ * TodoDeleter.
+ *
+ * Todo.tasks is the inverse side of Task.todo, so Hibernate wouldn't count a new or deleted task as a change to the todo
+ * on its own. Locking the todo with OPTIMISTIC_FORCE_INCREMENT makes it: the version goes up when the transaction
+ * commits, with an UPDATE that only matches if nobody else changed the todo in the meantime. Two requests changing the
+ * tasks of the same todo at once can't both commit; the second fails with an OptimisticLockingFailureException.
+ *
+ * The batch methods do the same for many tasks in one transaction. Each todo involved is loaded and locked once, and
+ * the UPDATEs and DELETEs are sent in JDBC batches (hibernate.jdbc.batch_size). Inserts aren't: Hibernate needs each
+ * IDENTITY id back before it moves on to the next task.
+ */
+@Component
+public class TodoTaskWriter {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TodoJpaRepository todoJpaRepository;
+
+    private final TaskJpaRepository taskJpaRepository;
+
+    private final TodoCache todoCache;
+
+    public TodoTaskWriter(TodoJpaRepository todoJpaRepository, TaskJpaRepository taskJpaRepository,
+                          TodoCache todoCache) {
+        this.todoJpaRepository = todoJpaRepository;
+        this.taskJpaRepository = taskJpaRepository;
+        this.todoCache = todoCache;
+    }
+
+    /**
+     * Adds the task to the todo and returns the todo, or nothing if there is no such todo.
+     *
+     * @param expectedVersion if not null, the task is only added if the todo is still at this version.
+     * @throws VersionMismatchException if the todo isn't at expectedVersion.
+     */
+    @Transactional
+    public Optional<Todo> addTask(long todoId, Task task, Long expectedVersion) {
+        Optional<Todo> found = todoJpaRepository.findById(todoId);
+        if (!found.isPresent())
+            return Optional.empty();
+
+        Todo todo = lock(found.get(), expectedVersion);
+        todo.getTasks().add(task);
+        task.setTodo(todo);
+        taskJpaRepository.save(task);
+        todoCache.evictTasksOf(todoId);
+        return Optional.of(todo);
+    }
+
+    /**
+     * Adds all of the tasks to the todo, the same way as addTask, bumping its version once.
+     */
+    @Transactional
+    public Optional<Todo> addTasks(long todoId, List<Task> tasks, Long expectedVersion) {
+        Optional<Todo> found = todoJpaRepository.findById(todoId);
+        if (!found.isPresent())
+            return Optional.empty();
+
+        Todo todo = lock(found.get(), expectedVersion);
+        for (Task task : tasks) {
+            todo.getTasks().add(task);
+            task.setTodo(todo);
+        }
+        taskJpaRepository.saveAll(tasks);
+        todoCache.evictTasksOf(todoId);
+        return Optional.of(todo);
+    }
+
+    /**
+     * Marks every task completed and returns whether they all exist. If any of them doesn't, nothing is changed.
+     */
+    @Transactional
+    public boolean completeTasks(Collection<Long> taskIds) {
+        Optional<List<Task>> tasks = findAll(taskIds);
+        if (!tasks.isPresent())
+            return false;
+
+        for (Todo todo : owners(tasks.get()).keySet())
+            lock(todo, null);
+        for (Task task : tasks.get())
+            task.setCompleted(true);
+        return true;
+    }
+
+    /**
+     * Deletes every task and returns whether they all existed. If any of them didn't, nothing is deleted.
+     */
+    @Transactional
+    public boolean deleteTasks(Collection<Long> taskIds) {
+        Optional<List<Task>> tasks = findAll(taskIds);
+        if (!tasks.isPresent())
+            return false;
+
+        owners(tasks.get()).forEach((todo, deleted) -> {
+            lock(todo, null);
+            // Only a task list that is already loaded needs fixing up, there's no point reading one just to edit it.
+            if (Hibernate.isInitialized(todo.getTasks()))
+                todo.getTasks().removeAll(deleted);
+            todoCache.evictTasksOf(todo.getId());
+        });
+        taskJpaRepository.deleteAll(tasks.get());
+        return true;
+    }
+
+    /**
+     * The tasks with the given ids, or nothing if any of them doesn't exist.
+     */
+    private Optional<List<Task>> findAll(Collection<Long> taskIds) {
+        Set<Long> ids = new HashSet<>(taskIds);
+        if (ids.isEmpty())
+            return Optional.of(Collections.emptyList());
+        List<Task> tasks = taskJpaRepository.findWithTodoByIdIn(ids);
+        return tasks.size() == ids.size() ? Optional.of(tasks) : Optional.empty();
+    }
+
+    /**
+     * Groups the tasks by the todo they belong to. Tasks without a todo are left out.
+     */
+    private static Map<Todo, List<Task>> owners(List<Task> tasks) {
+        // Todo's equals and hashCode cover its tasks, so they can't be the keys.
+        Map<Todo, List<Task>> owners = new IdentityHashMap<>();
+        for (Task task : tasks) {
+            if (task.getTodo() != null)
+                owners.computeIfAbsent(task.getTodo(), todo -> new ArrayList<>()).add(task);
+        }
+        return owners;
+    }
+
+    private Todo lock(Todo todo, Long expectedVersion) {
+        if (expectedVersion != null && !Objects.equals(expectedVersion, todo.getVersion()))
+            throw new VersionMismatchException(todo.getVersion());
+        entityManager.lock(todo, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        return todo;
+    }
+
+    /**
+     * The todo wasn't at the version the caller expected.
+     */
+    public static class VersionMismatchException extends RuntimeException {
+
+        private final Long actualVersion;
+
+        VersionMismatchException(Long actualVersion) {
+            super("The todo is at version " + actualVersion + ".");
+            this.actualVersion = actualVersion;
+        }
+
+        public Long getActualVersion() {
+            return actualVersion;
+        }
+
+    }
+
+}
@@ -0,0 +1,448 @@
+package com.cybr406.todo;
+
+import com.cybr406.todo.DurableTodoRepository.Durability;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary log of every change made to a TodoRepository. DurableTodoRepository writes a record here for
+ * each create, addTask, delete, deleteTask and completed task, and replays the records after a restart.
+ *
+ * The log is split into numbered generation files (wal-00000001.log, wal-00000002.log, ...) so that everything
+ * older than a snapshot can simply be deleted. Each record is framed as
+ *
+ * <pre>
+ * int   length of type and payload
+ * byte  type
+ * ...   payload
+ * int   CRC32 of type and payload
+ * </pre>
+ *
+ * A record that is cut short or fails its checksum marks the end of the log, which is what a crash in the middle of a
+ * write looks like. Records longer than MAX_RECORD are refused up front, since replay would take them for garbage too.
+ *
+ * Once a write or an fsync fails the log is failed for good: it can't tell how much of the last frame reached the file,
+ * and a record appended behind a broken one would be acknowledged and then never replayed. Every later write, and every
+ * writer still waiting for a group commit, gets an IOException instead.
+ *
+ * How long a writer waits for its record to reach the disk depends on the Durability mode.
+ */
+class TodoWriteAheadLog implements Closeable {
+
+    /**
+     * Receives the records of a log as it is replayed.
+     */
+    interface Replay {
+
+        void create(Todo todo);
+
+        void addTask(long todoId, Task task);
+
+        void delete(long id);
+
+        void deleteTask(long id);
+
+        void completeTask(long id);
+
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(TodoWriteAheadLog.class);
+
+    private static final byte CREATE = 1;
+
+    private static final byte ADD_TASK = 2;
+
+    private static final byte DELETE = 3;
+
+    private static final byte DELETE_TASK = 4;
+
+    private static final byte COMPLETE_TASK = 5;
+
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+    private final Path directory;
+
+    private final Durability durability;
+
+    private final long groupCommitIntervalMillis;
+
+    private final Thread flusher;
+
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+    private final CRC32 crc = new CRC32();
+
+    private long generation;
+
+    private FileChannel channel;
+
+    private DataOutputStream out;
+
+    // Positions count bytes written since the log was opened, across generations.
+
+    private long written = 0;
+
+    private long durable = 0;
+
+    private volatile boolean closed = false;
+
+    private volatile IOException failure;
+
+    /**
+     * Opens the log for appending at the end of the given generation, creating the file if it doesn't exist yet.
+     * Anything in the file past validLength (usually a torn record left by a crash) is cut off first.
+     */
+    TodoWriteAheadLog(Path directory, long generation, long validLength, Durability durability,
+                      long groupCommitIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.groupCommitIntervalMillis = Math.max(1, groupCommitIntervalMillis);
+        openGeneration(generation, validLength);
+
+        if (durability == Durability.SYNC) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::flushLoop, "todo-wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    static Path file(Path directory, long generation) {
+        return directory.resolve(String.format("wal-%08d.log", generation));
+    }
+
+    /**
+     * Lists the generations that have a log file in directory, oldest first.
+     */
+    static List<Long> generations(Path directory) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                generations.add(Long.parseLong(name.substring(4, name.length() - 4)));
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private void openGeneration(long generation, long validLength) throws IOException {
+        this.generation = generation;
+        channel = FileChannel.open(file(directory, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > validLength)
+            channel.truncate(validLength);
+        channel.position(validLength);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized long logCreate(Todo todo) throws IOException {
+        record.writeByte(CREATE);
+        record.writeLong(todo.getId());
+        writeString(record, todo.getAuthor());
+        writeString(record, todo.getDetails());
+        return append();
+    }
+
+    synchronized long logAddTask(long todoId, Task task) throws IOException {
+        record.writeByte(ADD_TASK);
+        record.writeLong(todoId);
+        record.writeLong(task.getId());
+        writeCompleted(record, task.getCompleted());
+        writeString(record, task.getDetails());
+        return append();
+    }
+
+    synchronized long logDelete(long id) throws IOException {
+        record.writeByte(DELETE);
+        record.writeLong(id);
+        return append();
+    }
+
+    synchronized long logDeleteTask(long id) throws IOException {
+        record.writeByte(DELETE_TASK);
+        record.writeLong(id);
+        return append();
+    }
+
+    synchronized long logCompleteTask(long id) throws IOException {
+        record.writeByte(COMPLETE_TASK);
+        record.writeLong(id);
+        return append();
+    }
+
+    /**
+     * Frames and writes whatever is in the record buffer, returning the log position just past it.
+     */
+    private long append() throws IOException {
+        try {
+            checkWritable();
+            if (recordBytes.size() > MAX_RECORD)
+                throw new IllegalArgumentException("A write ahead log record can't be larger than " + MAX_RECORD
+                        + " bytes.");
+            crc.reset();
+            crc.update(recordBytes.toByteArray(), 0, recordBytes.size());
+            try {
+                out.writeInt(recordBytes.size());
+                recordBytes.writeTo(out);
+                out.writeInt((int) crc.getValue());
+            } catch (IOException e) {
+                throw fail(e);
+            }
+            written += 4 + recordBytes.size() + 4;
+        } finally {
+            recordBytes.reset();
+        }
+
+        if (durability == Durability.SYNC)
+            sync();
+
+        return written;
+    }
+
+    private synchronized void sync() throws IOException {
+        try {
+            out.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            throw fail(e);
+        }
+        durable = written;
+        notifyAll();
+    }
+
+    private void checkWritable() throws IOException {
+        if (failure != null)
+            throw new IOException("An earlier write to the write ahead log failed.", failure);
+        if (closed)
+            throw new IOException("The write ahead log is closed.");
+    }
+
+    /**
+     * Puts the log into the failed state and wakes up anyone waiting for a group commit. Returns the exception so callers
+     * can throw it.
+     */
+    private synchronized IOException fail(IOException e) {
+        if (failure == null)
+            failure = e;
+        notifyAll();
+        return e;
+    }
+
+    /**
+     * Blocks until everything up to position is on disk. Returns straight away for ASYNC and SYNC logs, since the
+     * first never waits and the second already waited while appending.
+     */
+    void awaitDurable(long position) throws IOException {
+        if (durability != Durability.GROUP_COMMIT)
+            return;
+
+        synchronized (this) {
+            while (durable < position) {
+                if (failure != null)
+                    throw new IOException("The write ahead log failed before the write was flushed.", failure);
+                if (closed)
+                    throw new IOException("The write ahead log was closed before the write was flushed.");
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a group commit.");
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(groupCommitIntervalMillis);
+
+                long target;
+                FileChannel toForce;
+                synchronized (this) {
+                    if (closed || failure != null || durable >= written)
+                        continue;
+                    out.flush();
+                    target = written;
+                    toForce = channel;
+                }
+
+                // The fsync happens outside the lock so writers can keep appending the next group while it runs.
+                try {
+                    toForce.force(false);
+                } catch (ClosedChannelException e) {
+                    // roll() or close() got there first, and they sync before closing anything.
+                    continue;
+                }
+
+                synchronized (this) {
+                    durable = Math.max(durable, target);
+                    notifyAll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                log.error("Could not flush the write ahead log, no more writes will be accepted.", e);
+                fail(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Flushes the current generation and starts writing the next one. Returns the new generation, which is the first
+     * one a snapshot taken right now would not contain.
+     */
+    synchronized long roll() throws IOException {
+        checkWritable();
+        sync();
+        try {
+            out.close();
+            openGeneration(generation + 1, 0);
+        } catch (IOException e) {
+            throw fail(e);
+        }
+        return generation;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            try {
+                // After a failure there is nothing left that could be made durable.
+                if (failure == null)
+                    sync();
+            } finally {
+                closed = true;
+                notifyAll();
+                // Flushing what's buffered behind a failed write could only add to the broken frame.
+                if (failure == null)
+                    out.close();
+                else
+                    channel.close();
+            }
+        }
+        if (flusher != null)
+            flusher.interrupt();
+    }
+
+    /**
+     * Replays one log file and returns the length of its valid prefix. Reading stops at the first record that is cut
+     * short or fails its checksum.
+     */
+    static long replay(Path file, Replay replay) throws IOException {
+        long valid = 0;
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    if (length < 1 || length > MAX_RECORD)
+                        break;
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc.reset();
+                    crc.update(body, 0, body.length);
+                    if (in.readInt() != (int) crc.getValue())
+                        break;
+                } catch (EOFException e) {
+                    break;
+                }
+
+                apply(new DataInputStream(new ByteArrayInputStream(body)), replay);
+                valid += 4 + body.length + 4;
+            }
+        }
+
+        return valid;
+    }
+
+    private static void apply(DataInputStream in, Replay replay) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case CREATE: {
+                Todo todo = new Todo();
+                todo.setId(in.readLong());
+                todo.setAuthor(readString(in));
+                todo.setDetails(readString(in));
+                replay.create(todo);
+                break;
+            }
+            case ADD_TASK: {
+                long todoId = in.readLong();
+                Task task = new Task();
+                task.setId(in.readLong());
+                task.setCompleted(readCompleted(in));
+                task.setDetails(readString(in));
+                replay.addTask(todoId, task);
+                break;
+            }
+            case DELETE:
+                replay.delete(in.readLong());
+                break;
+            case DELETE_TASK:
+                replay.deleteTask(in.readLong());
+                break;
+            case COMPLETE_TASK:
+                replay.completeTask(in.readLong());
+                break;
+            default:
+                throw new IOException("Unknown write ahead log record type " + type);
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeCompleted(DataOutput out, Boolean completed) throws IOException {
+        out.writeByte(completed == null ? 0 : completed ? 2 : 1);
+    }
+
+    static Boolean readCompleted(DataInput in) throws IOException {
+        byte completed = in.readByte();
+        return completed == 0 ? null : completed == 2;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.cybr406.todo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongIntHashMapTests {
+
+    @Test
+    public void testMatchesHashMap() {
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(406);
+
+        // A small key range forces lots of collisions, overwrites and removals in the middle of probe runs.
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                Integer removed = expected.remove(key);
+                assertEquals(removed == null ? LongIntHashMap.MISSING : removed, map.remove(key));
+            } else {
+                int value = random.nextInt(Integer.MAX_VALUE);
+                expected.put(key, value);
+                map.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = -2_500; key < 2_500; key++)
+            assertEquals(expected.getOrDefault(key, LongIntHashMap.MISSING), map.get(key));
+    }
+
+    @Test
+    public void testRejectsNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> new LongIntHashMap().put(1, -1));
+    }
+
+    @Test
+    public void testClear() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        for (int i = 0; i < 100; i++)
+            map.put(i, i);
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(LongIntHashMap.MISSING, map.get(42));
+        map.put(42, 7);
+        assertEquals(7, map.get(42));
+    }
+
+}
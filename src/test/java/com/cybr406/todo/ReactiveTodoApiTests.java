@@ -0,0 +1,318 @@
+package com.cybr406.todo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveTodoApiTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveTodoRepository reactiveTodoRepository;
+
+    @Autowired
+    private DatabaseClient todoDatabaseClient;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    public void setup() {
+        todoDatabaseClient.execute("DELETE FROM TODO").then().block();
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Reactive");
+            todo.setDetails("Todo " + i);
+            for (int j = 0; j < i % 3; j++) {
+                Task task = new Task();
+                task.setCompleted(j == 0);
+                task.setDetails("Task " + j + " of todo " + i);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        ids = reactiveTodoRepository.saveAll(Flux.fromIterable(todos)).block();
+    }
+
+    @Test
+    public void testServletControllerIsNotUsed() {
+        assertTrue(context.getBeansOfType(TodoRestController.class).isEmpty());
+    }
+
+    @Test
+    public void testCreateAndFind() {
+        Todo created = webTestClient.post().uri("/todos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"author\": \"Reactive\", \"details\": \"Created\"}")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Todo.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(created.getId());
+
+        webTestClient.get().uri("/todos/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.details").isEqualTo("Created")
+                .jsonPath("$.tasks").isEmpty();
+    }
+
+    @Test
+    public void testFindReturnsTasks() {
+        webTestClient.get().uri("/todos/{id}", ids.get(2))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.details").isEqualTo("Todo 2")
+                .jsonPath("$.tasks.length()").isEqualTo(2)
+                .jsonPath("$.tasks[0].details").isEqualTo("Task 0 of todo 2")
+                .jsonPath("$.tasks[0].completed").isEqualTo(true)
+                .jsonPath("$.tasks[1].completed").isEqualTo(false);
+    }
+
+    @Test
+    public void testInvalidAndMissing() {
+        webTestClient.post().uri("/todos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"author\": \"Reactive\"}")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/todos/{id}", Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testPage() {
+        webTestClient.get().uri("/todos?page=1&size=2&sort=details,desc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.totalElements").isEqualTo(5)
+                .jsonPath("$.totalPages").isEqualTo(3)
+                .jsonPath("$.content.length()").isEqualTo(2)
+                .jsonPath("$.content[0].details").isEqualTo("Todo 2")
+                .jsonPath("$.content[0].tasks.length()").isEqualTo(2)
+                .jsonPath("$.content[1].details").isEqualTo("Todo 1");
+
+        webTestClient.get().uri("/todos?sort=nope")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testCursor() {
+        webTestClient.get().uri("/todos?after=&size=3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content.length()").isEqualTo(3)
+                .jsonPath("$.next").isEqualTo(TodoCursorPage.encodeCursor(ids.get(2)));
+
+        webTestClient.get().uri("/todos?after={after}&size=3", TodoCursorPage.encodeCursor(ids.get(2)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content.length()").isEqualTo(2)
+                .jsonPath("$.next").doesNotExist();
+
+        webTestClient.get().uri("/todos?after=nope")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testAuthorCursor() {
+        webTestClient.post().uri("/todos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"author\": \"Someone else\", \"details\": \"Not theirs\"}")
+                .exchange()
+                .expectStatus().isCreated();
+
+        webTestClient.get().uri("/todos?author=Reactive&size=4")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content.length()").isEqualTo(4)
+                .jsonPath("$.content[3].tasks.length()").isEqualTo(0)
+                .jsonPath("$.next").isEqualTo(TodoCursorPage.encodeCursor(ids.get(3)));
+
+        webTestClient.get().uri("/todos?author=Reactive&after={after}", TodoCursorPage.encodeCursor(ids.get(3)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content.length()").isEqualTo(1)
+                .jsonPath("$.content[0].details").isEqualTo("Todo 4")
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    public void testTasks() {
+        Todo todo = webTestClient.post().uri("/todos/{id}/tasks", ids.get(0))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"completed\": false, \"details\": \"New task\"}")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Todo.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals(1, todo.getTasks().size());
+        long taskId = todo.getTasks().get(0).getId();
+
+        webTestClient.delete().uri("/tasks/{id}", taskId).exchange().expectStatus().isNoContent();
+        webTestClient.delete().uri("/tasks/{id}", taskId).exchange().expectStatus().isNotFound();
+
+        webTestClient.post().uri("/todos/{id}/tasks", Long.MAX_VALUE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"completed\": false, \"details\": \"Orphan\"}")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testTaskBatches() {
+        Todo todo = webTestClient.post().uri("/todos/{id}/tasks/bulk", ids.get(1))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"completed\": false, \"details\": \"One\"}, {\"details\": \"Two\"}]")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Todo.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals(3, todo.getTasks().size());
+        long one = todo.getTasks().get(1).getId();
+        long two = todo.getTasks().get(2).getId();
+        // The first task of todo 2, to span two todos.
+        long other = reactiveTodoRepository.findById(ids.get(2)).block().getTasks().get(0).getId();
+
+        webTestClient.post().uri("/tasks/complete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(one, other, Long.MAX_VALUE))
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.post().uri("/tasks/complete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(one, other))
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.get().uri("/todos/{id}", ids.get(1))
+                .exchange()
+                .expectBody()
+                .jsonPath("$.tasks[1].completed").isEqualTo(true)
+                .jsonPath("$.tasks[2].completed").doesNotExist();
+
+        webTestClient.post().uri("/tasks/delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Arrays.asList(one, two, other))
+                .exchange()
+                .expectStatus().isNoContent();
+        assertEquals(1, reactiveTodoRepository.findById(ids.get(1)).block().getTasks().size());
+        assertEquals(1, reactiveTodoRepository.findById(ids.get(2)).block().getTasks().size());
+
+        Long version = todoDatabaseClient.execute("SELECT VERSION FROM TODO WHERE ID = :id")
+                .bind("id", ids.get(1))
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+        assertEquals(3, version, "Added, completed and deleted: one bump each");
+    }
+
+    @Test
+    public void testDeleteRemovesTasks() {
+        webTestClient.delete().uri("/todos/{id}", ids.get(2)).exchange().expectStatus().isNoContent();
+        webTestClient.delete().uri("/todos/{id}", ids.get(2)).exchange().expectStatus().isNotFound();
+
+        Long tasks = todoDatabaseClient.execute("SELECT COUNT(*) FROM TASK WHERE TODO_ID = :id")
+                .bind("id", ids.get(2))
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+        assertEquals(0, tasks);
+    }
+
+    @Test
+    public void testBulk() {
+        List<Long> created = webTestClient.post().uri("/todos/bulk")
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .bodyValue("{\"author\": \"Bulk\", \"details\": \"One\"}\n"
+                        + "{\"author\": \"Bulk\", \"details\": \"Two\", \"tasks\": [{\"details\": \"Task\"}]}\n")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBodyList(Long.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals(2, created.size());
+        assertEquals(1, reactiveTodoRepository.findById(created.get(1)).block().getTasks().size());
+
+        webTestClient.post().uri("/todos/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"author\": \"Bulk\", \"details\": \"Three\"}, {\"author\": \"Bulk\", \"details\": \" \"}]")
+                .exchange()
+                .expectStatus().isBadRequest();
+        Long three = todoDatabaseClient.execute("SELECT COUNT(*) FROM TODO WHERE DETAILS = 'Three'")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+        assertEquals(0, three, "An invalid todo rolls back the whole request");
+    }
+
+    @Test
+    public void testStreamsNdjson() {
+        for (String uri : Arrays.asList("/todos", "/todos/export")) {
+            List<Todo> todos = webTestClient.get().uri(uri)
+                    .accept(MediaType.parseMediaType("application/x-ndjson"))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentTypeCompatibleWith("application/x-ndjson")
+                    .returnResult(Todo.class)
+                    .getResponseBody()
+                    .collectList()
+                    .block();
+            assertEquals(5, todos.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(ids.get(i), todos.get(i).getId());
+                assertEquals(i % 3, todos.get(i).getTasks().size());
+            }
+        }
+    }
+
+    @Test
+    public void testStreamHonoursDemand() {
+        StepVerifier.create(reactiveTodoRepository.findAll(), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenRequest(2)
+                .assertNext(todo -> assertEquals(ids.get(0), todo.getId()))
+                .assertNext(todo -> assertEquals(ids.get(1), todo.getId()))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify();
+    }
+
+}
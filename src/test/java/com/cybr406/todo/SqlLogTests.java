@@ -0,0 +1,139 @@
+package com.cybr406.todo;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks which statements the sql-log profile logs.
+ *
+ * Spring Boot only configures logback for the first application context in a JVM, so whether the asynchronous appender
+ * from logback-spring.xml is in place depends on which test ran first. These tests listen on the logger directly.
+ */
+public class SqlLogTests {
+
+    abstract class SqlLogTest {
+
+        final Logger logger = (Logger) LoggerFactory.getLogger(SqlLog.LOGGER);
+
+        final ListAppender<ILoggingEvent> events = new ListAppender<>();
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        public void captureEvents() {
+            events.start();
+            logger.addAppender(events);
+        }
+
+        @AfterEach
+        public void stopCapturing() {
+            logger.detachAppender(events);
+            events.stop();
+        }
+
+        Todo save() {
+            Todo todo = new Todo();
+            todo.setAuthor("SqlLog");
+            todo.setDetails("Log me");
+            return todoJpaRepository.save(todo);
+        }
+
+        List<String> messages(Level level) {
+            return events.list.stream()
+                    .filter(e -> e.getLevel() == level)
+                    .map(ILoggingEvent::getFormattedMessage)
+                    .collect(Collectors.toList());
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(properties = {"todo.sql-log.slow-threshold=0ms", "todo.sql-log.sample-rate=0"})
+    @AutoConfigureMockMvc
+    @ActiveProfiles("sql-log")
+    class EveryStatementIsSlow extends SqlLogTest {
+
+        @Test
+        public void testSlowStatementsAreLoggedWithBinds() throws Exception {
+            Todo todo = save();
+            events.list.clear();
+
+            mockMvc.perform(get("/todos/{id}", todo.getId())).andExpect(status().isOk());
+
+            List<String> slow = messages(Level.WARN);
+            assertEquals(1, slow.size(), "GET /todos/{id} runs one statement.");
+            assertTrue(slow.get(0).toLowerCase().contains("select"));
+            assertTrue(slow.get(0).contains("[1=" + todo.getId() + "]"));
+        }
+
+        @Test
+        public void testHibernateLoggingIsOff() {
+            assertFalse(((Logger) LoggerFactory.getLogger("org.hibernate.SQL")).isDebugEnabled());
+            assertFalse(((Logger) LoggerFactory.getLogger("org.hibernate.type.descriptor.sql.BasicBinder")).isTraceEnabled());
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(properties = {"todo.sql-log.slow-threshold=1h", "todo.sql-log.sample-rate=1"})
+    @AutoConfigureMockMvc
+    @ActiveProfiles("sql-log")
+    class EveryStatementIsSampled extends SqlLogTest {
+
+        @Test
+        public void testSampledStatementsAreLoggedWithoutBinds() throws Exception {
+            Todo todo = save();
+            events.list.clear();
+
+            mockMvc.perform(get("/todos/{id}", todo.getId())).andExpect(status().isOk());
+
+            assertTrue(messages(Level.WARN).isEmpty());
+            List<String> sampled = messages(Level.INFO);
+            assertEquals(1, sampled.size());
+            assertTrue(sampled.get(0).toLowerCase().contains("select"));
+            assertFalse(sampled.get(0).contains("[1="));
+        }
+
+        @Test
+        public void testFailedStatementsAreLogged() {
+            events.list.clear();
+
+            // Fails when it runs, not when it's prepared, so there is an execution to log.
+            assertThrows(RuntimeException.class, () -> jdbcTemplate.queryForObject("SELECT 42 / ?", Integer.class, 0));
+
+            List<String> failed = messages(Level.WARN);
+            assertEquals(1, failed.size());
+            assertTrue(failed.get(0).startsWith("Failed"));
+            assertTrue(failed.get(0).contains("[1=0]"));
+        }
+
+    }
+
+}
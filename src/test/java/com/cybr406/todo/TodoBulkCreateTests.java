@@ -0,0 +1,147 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "todo.bulk.batch-size=7")
+@AutoConfigureMockMvc
+public class TodoBulkCreateTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+    }
+
+    private List<Todo> todos(int total) {
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Bulk");
+            todo.setDetails("Todo " + i);
+            for (int j = 0; j < i % 3; j++) {
+                Task task = new Task();
+                task.setCompleted(j == 0 ? null : true);
+                task.setDetails("Task " + j);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        return todos;
+    }
+
+    private List<Long> ids(String response) throws Exception {
+        return objectMapper.readValue(response, new TypeReference<List<Long>>() {});
+    }
+
+    private void assertSaved(List<Long> ids, int total) throws Exception {
+        // More todos than the batch size, so the inserts span several batches.
+        assertEquals(total, ids.size());
+        assertEquals(total, todoJpaRepository.count());
+        assertEquals(total / 3 + 2 * (total / 3), taskJpaRepository.count());
+
+        for (int i = 0; i < total; i++) {
+            String response = mockMvc.perform(get("/todos/{id}", ids.get(i)))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            JsonNode todo = objectMapper.readTree(response);
+            assertEquals("Todo " + i, todo.get("details").asText());
+            assertEquals(i % 3, todo.get("tasks").size());
+            if (i % 3 == 2) {
+                assertTrue(todo.get("tasks").get(0).get("completed").isNull());
+                assertTrue(todo.get("tasks").get(1).get("completed").asBoolean());
+            }
+        }
+    }
+
+    @Test
+    public void testCreatesJsonArray() throws Exception {
+        String response = mockMvc.perform(post("/todos/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(todos(30))))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertSaved(ids(response), 30);
+    }
+
+    @Test
+    public void testCreatesNdjson() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (Todo todo : todos(30))
+            body.append(objectMapper.writeValueAsString(todo)).append('\n');
+
+        String response = mockMvc.perform(post("/todos/bulk")
+                .contentType("application/x-ndjson")
+                .content(body.toString()))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertSaved(ids(response), 30);
+    }
+
+    @Test
+    public void testInvalidTodoSavesNothing() throws Exception {
+        List<Todo> todos = todos(30);
+        todos.get(20).setDetails("");
+
+        mockMvc.perform(post("/todos/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(todos)))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, todoJpaRepository.count());
+        assertEquals(0, taskJpaRepository.count());
+    }
+
+    @Test
+    public void testMalformedNdjsonSavesNothing() throws Exception {
+        // Good todos first, so some batches are inserted before the broken line is reached.
+        StringBuilder body = new StringBuilder();
+        for (Todo todo : todos(10))
+            body.append(objectMapper.writeValueAsString(todo)).append('\n');
+        body.append("{\"author\": ");
+
+        mockMvc.perform(post("/todos/bulk")
+                .contentType("application/x-ndjson")
+                .content(body.toString()))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, todoJpaRepository.count());
+    }
+
+}
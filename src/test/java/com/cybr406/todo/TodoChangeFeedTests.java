@@ -0,0 +1,282 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static com.cybr406.todo.TodoChangeEvent.Type.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class TodoChangeFeedTests {
+
+    @Test
+    public void testBufferKeepsTheLastEvents() {
+        TodoChangeFeed feed = new TodoChangeFeed(3, 60_000);
+        try {
+            for (long id = 1; id <= 5; id++)
+                feed.publish(CREATED, id, null);
+
+            assertEquals(5, feed.getLastSequence());
+            assertNull(feed.since(1), "Event 2 was overwritten");
+            assertEquals(3, feed.since(2).size());
+            assertEquals(3, feed.since(2).get(0).getSequence());
+            assertEquals(5L, feed.since(4).get(0).getTodoId());
+            assertTrue(feed.since(5).isEmpty());
+            assertNull(feed.since(6), "A sequence from before a restart");
+        } finally {
+            feed.close();
+        }
+    }
+
+    @Test
+    public void testSlowSubscriberIsClosedWithoutHoldingUpOthers() throws Exception {
+        TodoChangeFeed feed = new TodoChangeFeed(100, 60_000, 5);
+        CountDownLatch unblock = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger();
+        try {
+            // A client whose connection is full: its first send never returns until the end of the test.
+            feed.subscribe(new SseEmitter() {
+                @Override
+                public void send(SseEventBuilder event) throws IOException {
+                    try {
+                        unblock.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.send(event);
+                }
+            }, null);
+            feed.subscribe(new SseEmitter() {
+                @Override
+                public void send(SseEventBuilder event) throws IOException {
+                    received.incrementAndGet();
+                    super.send(event);
+                }
+            }, null);
+
+            for (long id = 1; id <= 20; id++) {
+                feed.publish(CREATED, id, null);
+                Thread.sleep(5);
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((received.get() < 20 || feed.getSubscriberCount() > 1) && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(20, received.get(), "The other subscriber gets every event");
+            assertEquals(1, feed.getSubscriberCount(), "The stuck subscriber was dropped once it fell 5 events behind");
+        } finally {
+            unblock.countDown();
+            feed.close();
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = "todo.changes.buffer-size=20")
+    @AutoConfigureMockMvc
+    class Jpa {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        ObjectMapper objectMapper;
+
+        @Autowired
+        TodoChangeFeed feed;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        TaskJpaRepository taskJpaRepository;
+
+        long start;
+
+        @BeforeEach
+        public void setup() {
+            taskJpaRepository.deleteAll();
+            todoJpaRepository.deleteAll();
+            start = feed.getLastSequence();
+        }
+
+        private JsonNode perform(String method, String uri, String body, int status) throws Exception {
+            String response = mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.valueOf(method), uri)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body == null ? "" : body))
+                    .andExpect(status().is(status))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            return response.isEmpty() ? null : objectMapper.readTree(response);
+        }
+
+        @Test
+        public void testPublishesCommittedChanges() throws Exception {
+            long todoId = perform("POST", "/todos", "{\"author\": \"Feed\", \"details\": \"Watched\"}", 201)
+                    .get("id").asLong();
+            long taskId = perform("POST", "/todos/" + todoId + "/tasks", "{\"details\": \"Task\"}", 201)
+                    .at("/tasks/0/id").asLong();
+            perform("DELETE", "/tasks/" + taskId, null, 204);
+            perform("DELETE", "/todos/" + todoId, null, 204);
+            perform("DELETE", "/todos/" + todoId, null, 404);
+
+            List<TodoChangeEvent> events = feed.since(start);
+            assertEquals(4, events.size());
+            assertEvent(events.get(0), start + 1, CREATED, todoId, null);
+            assertEvent(events.get(1), start + 2, TASK_ADDED, todoId, taskId);
+            assertEvent(events.get(2), start + 3, TASK_DELETED, todoId, taskId);
+            assertEvent(events.get(3), start + 4, DELETED, todoId, null);
+        }
+
+        @Test
+        public void testBulkInsertIsPublishedOnlyIfCommitted() throws Exception {
+            perform("POST", "/todos/bulk", "[{\"author\": \"Bulk\", \"details\": \"One\"}, "
+                    + "{\"author\": \"Bulk\", \"details\": \" \"}]", 400);
+            assertEquals(start, feed.getLastSequence());
+
+            JsonNode ids = perform("POST", "/todos/bulk", "[{\"author\": \"Bulk\", \"details\": \"One\"}, "
+                    + "{\"author\": \"Bulk\", \"details\": \"Two\", \"tasks\": [{\"details\": \"Task\"}]}]", 201);
+            List<TodoChangeEvent> events = feed.since(start);
+            assertEquals(2, events.size());
+            assertEvent(events.get(0), start + 1, CREATED, ids.get(0).asLong(), null);
+            assertEvent(events.get(1), start + 2, CREATED, ids.get(1).asLong(), null);
+        }
+
+        @Test
+        public void testStreamsEvents() throws Exception {
+            MockHttpServletResponse response = mockMvc.perform(get("/todos/changes"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn()
+                    .getResponse();
+
+            long todoId = perform("POST", "/todos", "{\"author\": \"Feed\", \"details\": \"Streamed\"}", 201)
+                    .get("id").asLong();
+            String event = awaitContent(response, content -> content.contains("data:"));
+            assertTrue(response.getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+            assertTrue(event.contains("id:" + (start + 1) + "\n"), event);
+            JsonNode data = objectMapper.readTree(event.substring(event.indexOf("data:") + 5).trim());
+            assertEquals("CREATED", data.get("type").asText());
+            assertEquals(todoId, data.get("todoId").asLong());
+            assertNull(data.get("taskId"));
+        }
+
+        @Test
+        public void testResumesFromLastEventId() throws Exception {
+            for (int i = 0; i < 3; i++)
+                perform("POST", "/todos", "{\"author\": \"Feed\", \"details\": \"Todo " + i + "\"}", 201);
+
+            MockHttpServletResponse response = mockMvc.perform(get("/todos/changes?after=0")
+                    .header("Last-Event-ID", String.valueOf(start + 1)))
+                    .andExpect(request().asyncStarted())
+                    .andReturn()
+                    .getResponse();
+            String events = awaitContent(response, content -> content.contains("id:" + (start + 3) + "\n"));
+            assertFalse(events.contains("id:" + (start + 1) + "\n"), events);
+            assertTrue(events.contains("id:" + (start + 2) + "\n"), events);
+
+            mockMvc.perform(get("/todos/changes").header("Last-Event-ID", "nope"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        public void testResetWhenTooFarBehind() throws Exception {
+            for (int i = 0; i < 25; i++)
+                feed.publish(CREATED, (long) i, null);
+
+            MockHttpServletResponse response = mockMvc.perform(get("/todos/changes?after={after}", start))
+                    .andExpect(request().asyncStarted())
+                    .andReturn()
+                    .getResponse();
+            String events = awaitContent(response, content -> content.contains("event:reset"));
+            assertTrue(events.contains("id:" + feed.getLastSequence() + "\n"), events);
+            assertFalse(events.contains("\"type\""), "Nothing is replayed after a reset");
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(properties = {"todo.changes.source=repository", "todo.repository=concurrent"})
+    class Repository {
+
+        @Autowired
+        TodoChangeFeed feed;
+
+        @Autowired
+        TodoRepository todoRepository;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Test
+        public void testPublishesRepositoryChanges() {
+            long start = feed.getLastSequence();
+
+            Todo todo = new Todo();
+            todo.setAuthor("Repository");
+            todo.setDetails("Watched");
+            long todoId = todoRepository.create(todo).getId();
+            Task task = new Task();
+            task.setDetails("Task");
+            todoRepository.addTask(todoId, task);
+            todoRepository.deleteTask(task.getId());
+            todoRepository.delete(todoId);
+            assertThrows(RuntimeException.class, () -> todoRepository.delete(todoId));
+
+            Todo saved = new Todo();
+            saved.setAuthor("JPA");
+            saved.setDetails("Not watched");
+            todoJpaRepository.save(saved);
+
+            List<TodoChangeEvent> events = feed.since(start);
+            assertEquals("CREATED TASK_ADDED TASK_DELETED DELETED",
+                    events.stream().map(e -> e.getType().name()).collect(Collectors.joining(" ")));
+            assertEvent(events.get(1), start + 2, TASK_ADDED, todoId, task.getId());
+            assertEvent(events.get(2), start + 3, TASK_DELETED, todoId, task.getId());
+        }
+
+    }
+
+    private static void assertEvent(TodoChangeEvent event, long sequence, TodoChangeEvent.Type type, Long todoId,
+                                    Long taskId) {
+        assertEquals(sequence, event.getSequence());
+        assertEquals(type, event.getType());
+        assertEquals(todoId, event.getTodoId());
+        assertEquals(taskId, event.getTaskId());
+    }
+
+    /**
+     * Events are sent from the feed's own thread, so wait for them to arrive.
+     */
+    private static String awaitContent(MockHttpServletResponse response, Predicate<String> done) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = response.getContentAsString();
+        while (!done.test(content) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = response.getContentAsString();
+        }
+        assertTrue(done.test(content), content);
+        return content;
+    }
+
+}
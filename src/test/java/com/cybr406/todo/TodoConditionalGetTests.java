@@ -0,0 +1,187 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TodoConditionalGetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoTaskWriter todoTaskWriter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long todoId;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+
+        Todo todo = new Todo();
+        todo.setAuthor("ETag");
+        todo.setDetails("Conditional todo");
+        todoId = todoJpaRepository.save(todo).getId();
+    }
+
+    private String etag() throws Exception {
+        return mockMvc.perform(get("/todos/{id}", todoId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+    }
+
+    private MvcResult addTask(String details, String ifMatch, int status) throws Exception {
+        Task task = new Task();
+        task.setCompleted(false);
+        task.setDetails(details);
+        return mockMvc.perform(post("/todos/{id}/tasks", todoId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(task))
+                .headers(ifMatch == null ? new HttpHeaders() : headers(HttpHeaders.IF_MATCH, ifMatch)))
+                .andExpect(status().is(status))
+                .andReturn();
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(name, value);
+        return headers;
+    }
+
+    @Test
+    public void testGetReturnsStrongETag() throws Exception {
+        mockMvc.perform(get("/todos/{id}", todoId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    public void testUnchangedTodoIsNotModified() throws Exception {
+        addTask("first", null, 201);
+        String etag = etag();
+
+        SqlStatementCounter.reset();
+        mockMvc.perform(get("/todos/{id}", todoId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        assertEquals(1, SqlStatementCounter.count(), "Only the version is read");
+
+        mockMvc.perform(get("/todos/{id}", todoId).header(HttpHeaders.IF_NONE_MATCH, "\"41\", W/" + etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/todos/{id}", todoId).header(HttpHeaders.IF_NONE_MATCH, "\"41\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(jsonPath("$.tasks.length()").value(1));
+        mockMvc.perform(get("/todos/{id}", Long.MAX_VALUE).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testTaskChangesChangeTheETag() throws Exception {
+        String before = etag();
+
+        MvcResult added = addTask("first", null, 201);
+        String afterAdd = added.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(before, afterAdd);
+        assertEquals(afterAdd, etag(), "POST answers with the ETag GET will have");
+        mockMvc.perform(get("/todos/{id}", todoId).header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tasks.length()").value(1));
+
+        long taskId = objectMapper.readTree(added.getResponse().getContentAsString()).at("/tasks/0/id").asLong();
+        mockMvc.perform(delete("/tasks/{id}", taskId)).andExpect(status().isNoContent());
+        String afterDelete = etag();
+        assertNotEquals(afterAdd, afterDelete);
+        mockMvc.perform(get("/todos/{id}", todoId).header(HttpHeaders.IF_NONE_MATCH, afterAdd))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tasks.length()").value(0));
+    }
+
+    @Test
+    public void testIfMatch() throws Exception {
+        String etag = etag();
+        String current = addTask("first", etag, 201).getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult stale = addTask("second", etag, 412);
+        assertEquals(current, stale.getResponse().getHeader(HttpHeaders.ETAG));
+        addTask("second", "nope", 412);
+        addTask("second", current, 201);
+        addTask("third", "*", 201);
+
+        assertEquals(3, todoJpaRepository.findWithTasksById(todoId).get().getTasks().size());
+    }
+
+    @Test
+    public void testIfMatchList() throws Exception {
+        String etag = etag();
+        String current = addTask("first", "\"41\", " + etag, 201).getResponse().getHeader(HttpHeaders.ETAG);
+
+        // A list without the current version fails, and a weak ETag never matches even if the version is right.
+        MvcResult stale = addTask("second", "\"41\", " + etag, 412);
+        assertEquals(current, stale.getResponse().getHeader(HttpHeaders.ETAG));
+        addTask("second", "\"41\", W/" + current, 412);
+        addTask("second", "W/" + current, 412);
+        addTask("second", etag + ",\"41\"," + current, 201);
+
+        assertEquals(2, todoJpaRepository.findWithTasksById(todoId).get().getTasks().size());
+    }
+
+    @Test
+    public void testConcurrentTaskAdditionsConflict() {
+        TransactionTemplate outer = new TransactionTemplate(transactionManager);
+        TransactionTemplate other = new TransactionTemplate(transactionManager);
+        other.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> outer.execute(status -> {
+            Task task = new Task();
+            task.setCompleted(false);
+            task.setDetails("loser");
+            todoTaskWriter.addTask(todoId, task, null);
+            // Another request changes the todo before this one commits.
+            other.execute(inner -> jdbcTemplate.update("UPDATE TODO SET VERSION = VERSION + 1 WHERE ID = ?", todoId));
+            return null;
+        }));
+
+        assertEquals(1L, todoJpaRepository.findVersionById(todoId).get());
+        assertEquals(0, todoJpaRepository.findWithTasksById(todoId).get().getTasks().size());
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs with the pool profile, shrunk to two connections that are given up on quickly, so the tests can use them all
+ * up.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.pool-name=test",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=250"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("pool")
+public class TodoConnectionPoolTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    private Todo save() {
+        Todo todo = new Todo();
+        todo.setAuthor("Pool");
+        todo.setDetails("Pooled");
+        return todoJpaRepository.save(todo);
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        Todo todo = save();
+        mockMvc.perform(get("/todos/{id}", todo.getId())).andExpect(status().isOk());
+        Thread.sleep(1100);
+
+        mockMvc.perform(get("/pool/statistics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.test.active").value(0))
+                .andExpect(jsonPath("$.test.idle").value(2))
+                .andExpect(jsonPath("$.test.total").value(2))
+                .andExpect(jsonPath("$.test.max").value(2))
+                .andExpect(jsonPath("$.test.pending").value(0))
+                .andExpect(jsonPath("$.test.acquire.count").isNumber())
+                .andExpect(jsonPath("$.test.acquire.histogram").isMap())
+                .andExpect(jsonPath("$.test.usage.count").isNumber());
+    }
+
+    @Test
+    public void testSaturatedPoolAnswersServiceUnavailable() throws Exception {
+        Todo todo = save();
+        long timeouts = objectMapper.readTree(mockMvc.perform(get("/pool/statistics"))
+                .andReturn().getResponse().getContentAsString()).get("test").get("timeouts").asLong();
+
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            // The counts are refreshed once a second.
+            Thread.sleep(1100);
+            mockMvc.perform(get("/pool/statistics"))
+                    .andExpect(jsonPath("$.test.active").value(2))
+                    .andExpect(jsonPath("$.test.idle").value(0));
+
+            mockMvc.perform(get("/todos/{id}", todo.getId()))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+            mockMvc.perform(post("/todos")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(todo)))
+                    .andExpect(status().isServiceUnavailable());
+        }
+
+        mockMvc.perform(get("/pool/statistics")).andExpect(jsonPath("$.test.timeouts").value(timeouts + 2));
+        mockMvc.perform(get("/todos/{id}", todo.getId())).andExpect(status().isOk());
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class TodoCursorPaginationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setup() {
+        todoJpaRepository.deleteAll();
+        for (int i = 0; i < 25; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Cursor");
+            todo.setDetails("Todo " + i);
+            todoJpaRepository.save(todo);
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private JsonNode fetch(String after, int size) throws Exception {
+        String response = mockMvc.perform(get("/todos").param("after", after).param("size", String.valueOf(size)))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    @Test
+    public void testWalksEveryTodoOnce() throws Exception {
+        List<String> details = new ArrayList<>();
+        String after = "";
+        int pages = 0;
+
+        while (after != null) {
+            JsonNode page = fetch(after, 10);
+            for (JsonNode todo : page.get("content"))
+                details.add(todo.get("details").asText());
+            after = page.get("next").isNull() ? null : page.get("next").asText();
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(25, details.size());
+        for (int i = 0; i < 25; i++)
+            assertEquals("Todo " + i, details.get(i));
+
+        // One seek per page, and no COUNT(*).
+        assertEquals(3, statistics.getQueryExecutionCount());
+    }
+
+    @Test
+    public void testLastFullPageHasNoNextCursor() throws Exception {
+        JsonNode page = fetch("", 25);
+        assertEquals(25, page.get("content").size());
+        assertTrue(page.get("next").isNull());
+        assertNull(page.get("totalElements"));
+    }
+
+    @Test
+    public void testRejectsBadCursor() throws Exception {
+        mockMvc.perform(get("/todos").param("after", "not a cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todos").param("after", TodoCursorPage.encodeCursor(1).substring(1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testAuthorOnlySeesTheirTodos() throws Exception {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Owner");
+            todo.setDetails("Owned " + i);
+            expected.add(todoJpaRepository.save(todo).getId());
+        }
+        statistics.clear();
+
+        List<Long> seen = new ArrayList<>();
+        String after = "";
+        int pages = 0;
+        while (after != null) {
+            String response = mockMvc.perform(get("/todos")
+                    .param("author", "Owner")
+                    .param("after", after)
+                    .param("size", "3"))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            JsonNode page = objectMapper.readTree(response);
+            for (JsonNode todo : page.get("content")) {
+                assertEquals("Owner", todo.get("author").asText());
+                seen.add(todo.get("id").asLong());
+            }
+            after = page.get("next").isNull() ? null : page.get("next").asText();
+            pages++;
+        }
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+        assertEquals(pages, statistics.getQueryExecutionCount(), "One query per page, no counting");
+
+        // The first page doesn't need an after at all.
+        mockMvc.perform(get("/todos").param("author", "Nobody"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/todos").param("author", "Owner").param("after", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testPlainPagingStillWorks() throws Exception {
+        mockMvc.perform(get("/todos").param("page", "1").param("size", "10"))
+                .andExpect(status().isOk());
+    }
+
+}
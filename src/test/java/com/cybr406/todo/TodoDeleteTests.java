@@ -0,0 +1,110 @@
+package com.cybr406.todo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TodoDeleteTests {
+
+    private static final String[] WORDS = {"alpha", "beta", "gamma"};
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private TodoSearch todoSearch;
+
+    private long todoId;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+
+        Todo todo = new Todo();
+        todo.setAuthor("Delete");
+        todo.setDetails("Doomed todo");
+        for (String word : WORDS) {
+            Task task = new Task();
+            task.setCompleted(false);
+            task.setDetails("Doomed task " + word);
+            todo.getTasks().add(task);
+        }
+        todoId = todoBulkWriter.createAll(Collections.singletonList(todo).iterator()).get(0);
+    }
+
+    private List<Long> taskIds() {
+        return jdbcTemplate.queryForList("SELECT ID FROM TASK WHERE TODO_ID = ? ORDER BY ID", Long.class, todoId);
+    }
+
+    private long hits(String query) {
+        return todoSearch.search(query, PageRequest.of(0, 10)).getTotalElements();
+    }
+
+    @Test
+    public void testDeleteTodoIsOneStatement() throws Exception {
+        SqlStatementCounter.reset();
+        mockMvc.perform(delete("/todos/{id}", todoId)).andExpect(status().isNoContent());
+        assertEquals(1, SqlStatementCounter.count(), "No existence check and no load before the DELETE");
+        assertTrue(taskIds().isEmpty(), "The foreign key deletes the tasks");
+
+        SqlStatementCounter.reset();
+        mockMvc.perform(delete("/todos/{id}", todoId)).andExpect(status().isNotFound());
+        assertEquals(1, SqlStatementCounter.count());
+    }
+
+    @Test
+    public void testDeleteTaskBumpsVersion() throws Exception {
+        List<Long> taskIds = taskIds();
+
+        SqlStatementCounter.reset();
+        mockMvc.perform(delete("/tasks/{id}", taskIds.get(0))).andExpect(status().isNoContent());
+        // The todo's id, the DELETE and the version UPDATE. Neither the task nor the todo is loaded.
+        assertEquals(3, SqlStatementCounter.count());
+        assertEquals(taskIds.subList(1, 3), taskIds());
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT VERSION FROM TODO WHERE ID = ?", Long.class, todoId));
+
+        mockMvc.perform(delete("/tasks/{id}", taskIds.get(0))).andExpect(status().isNotFound());
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT VERSION FROM TODO WHERE ID = ?", Long.class, todoId));
+    }
+
+    @Test
+    public void testSearchForgetsDeletes() throws Exception {
+        assertEquals(1, hits("alpha"));
+
+        mockMvc.perform(delete("/tasks/{id}", taskIds().get(0))).andExpect(status().isNoContent());
+        assertEquals(0, hits("alpha"));
+        assertEquals(1, hits("beta"));
+
+        mockMvc.perform(delete("/todos/{id}", todoId)).andExpect(status().isNoContent());
+        assertEquals(0, hits("doomed"));
+        assertEquals(0, hits("beta"));
+    }
+
+}
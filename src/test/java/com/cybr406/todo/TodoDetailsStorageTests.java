@@ -0,0 +1,197 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TodoDetailsStorageTests {
+
+    private static final String SHORT = "Short details";
+
+    private static final String LONG = String.join("", Collections.nCopies(300, "long details "));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private TodoExporter todoExporter;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+    }
+
+    private JsonNode create(String details) throws Exception {
+        Todo todo = new Todo();
+        todo.setAuthor("Storage");
+        todo.setDetails(details);
+        String response = mockMvc.perform(post("/todos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(todo)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private Map<String, Object> columns(String table, long id) {
+        return jdbcTemplate.queryForMap("SELECT DETAILS, DETAILS_OVERFLOW FROM " + table + " WHERE ID = ?", id);
+    }
+
+    @Test
+    public void testShortDetailsStayInline() throws Exception {
+        long id = create(SHORT).get("id").asLong();
+
+        Map<String, Object> columns = columns("TODO", id);
+        assertEquals(SHORT, columns.get("DETAILS"));
+        assertNull(columns.get("DETAILS_OVERFLOW"));
+    }
+
+    @Test
+    public void testLongDetailsOverflow() throws Exception {
+        assertTrue(LONG.length() > DetailsColumns.INLINE_LENGTH);
+        long id = create(LONG).get("id").asLong();
+
+        Map<String, Object> columns = columns("TODO", id);
+        assertEquals(LONG.substring(0, DetailsColumns.INLINE_LENGTH), columns.get("DETAILS"));
+        assertNotNull(columns.get("DETAILS_OVERFLOW"));
+
+        String response = mockMvc.perform(get("/todos/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertEquals(LONG, objectMapper.readTree(response).get("details").asText());
+    }
+
+    @Test
+    public void testLongTaskDetailsRoundTrip() throws Exception {
+        long id = create(SHORT).get("id").asLong();
+        Task task = new Task();
+        task.setCompleted(false);
+        task.setDetails(LONG);
+        String response = mockMvc.perform(post("/todos/{id}/tasks", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(task)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        JsonNode tasks = objectMapper.readTree(response).get("tasks");
+        assertEquals(LONG, tasks.get(0).get("details").asText());
+
+        Map<String, Object> columns = columns("TASK", tasks.get(0).get("id").asLong());
+        assertEquals(LONG.substring(0, DetailsColumns.INLINE_LENGTH), columns.get("DETAILS"));
+    }
+
+    @Test
+    public void testBulkWriterAndExporterSplitAndJoin() throws Exception {
+        Todo todo = new Todo();
+        todo.setAuthor("Storage");
+        todo.setDetails(LONG);
+        Task task = new Task();
+        task.setCompleted(true);
+        task.setDetails(LONG + "task");
+        todo.getTasks().add(task);
+        Todo other = new Todo();
+        other.setAuthor("Storage");
+        other.setDetails(SHORT);
+        List<Long> ids = todoBulkWriter.createAll(Arrays.asList(todo, other).iterator());
+
+        assertNull(columns("TODO", ids.get(1)).get("DETAILS_OVERFLOW"));
+        Todo saved = todoJpaRepository.findById(ids.get(0)).orElseThrow(AssertionError::new);
+        assertEquals(LONG, saved.getDetails());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, todoExporter.export(out));
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        JsonNode exported = objectMapper.readTree(lines[0]);
+        assertEquals(LONG, exported.get("details").asText());
+        assertEquals(LONG + "task", exported.get("tasks").get(0).get("details").asText());
+        assertEquals(SHORT, objectMapper.readTree(lines[1]).get("details").asText());
+    }
+
+    private List<String> sortedDetails(String view) throws Exception {
+        MockHttpServletRequestBuilder request = get("/todos").param("sort", "details,desc");
+        if (view != null)
+            request.param("view", view);
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        List<String> details = new ArrayList<>();
+        for (JsonNode todo : objectMapper.readTree(response).get("content"))
+            details.add(todo.get("details").asText());
+        return details;
+    }
+
+    @Test
+    public void testSortsByDetails() throws Exception {
+        // Only the long one has anything in DETAILS_OVERFLOW, so sorting by that column would keep the others in id order.
+        create("b short");
+        create("c short");
+        create("a " + LONG);
+        create("d short");
+
+        List<String> expected = Arrays.asList("d short", "c short", "b short", "a " + LONG);
+        assertEquals(expected, sortedDetails(null));
+        assertEquals(expected, sortedDetails("summary"));
+        assertEquals(expected, sortedDetails("detail"));
+    }
+
+    @Test
+    public void testInlineDoesNotSplitSurrogatePairs() {
+        StringBuilder details = new StringBuilder();
+        while (details.length() < DetailsColumns.INLINE_LENGTH - 1)
+            details.append('a');
+        details.append("\uD83D\uDE00 and more");
+
+        String inline = DetailsColumns.inline(details.toString());
+        assertEquals(DetailsColumns.INLINE_LENGTH - 1, inline.length());
+        assertEquals(details.toString(), DetailsColumns.join(inline, DetailsColumns.overflow(details.toString())));
+        assertNull(DetailsColumns.overflow(SHORT));
+        assertEquals(SHORT, DetailsColumns.join(SHORT, null));
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.cybr406.todo;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Checks todo.execution=async.
+ */
+public class TodoExecutionModeTests {
+
+    private static Todo todo(String details) {
+        Todo todo = new Todo();
+        todo.setAuthor("Execution");
+        todo.setDetails(details);
+        return todo;
+    }
+
+    @Test
+    public void testRejectedRequestsGetServiceUnavailable() {
+        ServiceUnavailableResolver resolver = new ServiceUnavailableResolver(e -> e instanceof TaskRejectedException);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(resolver.resolveException(new MockHttpServletRequest(), response, null, new IllegalStateException()));
+        assertNotNull(resolver.resolveException(new MockHttpServletRequest(), response, null,
+                new TaskRejectedException("The queue is full")));
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+    }
+
+    @Nested
+    @SpringBootTest(properties = "todo.execution=async")
+    @AutoConfigureMockMvc
+    class Async {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        ThreadPoolTaskExecutor todoJdbcExecutor;
+
+        @Test
+        public void testHandlersRunOnJdbcExecutor() throws Exception {
+            Todo todo = todoJpaRepository.save(todo("Run me elsewhere"));
+            long completed = todoJdbcExecutor.getThreadPoolExecutor().getCompletedTaskCount();
+
+            MvcResult started = mockMvc.perform(get("/todos/{id}", todo.getId()))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.details").value("Run me elsewhere"));
+
+            assertEquals(completed + 1, todoJdbcExecutor.getThreadPoolExecutor().getCompletedTaskCount());
+        }
+
+        @Test
+        public void testStatusCodesAreKept() throws Exception {
+            MvcResult started = mockMvc.perform(post("/todos")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"author\": \"Execution\", \"details\": \"Created\"}"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isCreated());
+
+            started = mockMvc.perform(get("/todos/{id}", Long.MAX_VALUE))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isNotFound());
+        }
+
+        @Test
+        public void testInvalidRequestsAreRejectedBeforeOffloading() throws Exception {
+            mockMvc.perform(post("/todos")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"author\": \"Execution\"}"))
+                    .andExpect(request().asyncNotStarted())
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        public void testStreamingHandlersAreLeftAlone() throws Exception {
+            todoJpaRepository.save(todo("Export me"));
+
+            MvcResult started = mockMvc.perform(get("/todos/export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            assertTrue(body.contains("Export me"));
+        }
+
+    }
+
+}
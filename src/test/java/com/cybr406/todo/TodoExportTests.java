@@ -0,0 +1,132 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "todo.export.fetch-size=3")
+@AutoConfigureMockMvc
+public class TodoExportTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private TodoExporter todoExporter;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Export");
+            todo.setDetails("Todo " + i);
+            // Some todos have no tasks at all, including the first and last, to exercise the merge at both ends.
+            for (int j = 0; j < i % 4; j++) {
+                Task task = new Task();
+                task.setCompleted(j == 1 ? null : j == 0);
+                task.setDetails("Task " + j + " of todo " + i);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        ids = todoBulkWriter.createAll(todos.iterator());
+    }
+
+    @Test
+    public void testExportsEveryTodoWithItsTasks() throws Exception {
+        MvcResult started = mockMvc.perform(get("/todos/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(20, lines.length);
+        assertTrue(body.endsWith("\n"));
+
+        for (int i = 0; i < 20; i++) {
+            JsonNode todo = objectMapper.readTree(lines[i]);
+            assertEquals(ids.get(i).longValue(), todo.get("id").asLong());
+            assertEquals("Todo " + i, todo.get("details").asText());
+            assertEquals(i % 4, todo.get("tasks").size());
+            for (int j = 0; j < i % 4; j++) {
+                JsonNode task = todo.get("tasks").get(j);
+                assertEquals("Task " + j + " of todo " + i, task.get("details").asText());
+                if (j == 1)
+                    assertTrue(task.get("completed").isNull());
+                else
+                    assertEquals(j == 0, task.get("completed").asBoolean());
+            }
+
+            // Each line reads back as the same todo GET /todos/{id} returns.
+            Todo parsed = objectMapper.readValue(lines[i], Todo.class);
+            assertEquals(i % 4, parsed.getTasks().size());
+        }
+    }
+
+    @Test
+    public void testExportGetsItsOwnTimeout() throws Exception {
+        // Left to spring.mvc.async.request-timeout, which isn't set, the request would keep the container's default.
+        MvcResult export = mockMvc.perform(get("/todos/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(todoExporter.getTimeout().toMillis(), export.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(export)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void testExportsNothingWhenEmpty() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, todoExporter.export(out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testCanRunTwiceOnTheSameConnection() {
+        // The lazy execution setting is turned back off, so the pooled connection keeps working normally.
+        assertEquals(20, todoExporter.export(new ByteArrayOutputStream()));
+        assertEquals(20, todoExporter.export(new ByteArrayOutputStream()));
+        assertEquals(20, todoJpaRepository.findAll().size());
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements each read endpoint runs, to make sure serializing tasks doesn't cost a query per todo.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class TodoFetchPlanTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Long firstId;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+        for (int i = 0; i < 25; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Fetch");
+            todo.setDetails("Todo " + i);
+            todoJpaRepository.save(todo);
+            if (firstId == null)
+                firstId = todo.getId();
+
+            for (int j = 0; j < 3; j++) {
+                Task task = new Task(todo);
+                task.setCompleted(j == 0);
+                task.setDetails("Task " + j + " of todo " + i);
+                taskJpaRepository.save(task);
+            }
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private JsonNode perform(MockHttpServletRequestBuilder request) throws Exception {
+        statistics.clear();
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    @Test
+    public void testPageLoadsTasksInOneQuery() throws Exception {
+        JsonNode page = perform(get("/todos").param("size", "20"));
+
+        assertEquals(20, page.get("content").size());
+        for (JsonNode todo : page.get("content"))
+            assertEquals(3, todo.get("tasks").size());
+
+        // The page, its count and one batch for all of the tasks.
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testCursorPageLoadsTasksInOneQuery() throws Exception {
+        JsonNode page = perform(get("/todos").param("after", "").param("size", "20"));
+
+        assertEquals(20, page.get("content").size());
+        for (JsonNode todo : page.get("content"))
+            assertEquals(3, todo.get("tasks").size());
+
+        // The seek and one batch for all of the tasks.
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testFindLoadsTodoAndTasksInOneQuery() throws Exception {
+        JsonNode todo = perform(get("/todos/{id}", firstId));
+
+        assertEquals("Todo 0", todo.get("details").asText());
+        assertEquals(3, todo.get("tasks").size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+}
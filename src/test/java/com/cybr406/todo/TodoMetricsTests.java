@@ -0,0 +1,126 @@
+package com.cybr406.todo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the request, repository and SQL metrics are recorded and published for Prometheus.
+ *
+ * The registry is shared by every test that uses the same application context, so these compare counts before and
+ * after instead of expecting exact totals, or remove the meters they check first.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TodoMetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    private Todo save() {
+        Todo todo = new Todo();
+        todo.setAuthor("Metrics");
+        todo.setDetails("Measure me");
+        return todoJpaRepository.save(todo);
+    }
+
+    private long count(Timer timer) {
+        return timer == null ? 0 : timer.count();
+    }
+
+    private Timer requests(String status) {
+        return registry.find("http.server.requests").tag("uri", "/todos/{id}").tag("status", status).timer();
+    }
+
+    private Timer repository(String repository, String method) {
+        return registry.find(RepositoryMetrics.TIMER).tag("repository", repository).tag("method", method)
+                .tag("exception", "none").timer();
+    }
+
+    @Test
+    public void testRequestsAreTimedByStatus() throws Exception {
+        Todo todo = save();
+        long found = count(requests("200"));
+        long missing = count(requests("404"));
+
+        mockMvc.perform(get("/todos/{id}", todo.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/todos/{id}", Long.MAX_VALUE)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/todos/{id}", Long.MAX_VALUE)).andExpect(status().isNotFound());
+
+        assertEquals(found + 1, count(requests("200")));
+        assertEquals(missing + 2, count(requests("404")));
+    }
+
+    @Test
+    public void testRepositoryCallsAreTimed() {
+        long saves = count(repository("TodoJpaRepository", "save"));
+        long counts = count(repository("InMemoryTodoRepository", "count"));
+
+        save();
+        todoRepository.count();
+
+        assertEquals(saves + 1, count(repository("TodoJpaRepository", "save")));
+        assertEquals(counts + 1, count(repository("InMemoryTodoRepository", "count")));
+    }
+
+    @Test
+    public void testRepositoryFailuresAreTimedByException() {
+        assertThrows(RuntimeException.class, () -> todoJpaRepository.deleteById(Long.MAX_VALUE));
+
+        Timer failed = registry.find(RepositoryMetrics.TIMER).tag("repository", "TodoJpaRepository")
+                .tag("method", "deleteById").tag("exception", "EmptyResultDataAccessException").timer();
+        assertNotNull(failed);
+        assertTrue(failed.count() > 0);
+    }
+
+    @Test
+    public void testSqlStatementsAreCountedPerRequest() throws Exception {
+        Todo todo = save();
+        // Dropped so the counts start from zero; the next request registers the summary again.
+        registry.find(SqlStatementMetrics.SUMMARY).meters().forEach(registry::remove);
+
+        mockMvc.perform(get("/todos/{id}", todo.getId())).andExpect(status().isOk());
+
+        DistributionSummary summary = registry.get(SqlStatementMetrics.SUMMARY)
+                .tag("method", "GET")
+                .tag("uri", "/todos/{id}")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(1, summary.totalAmount(), "The todo and its tasks are read with one query.");
+    }
+
+    @Test
+    public void testPrometheusEndpoint() throws Exception {
+        mockMvc.perform(get("/todos/{id}", save().getId())).andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(scrape.contains("todo_repository_seconds_bucket{"));
+        assertTrue(scrape.contains("todo_sql_statements_bucket{"));
+        assertTrue(scrape.contains("hikaricp_connections_acquire_seconds_bucket{"));
+    }
+
+}
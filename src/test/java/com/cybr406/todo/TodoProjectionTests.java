@@ -0,0 +1,144 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TodoProjectionTests {
+
+    private static final String LONG = String.join("", Collections.nCopies(300, "long details "));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    private List<Long> ids;
+
+    /**
+     * Three todos with 0, 1 and 2 tasks. The last todo's details are long enough to overflow, and its second task was
+     * never marked completed or not.
+     */
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Projection");
+            todo.setDetails(i == 2 ? LONG : "Todo " + i);
+            for (int j = 0; j < i; j++) {
+                Task task = new Task();
+                task.setCompleted(j == 0 ? Boolean.TRUE : null);
+                task.setDetails("Task " + j + " of todo " + i);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        ids = todoBulkWriter.createAll(todos.iterator());
+    }
+
+    private JsonNode view(String view, String sort) throws Exception {
+        String response = mockMvc.perform(get("/todos").param("view", view).param("sort", sort))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    @Test
+    public void testSummaryCountsTasks() throws Exception {
+        SqlStatementCounter.reset();
+        JsonNode page = view("summary", "id");
+        // Spring Data skips counting the todos when the first page isn't full.
+        assertEquals(2, SqlStatementCounter.count(), "The page and then the task counts of the whole page");
+
+        assertEquals(3, page.get("totalElements").asInt());
+        JsonNode content = page.get("content");
+        for (int i = 0; i < 3; i++) {
+            JsonNode todo = content.get(i);
+            assertEquals(ids.get(i).longValue(), todo.get("id").asLong());
+            assertEquals("Projection", todo.get("author").asText());
+            assertEquals(i, todo.get("taskCount").asInt());
+            assertFalse(todo.has("tasks"));
+        }
+        assertEquals(LONG, content.get(2).get("details").asText());
+    }
+
+    @Test
+    public void testDetailHasTasksWithoutNulls() throws Exception {
+        SqlStatementCounter.reset();
+        JsonNode page = view("detail", "id,desc");
+        assertEquals(2, SqlStatementCounter.count(), "The page and then the tasks of the whole page");
+
+        JsonNode content = page.get("content");
+        assertEquals(ids.get(2).longValue(), content.get(0).get("id").asLong());
+        assertEquals(LONG, content.get(0).get("details").asText());
+        JsonNode tasks = content.get(0).get("tasks");
+        assertEquals(2, tasks.size());
+        assertEquals("Task 0 of todo 2", tasks.get(0).get("details").asText());
+        assertTrue(tasks.get(0).get("completed").asBoolean());
+        assertFalse(tasks.get(1).has("completed"), "Null fields are left out");
+        assertFalse(tasks.get(1).has("todoId"));
+        assertEquals(0, content.get(2).get("tasks").size());
+    }
+
+    @Test
+    public void testViewsMatchTheEntities() throws Exception {
+        String response = mockMvc.perform(get("/todos").param("sort", "id"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        JsonNode entities = objectMapper.readTree(response).get("content");
+        JsonNode details = view("detail", "id").get("content");
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(entities.get(i).get("details"), details.get(i).get("details"));
+            assertEquals(entities.get(i).get("tasks").size(), details.get(i).get("tasks").size());
+        }
+    }
+
+    @Test
+    public void testUnknownView() throws Exception {
+        mockMvc.perform(get("/todos").param("view", "everything")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testEmptyPage() throws Exception {
+        String response = mockMvc.perform(get("/todos").param("view", "detail").param("page", "5"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertEquals(0, objectMapper.readTree(response).get("content").size());
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The replica is a second in-memory H2 database, which only catches up with the primary when sync copies the primary
+ * over. Reads that see a change before sync went to the primary; reads that don't went to the replica.
+ */
+@SpringBootTest(properties = "todo.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+public class TodoReadReplicaTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    private DataSource primaryDataSource;
+
+    private DataSource replicaDataSource;
+
+    @BeforeEach
+    public void setup() {
+        primaryDataSource = ((ReadReplicaDataSource) dataSource).getPrimary();
+        replicaDataSource = ((ReadReplicaDataSource) dataSource).getReplica();
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+        sync();
+    }
+
+    /**
+     * Replaces the replica with a copy of the primary, schema and rows.
+     */
+    private void sync() {
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : new JdbcTemplate(primaryDataSource).queryForList("SCRIPT", String.class))
+            replica.execute(statement);
+    }
+
+    private long create(String details) throws Exception {
+        Todo todo = new Todo();
+        todo.setAuthor("Replica");
+        todo.setDetails(details);
+        String response = mockMvc.perform(post("/todos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(todo)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readTree(response).get("id").asLong();
+    }
+
+    @Test
+    public void testDataSourceRoutes() {
+        assertTrue(dataSource instanceof ReadReplicaDataSource);
+    }
+
+    @Test
+    public void testReadsGoToTheReplica() throws Exception {
+        long id = create("Written to the primary");
+
+        mockMvc.perform(get("/todos/{id}", id)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/todos")).andExpect(jsonPath("$.content.length()").value(0));
+        mockMvc.perform(get("/todos").param("view", "summary")).andExpect(jsonPath("$.content.length()").value(0));
+        mockMvc.perform(get("/todos").param("after", "")).andExpect(jsonPath("$.content.length()").value(0));
+
+        sync();
+        mockMvc.perform(get("/todos/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.details").value("Written to the primary"));
+        mockMvc.perform(get("/todos")).andExpect(jsonPath("$.content.length()").value(1));
+    }
+
+    @Test
+    public void testRefusesToStartWithTheSecondLevelCache() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(ReadReplicaConfiguration.class)
+                .withPropertyValues("todo.datasource.replica.url=jdbc:h2:mem:replica",
+                        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+                .run(context -> {
+                    Throwable cause = context.getStartupFailure();
+                    assertNotNull(cause);
+                    while (cause.getCause() != null)
+                        cause = cause.getCause();
+                    assertTrue(cause instanceof IllegalStateException, cause.toString());
+                    assertTrue(cause.getMessage().contains("second-level cache"), cause.getMessage());
+                });
+    }
+
+    @Test
+    public void testWritesStayOnThePrimary() throws Exception {
+        long id = create("Not on the replica yet");
+
+        // Adding a task reads the todo inside a read-write transaction, so from the primary, which has it.
+        mockMvc.perform(post("/todos/{id}/tasks", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"completed\": false, \"details\": \"Task\"}"))
+                .andExpect(status().isCreated());
+        assertEquals(1L, new JdbcTemplate(primaryDataSource)
+                .queryForObject("SELECT COUNT(*) FROM TASK WHERE TODO_ID = ?", Long.class, id));
+        assertEquals(0L, new JdbcTemplate(replicaDataSource)
+                .queryForObject("SELECT COUNT(*) FROM TASK", Long.class));
+
+        sync();
+        mockMvc.perform(get("/todos/{id}", id)).andExpect(jsonPath("$.tasks.length()").value(1));
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class TodoSearchTests {
+
+    private static List<Long> ids(TodoSearchIndex.Result result) {
+        return result.hits.stream().map(hit -> hit.todoId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("buy", "2", "cartons", "of", "milk", "café"),
+                TodoSearchIndex.tokenize("Buy 2 cartons-of MILK, café!"));
+        assertTrue(TodoSearchIndex.tokenize(null).isEmpty());
+        assertTrue(TodoSearchIndex.tokenize(" ... ").isEmpty());
+    }
+
+    @Test
+    public void testRanksRarerAndMoreFrequentTermsHigher() {
+        TodoSearchIndex index = new TodoSearchIndex();
+        index.addTodo(1, "Buy milk");
+        index.addTodo(2, "Buy eggs and buy bread");
+        index.addTodo(3, "Walk the dog");
+        index.addTodo(4, "Buy milk and milk and milk");
+
+        assertEquals(Arrays.asList(4L, 1L), ids(index.search("milk", 0, 10)));
+        // eggs is rarer than buy, so the todo with both comes first.
+        assertEquals(Arrays.asList(2L, 1L, 4L), ids(index.search("buy eggs", 0, 10)));
+        assertEquals(3, index.search("buy eggs", 0, 10).total);
+        assertTrue(index.search("cheese", 0, 10).hits.isEmpty());
+        assertEquals(0, index.search("  ", 0, 10).total);
+    }
+
+    @Test
+    public void testMatchesThroughTasks() {
+        TodoSearchIndex index = new TodoSearchIndex();
+        index.addTodo(1, "Groceries");
+        index.addTodo(2, "Chores");
+        index.addTask(1, 10, "Milk");
+        index.addTask(2, 20, "Milk the cow");
+        index.addTask(2, 20, "Milk the cow");
+
+        assertEquals(Arrays.asList(1L, 2L), ids(index.search("milk", 0, 10)));
+        assertEquals(Arrays.asList(2L), ids(index.search("cow chores", 0, 10)));
+    }
+
+    @Test
+    public void testPrefix() {
+        TodoSearchIndex index = new TodoSearchIndex();
+        index.addTodo(1, "Schedule meeting");
+        index.addTodo(2, "Meet Sam");
+        index.addTodo(3, "Eat");
+        index.addTodo(4, "E-mail Sam");
+
+        assertEquals(Arrays.asList(1L, 2L), ids(index.search("MEE*", 0, 10)).stream().sorted()
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList(4L), ids(index.search("e-ma*", 0, 10)));
+        assertTrue(ids(index.search("meeting*", 0, 10)).contains(1L));
+        assertEquals(0, index.search("*", 0, 10).total);
+    }
+
+    @Test
+    public void testRemove() {
+        TodoSearchIndex index = new TodoSearchIndex();
+        index.addTodo(1, "Milk");
+        index.addTodo(2, "Bread");
+        index.addTask(2, 20, "Milk");
+        index.addTask(2, 21, "Milk again");
+
+        index.removeTask(20);
+        assertEquals(Arrays.asList(1L, 2L), ids(index.search("milk", 0, 10)));
+        index.removeTask(21);
+        assertEquals(Arrays.asList(1L), ids(index.search("milk", 0, 10)));
+        index.removeTodo(1);
+        index.removeTodo(1);
+        assertTrue(index.search("milk", 0, 10).hits.isEmpty());
+        assertEquals(1, index.size());
+
+        // Adding it back after it was removed works like the first time.
+        index.addTodo(1, "Milk");
+        assertEquals(Arrays.asList(1L), ids(index.search("milk", 0, 10)));
+    }
+
+    @Test
+    public void testCompactionKeepsResults() {
+        TodoSearchIndex index = new TodoSearchIndex();
+        for (long id = 0; id < 3000; id++) {
+            index.addTodo(id, "todo " + (id % 2 == 0 ? "even" : "odd"));
+            index.addTask(id, id, "task " + id);
+        }
+        // Removing most todos, with their tasks, compacts the index along the way.
+        for (long id = 0; id < 2900; id++)
+            index.removeTodo(id);
+
+        assertEquals(100, index.size());
+        TodoSearchIndex.Result even = index.search("even", 0, 1000);
+        assertEquals(50, even.total);
+        assertTrue(even.hits.stream().allMatch(hit -> hit.todoId >= 2900 && hit.todoId % 2 == 0));
+        assertEquals(Arrays.asList(2950L), ids(index.search("2950", 0, 10)));
+        assertTrue(index.search("100", 0, 10).hits.isEmpty());
+    }
+
+    @Test
+    public void testPaging() {
+        TodoSearchIndex index = new TodoSearchIndex();
+        for (long id = 1; id <= 25; id++)
+            index.addTodo(id, "Page");
+
+        // Equal scores come out in id order.
+        TodoSearchIndex.Result page = index.search("page", 10, 10);
+        assertEquals(25, page.total);
+        assertEquals(11L, (long) ids(page).get(0));
+        assertEquals(10, page.hits.size());
+        assertEquals(5, index.search("page", 20, 10).hits.size());
+        assertTrue(index.search("page", 30, 10).hits.isEmpty());
+    }
+
+    @Nested
+    @SpringBootTest
+    @AutoConfigureMockMvc
+    class Endpoint {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        ObjectMapper objectMapper;
+
+        @Autowired
+        TodoSearch todoSearch;
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        TaskJpaRepository taskJpaRepository;
+
+        @BeforeEach
+        public void setup() {
+            taskJpaRepository.deleteAll();
+            todoJpaRepository.deleteAll();
+        }
+
+        private JsonNode perform(String method, String uri, String body, int status) throws Exception {
+            String response = mockMvc.perform(MockMvcRequestBuilders.request(HttpMethod.valueOf(method), uri)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body == null ? "" : body))
+                    .andExpect(status().is(status))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            return response.isEmpty() ? null : objectMapper.readTree(response);
+        }
+
+        private List<Long> search(String q) throws Exception {
+            JsonNode page = perform("GET", "/todos/search?q=" + q, null, 200);
+            return StreamSupport.stream(page.get("content").spliterator(), false)
+                    .map(hit -> hit.at("/todo/id").asLong())
+                    .collect(Collectors.toList());
+        }
+
+        @Test
+        public void testFollowsChanges() throws Exception {
+            long todoId = perform("POST", "/todos", "{\"author\": \"Search\", \"details\": \"Plan the party\"}", 201)
+                    .get("id").asLong();
+            assertEquals(Arrays.asList(todoId), search("party"));
+
+            long taskId = perform("POST", "/todos/" + todoId + "/tasks", "{\"details\": \"Order balloons\"}", 201)
+                    .at("/tasks/0/id").asLong();
+            assertEquals(Arrays.asList(todoId), search("balloon*"));
+            JsonNode hit = perform("GET", "/todos/search?q=balloons", null, 200).at("/content/0");
+            assertEquals("Order balloons", hit.at("/todo/tasks/0/details").asText());
+            assertTrue(hit.get("score").floatValue() > 0);
+
+            perform("DELETE", "/tasks/" + taskId, null, 204);
+            assertTrue(search("balloons").isEmpty());
+            perform("DELETE", "/todos/" + todoId, null, 204);
+            assertTrue(search("party").isEmpty());
+        }
+
+        @Test
+        public void testFindsBulkInsertedTodos() throws Exception {
+            JsonNode ids = perform("POST", "/todos/bulk", "[{\"author\": \"Bulk\", \"details\": \"Imported\"}, "
+                    + "{\"author\": \"Bulk\", \"details\": \"Other\", \"tasks\": [{\"details\": \"Imported task\"}]}]",
+                    201);
+            assertEquals(Arrays.asList(ids.get(0).asLong(), ids.get(1).asLong()), search("imported"));
+        }
+
+        @Test
+        public void testRebuildsFromTheDatabase() throws Exception {
+            // Written behind the index's back, like rows that were there before the application started.
+            jdbcTemplate.update("INSERT INTO TODO (AUTHOR, DETAILS, VERSION) VALUES ('Rebuild', 'Unseen', 0)");
+            assertTrue(search("unseen").isEmpty());
+
+            todoSearch.rebuild();
+            assertEquals(1, search("unseen").size());
+        }
+
+        @Test
+        public void testPaging() throws Exception {
+            for (int i = 0; i < 5; i++)
+                perform("POST", "/todos", "{\"author\": \"Search\", \"details\": \"Paged " + i + "\"}", 201);
+
+            JsonNode page = perform("GET", "/todos/search?q=paged&page=1&size=2", null, 200);
+            assertEquals(5, page.get("totalElements").asInt());
+            assertEquals(2, page.get("content").size());
+            perform("GET", "/todos/search?q=", null, 400);
+        }
+
+    }
+
+}
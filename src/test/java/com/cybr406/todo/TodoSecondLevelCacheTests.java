@@ -0,0 +1,177 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("cache")
+public class TodoSecondLevelCacheTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private long todoId;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+
+        Todo todo = new Todo();
+        todo.setAuthor("Cache");
+        todo.setDetails("Cached todo");
+        todoId = todoJpaRepository.save(todo).getId();
+        addTask("first");
+        addTask("second");
+    }
+
+    private JsonNode addTask(String details) throws Exception {
+        Task task = new Task();
+        task.setCompleted(false);
+        task.setDetails(details);
+        return perform(post("/todos/{id}/tasks", todoId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(task)), 201);
+    }
+
+    private JsonNode perform(MockHttpServletRequestBuilder request, int status) throws Exception {
+        statistics.clear();
+        String response = mockMvc.perform(request)
+                .andExpect(status().is(status))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return response.isEmpty() ? null : objectMapper.readTree(response);
+    }
+
+    private JsonNode findTodo() throws Exception {
+        return perform(get("/todos/{id}", todoId), 200);
+    }
+
+    @Test
+    public void testRepeatedFindUsesNoSql() throws Exception {
+        assertEquals(2, findTodo().get("tasks").size());
+
+        JsonNode todo = findTodo();
+        assertEquals("Cached todo", todo.get("details").asText());
+        assertEquals(2, todo.get("tasks").size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    @Test
+    public void testAddTaskIsVisible() throws Exception {
+        findTodo();
+        addTask("third");
+        assertEquals(3, findTodo().get("tasks").size());
+    }
+
+    @Test
+    public void testCachedTodoHasCurrentETag() throws Exception {
+        findTodo();
+        String added = mockMvc.perform(post("/todos/{id}/tasks", todoId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"completed\": false, \"details\": \"third\"}"))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String found = mockMvc.perform(get("/todos/{id}", todoId))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        assertEquals(added, found);
+    }
+
+    @Test
+    public void testDeleteTaskIsVisible() throws Exception {
+        JsonNode tasks = findTodo().get("tasks");
+        perform(delete("/tasks/{id}", tasks.get(0).get("id").asLong()), 204);
+
+        tasks = findTodo().get("tasks");
+        assertEquals(1, tasks.size());
+        assertEquals("second", tasks.get(0).get("details").asText());
+    }
+
+    @Test
+    public void testDeleteTodoIsVisible() throws Exception {
+        long taskId = findTodo().get("tasks").get(0).get("id").asLong();
+        perform(delete("/todos/{id}", todoId), 204);
+
+        perform(get("/todos/{id}", todoId), 404);
+        assertFalse(taskJpaRepository.findById(taskId).isPresent(), "The cascade deleted task must not come from the cache.");
+    }
+
+    @Test
+    public void testBulkInsertIsVisibleToCachedPages() throws Exception {
+        assertEquals(1, perform(get("/todos"), 200).get("content").size());
+        assertEquals(1, perform(get("/todos"), 200).get("content").size());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        Todo todo = new Todo();
+        todo.setAuthor("Bulk");
+        todo.setDetails("Inserted with JDBC");
+        todoBulkWriter.createAll(Collections.singletonList(todo).iterator());
+
+        assertEquals(2, perform(get("/todos"), 200).get("content").size());
+    }
+
+    @Test
+    public void testStatisticsEndpoint() throws Exception {
+        findTodo();
+        findTodo();
+
+        // Not through perform, which would reset the counts first.
+        String response = mockMvc.perform(get("/cache/statistics"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        JsonNode statistics = objectMapper.readTree(response);
+        assertTrue(statistics.get(TodoCache.TODOS).get("hits").asLong() > 0);
+        assertTrue(statistics.get(TodoCache.TODO_TASKS).get("hits").asLong() > 0);
+        assertNotNull(statistics.get("queries"));
+    }
+
+}
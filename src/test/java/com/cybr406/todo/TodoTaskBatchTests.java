@@ -0,0 +1,202 @@
+package com.cybr406.todo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TodoTaskBatchTests {
+
+    private static final int TASKS_PER_TODO = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    private List<Long> todoIds;
+
+    @BeforeEach
+    public void setup() {
+        taskJpaRepository.deleteAll();
+        todoJpaRepository.deleteAll();
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Batch");
+            todo.setDetails("Todo " + i);
+            for (int j = 0; j < TASKS_PER_TODO; j++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("Task " + j + " of todo " + i);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        todoIds = todoBulkWriter.createAll(todos.iterator());
+    }
+
+    private List<Long> taskIds(long todoId) {
+        return jdbcTemplate.queryForList("SELECT ID FROM TASK WHERE TODO_ID = ? ORDER BY ID", Long.class, todoId);
+    }
+
+    private long version(long todoId) {
+        return jdbcTemplate.queryForObject("SELECT VERSION FROM TODO WHERE ID = ?", Long.class, todoId);
+    }
+
+    private long completed() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TASK WHERE COMPLETED", Long.class);
+    }
+
+    private int send(String path, Object body) throws Exception {
+        return mockMvc.perform(post(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)))
+                .andReturn()
+                .getResponse()
+                .getStatus();
+    }
+
+    /**
+     * Half the tasks of the first todo and one of the second's, so the batch spans two todos.
+     */
+    private List<Long> someTasks() {
+        List<Long> first = taskIds(todoIds.get(0));
+        List<Long> ids = new ArrayList<>(first.subList(0, TASKS_PER_TODO / 2));
+        ids.add(taskIds(todoIds.get(1)).get(0));
+        return ids;
+    }
+
+    @Test
+    public void testAddTasks() throws Exception {
+        long todoId = todoIds.get(0);
+        Task first = new Task();
+        first.setCompleted(true);
+        first.setDetails("First new task");
+        Task second = new Task();
+        second.setDetails("Second new task");
+
+        String response = mockMvc.perform(post("/todos/{id}/tasks/bulk", todoId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Arrays.asList(first, second))))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        JsonNode tasks = objectMapper.readTree(response).get("tasks");
+        assertEquals(TASKS_PER_TODO + 2, tasks.size());
+        assertEquals("First new task", tasks.get(TASKS_PER_TODO).get("details").asText());
+        assertTrue(tasks.get(TASKS_PER_TODO).get("completed").asBoolean());
+        assertEquals("Second new task", tasks.get(TASKS_PER_TODO + 1).get("details").asText());
+        assertEquals(TASKS_PER_TODO + 2, taskIds(todoId).size());
+        assertEquals(1, version(todoId), "The version goes up once for the whole batch");
+    }
+
+    @Test
+    public void testAddTasksChecksIfMatch() throws Exception {
+        long todoId = todoIds.get(0);
+        mockMvc.perform(post("/todos/{id}/tasks/bulk", todoId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"7\"")
+                .content("[{\"details\": \"Too late\"}]"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+        assertEquals(TASKS_PER_TODO, taskIds(todoId).size());
+
+        mockMvc.perform(post("/todos/{id}/tasks/bulk", Long.MAX_VALUE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"details\": \"Nowhere\"}]"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testCompleteTasks() throws Exception {
+        List<Long> ids = someTasks();
+
+        SqlStatementCounter.reset();
+        assertEquals(204, send("/tasks/complete", ids));
+        // One query for the tasks and their todos, one batch of task updates and a version update per todo, however
+        // many tasks there are.
+        assertEquals(4, SqlStatementCounter.count());
+
+        assertEquals(ids.size(), completed());
+        assertEquals(1, version(todoIds.get(0)));
+        assertEquals(1, version(todoIds.get(1)));
+
+        String todo = mockMvc.perform(get("/todos/{id}", todoIds.get(1)))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        JsonNode tasks = objectMapper.readTree(todo).get("tasks");
+        assertTrue(tasks.get(0).get("completed").asBoolean());
+        assertFalse(tasks.get(1).get("completed").asBoolean());
+    }
+
+    @Test
+    public void testDeleteTasks() throws Exception {
+        List<Long> ids = someTasks();
+
+        SqlStatementCounter.reset();
+        assertEquals(204, send("/tasks/delete", ids));
+        assertEquals(4, SqlStatementCounter.count());
+
+        assertEquals(TASKS_PER_TODO / 2, taskIds(todoIds.get(0)).size());
+        assertEquals(TASKS_PER_TODO - 1, taskIds(todoIds.get(1)).size());
+        assertEquals(1, version(todoIds.get(0)));
+        assertEquals(1, version(todoIds.get(1)));
+
+        // They're gone, so the same batch again finds nothing.
+        assertEquals(404, send("/tasks/delete", ids));
+    }
+
+    @Test
+    public void testNothingChangesWhenATaskIsMissing() throws Exception {
+        List<Long> ids = someTasks();
+        ids.add(Long.MAX_VALUE);
+
+        assertEquals(404, send("/tasks/complete", ids));
+        assertEquals(404, send("/tasks/delete", ids));
+        assertEquals(0, completed());
+        assertEquals(2 * TASKS_PER_TODO, taskJpaRepository.count());
+        assertEquals(0, version(todoIds.get(0)));
+
+        assertEquals(400, send("/tasks/complete", Arrays.asList(ids.get(0), null)));
+        assertEquals(204, send("/tasks/delete", new ArrayList<>()));
+    }
+
+}
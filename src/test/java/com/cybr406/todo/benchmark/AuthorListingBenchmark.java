@@ -0,0 +1,112 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+
+/**
+ * Lists one author's todos a page at a time out of a large table shared by many authors, with TODO_AUTHOR_ID_INDEX and
+ * then with the index dropped, and prints the plan H2 picks each time. Reports the latency of the first page and of a
+ * page deep into the author's todos.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.todos sets the number of todos, -Dbenchmark.authors how many authors
+ * they are spread over and -Dbenchmark.pages how many pages are timed.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+public class AuthorListingBenchmark {
+
+    private static final String PLAN =
+            "EXPLAIN SELECT ID FROM TODO WHERE AUTHOR = 'Author 7' AND ID > 0 ORDER BY AUTHOR, ID LIMIT 21";
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void authorPages() {
+        int count = Integer.getInteger("benchmark.todos", 1_000_000);
+        int authors = Integer.getInteger("benchmark.authors", 1_000);
+        int pages = Integer.getInteger("benchmark.pages", 200);
+
+        todoJpaRepository.deleteAllInBatch();
+        List<Long> ids = todoBulkWriter.createAll(todos(count, authors));
+        // Author 7's todo half way through their list.
+        long middle = ids.get(count / 2 / authors * authors + 7);
+
+        System.out.printf("%-10s %12s %12s %12s %12s%n", "index", "first p50 ms", "first p99 ms", "deep p50 ms",
+                "deep p99 ms");
+        try {
+            measure("yes", pages, middle);
+            jdbcTemplate.execute("DROP INDEX TODO_AUTHOR_ID_INDEX");
+            measure("no", Math.max(1, pages / 20), middle);
+        } finally {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS TODO_AUTHOR_ID_INDEX ON TODO (AUTHOR, ID)");
+        }
+    }
+
+    private void measure(String index, int pages, long middle) {
+        long[] first = new long[pages];
+        long[] deep = new long[pages];
+        for (int i = 0; i < pages; i++) {
+            long start = System.nanoTime();
+            todoJpaRepository.findByAuthorAndIdGreaterThanOrderByIdAsc("Author 7", 0L, PageRequest.of(0, 21));
+            first[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            todoJpaRepository.findByAuthorAndIdGreaterThanOrderByIdAsc("Author 7", middle, PageRequest.of(0, 21));
+            deep[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(first);
+        Arrays.sort(deep);
+        System.out.printf("%-10s %12.3f %12.3f %12.3f %12.3f%n", index, percentile(first, 0.5) / 1e6,
+                percentile(first, 0.99) / 1e6, percentile(deep, 0.5) / 1e6, percentile(deep, 0.99) / 1e6);
+        System.out.println(jdbcTemplate.queryForObject(PLAN, String.class).replaceAll("\\s+", " "));
+    }
+
+    /**
+     * Todos by Author 0, Author 1, ... in turn, so every author's todos are spread evenly across the table.
+     */
+    private static Iterator<Todo> todos(int count, int authors) {
+        return new Iterator<Todo>() {
+            int created = 0;
+
+            @Override
+            public boolean hasNext() {
+                return created < count;
+            }
+
+            @Override
+            public Todo next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Todo todo = new Todo();
+                todo.setAuthor("Author " + created % authors);
+                todo.setDetails("Benchmark details " + created);
+                created++;
+                return todo;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.cybr406.todo.benchmark;
+
+/**
+ * Measurements the benchmarks in this package share, so they all report latency and heap the same way.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * The value at the given fraction of an already sorted array, e.g. 0.99 for p99. An empty array gives 0.
+     */
+    static long percentile(long[] sorted, double percentile) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+    }
+
+    /**
+     * Heap in use after asking for a few garbage collections, so what's left is mostly what is still reachable.
+     */
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+
+/**
+ * Compares two ways for clients to keep a todo up to date while tasks are added to random todos: polling GET
+ * /todos/{id} with If-None-Match, and subscribing to GET /todos/changes and fetching the todo only when an event says it
+ * changed.
+ *
+ * Reports the requests and SQL statements the server handled per second, and how stale a client's copy got: the time
+ * from a change being sent to the client seeing it.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.clients sets the number of clients, each watching its own todo,
+ * -Dbenchmark.poll-interval how often pollers poll in milliseconds, -Dbenchmark.changes how many changes are made per
+ * second and -Dbenchmark.seconds how long each way is measured.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+public class ChangeFeedBenchmark {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private HttpClient client;
+
+    private long[] ids;
+
+    /**
+     * When each todo was last changed, by System.nanoTime.
+     */
+    private final Map<Long, Long> changed = new ConcurrentHashMap<>();
+
+    @Test
+    public void changeFeed() {
+        int clients = Integer.getInteger("benchmark.clients", 200);
+        int pollInterval = Integer.getInteger("benchmark.poll-interval", 1000);
+        int changes = Integer.getInteger("benchmark.changes", 10);
+        int seconds = Integer.getInteger("benchmark.seconds", 20);
+
+        todoJpaRepository.deleteAllInBatch();
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            todos.add(todo);
+        }
+        ids = todoBulkWriter.createAll(todos.iterator()).stream().mapToLong(Long::longValue).toArray();
+
+        LoopResources loops = LoopResources.create("benchmark-client", 1, true);
+        ConnectionProvider pool = ConnectionProvider.fixed("benchmark", clients * 2 + 10);
+        client = HttpClient.create(pool)
+                .tcpConfiguration(tcp -> tcp.runOn(loops))
+                .baseUrl("http://localhost:" + port);
+        try {
+            System.out.printf("%-8s %8s %12s %12s %12s %14s %14s%n", "clients", "mode", "requests/s", "SQL/s",
+                    "updates seen", "stale p50 ms", "stale p99 ms");
+            for (String mode : Arrays.asList("poll", "sse")) {
+                Result result = run(mode, clients, pollInterval, changes, seconds);
+                System.out.printf("%-8d %8s %12.1f %12.1f %12d %14.1f %14.1f%n", clients, mode,
+                        result.requests / (double) seconds, result.statements / (double) seconds,
+                        result.staleness.length, percentile(result.staleness, 0.50) / 1e6,
+                        percentile(result.staleness, 0.99) / 1e6);
+            }
+        } finally {
+            pool.disposeLater().block();
+            loops.disposeLater().block();
+        }
+    }
+
+    private static class Result {
+        long requests;
+        long statements;
+        long[] staleness;
+    }
+
+    private Result run(String mode, int clients, int pollInterval, int changes, int seconds) {
+        AtomicLong requests = new AtomicLong();
+        Queue<Long> staleness = new ConcurrentLinkedQueue<>();
+        changed.clear();
+
+        List<Disposable> watchers = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long id = ids[c];
+            watchers.add("poll".equals(mode)
+                    ? poll(id, pollInterval, requests, staleness)
+                    : subscribe(id, requests, staleness));
+        }
+
+        // Let every poller start and every subscription connect before counting.
+        Mono.delay(Duration.ofSeconds(2)).block();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        requests.set(0);
+        staleness.clear();
+
+        Random random = new Random(42);
+        Flux.interval(Duration.ofMillis(1000 / changes))
+                .take(Duration.ofSeconds(seconds))
+                .onBackpressureDrop()
+                .concatMap(tick -> {
+                    long id = ids[random.nextInt(ids.length)];
+                    changed.put(id, System.nanoTime());
+                    requests.incrementAndGet();
+                    return client.headers(headers -> headers.set("Content-Type", "application/json"))
+                            .post()
+                            .uri("/todos/" + id + "/tasks")
+                            .send(ByteBufFlux.fromString(Mono.just("{\"completed\": false, \"details\": \"Task\"}")))
+                            .responseSingle((response, body) -> body.then(Mono.just(response.status().code())));
+                }, 1)
+                .blockLast();
+        // Give the last changes a chance to be seen.
+        Mono.delay(Duration.ofMillis(pollInterval)).block();
+
+        Result result = new Result();
+        result.requests = requests.get();
+        result.statements = statistics.getPrepareStatementCount();
+        result.staleness = staleness.stream().mapToLong(Long::longValue).sorted().toArray();
+        watchers.forEach(Disposable::dispose);
+        return result;
+    }
+
+    /**
+     * Polls the todo every interval, starting at a random point in the first interval like real clients would.
+     */
+    private Disposable poll(long id, int interval, AtomicLong requests, Queue<Long> staleness) {
+        String[] etag = {null};
+        return Flux.interval(Duration.ofMillis(new Random(id).nextInt(interval)), Duration.ofMillis(interval))
+                .onBackpressureDrop()
+                .concatMap(tick -> {
+                    requests.incrementAndGet();
+                    return client.headers(headers -> {
+                        if (etag[0] != null)
+                            headers.set("If-None-Match", etag[0]);
+                    })
+                            .get()
+                            .uri("/todos/" + id)
+                            .responseSingle((response, body) -> body.then(Mono.fromRunnable(() -> {
+                                if (response.status().code() != 200)
+                                    return;
+                                String previous = etag[0];
+                                etag[0] = response.responseHeaders().get("ETag");
+                                if (previous != null && !previous.equals(etag[0]))
+                                    seen(id, staleness);
+                            })));
+                }, 1)
+                .subscribe();
+    }
+
+    /**
+     * Listens to the change feed, and fetches the todo whenever an event is about it.
+     */
+    private Disposable subscribe(long id, AtomicLong requests, Queue<Long> staleness) {
+        requests.incrementAndGet();
+        return client.get()
+                .uri("/todos/changes")
+                .responseContent()
+                .asString()
+                .filter(chunk -> chunk.contains("\"todoId\":" + id + ","))
+                .concatMap(chunk -> {
+                    requests.incrementAndGet();
+                    return client.get()
+                            .uri("/todos/" + id)
+                            .responseSingle((response, body) -> body.asString())
+                            .doOnNext(body -> {
+                                if (tasks(body) > 0)
+                                    seen(id, staleness);
+                            });
+                })
+                .subscribe();
+    }
+
+    private int tasks(String todo) {
+        try {
+            JsonNode tasks = objectMapper.readTree(todo).get("tasks");
+            return tasks == null ? 0 : tasks.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void seen(long id, Queue<Long> staleness) {
+        Long change = changed.get(id);
+        if (change != null)
+            staleness.add(System.nanoTime() - change);
+    }
+
+}
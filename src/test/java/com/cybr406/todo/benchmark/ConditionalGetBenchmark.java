@@ -0,0 +1,123 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Polls GET /todos/{id} for random todos the way clients do, once sending back the ETag from the last poll in
+ * If-None-Match and once without it. Nothing changes while polling, so every conditional poll is a 304.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.seconds sets how long each way is measured, after -Dbenchmark.warmup
+ * seconds of warm up, and -Dbenchmark.tasks how many tasks each todo has.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+@AutoConfigureMockMvc
+public class ConditionalGetBenchmark {
+
+    private static final int TODOS = 1_000;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    TodoBulkWriter todoBulkWriter;
+
+    @Test
+    public void polling() throws Exception {
+        int seconds = Integer.getInteger("benchmark.seconds", 5);
+        int warmup = Integer.getInteger("benchmark.warmup", 10);
+        int tasks = Integer.getInteger("benchmark.tasks", 20);
+
+        todoJpaRepository.deleteAllInBatch();
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < TODOS; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            for (int j = 0; j < tasks; j++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("Benchmark task " + j);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        long[] ids = todoBulkWriter.createAll(todos.iterator()).stream().mapToLong(Long::longValue).toArray();
+
+        Map<Long, String> etags = new HashMap<>();
+        poll(ids, etags, false, warmup);
+        poll(ids, etags, true, warmup);
+
+        System.out.printf("%-14s %10s %10s %10s %14s%n", "poll", "ops/sec", "p50 us", "p99 us", "bytes/response");
+        for (boolean conditional : new boolean[]{false, true}) {
+            Result result = poll(ids, etags, conditional, seconds);
+            Arrays.sort(result.latencies);
+            System.out.printf("%-14s %10.0f %10.1f %10.1f %14d%n", conditional ? "If-None-Match" : "unconditional",
+                    result.latencies.length / (double) seconds,
+                    percentile(result.latencies, 0.50) / 1000.0,
+                    percentile(result.latencies, 0.99) / 1000.0,
+                    result.bytes / Math.max(1, result.latencies.length));
+        }
+    }
+
+    private static class Result {
+        long[] latencies;
+        long bytes;
+    }
+
+    private Result poll(long[] ids, Map<Long, String> etags, boolean conditional, int seconds) throws Exception {
+        Random random = new Random(42);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[] latencies = new long[1024];
+        int count = 0;
+        long bytes = 0;
+
+        while (System.nanoTime() < deadline) {
+            long id = ids[random.nextInt(ids.length)];
+            String etag = etags.get(id);
+            long start = System.nanoTime();
+            MockHttpServletResponse response = mockMvc.perform(conditional && etag != null
+                    ? get("/todos/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag)
+                    : get("/todos/{id}", id))
+                    .andReturn()
+                    .getResponse();
+            long latency = System.nanoTime() - start;
+            etags.put(id, response.getHeader(HttpHeaders.ETAG));
+            bytes += response.getContentAsByteArray().length;
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latency;
+        }
+
+        Result result = new Result();
+        result.latencies = Arrays.copyOf(latencies, count);
+        result.bytes = bytes;
+        return result;
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.SqlStatementCounter;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+
+/**
+ * Deletes one task of each of a set of todos with DELETE /tasks/{id}, and then the todos, which still have tasks, with
+ * DELETE /todos/{id}. Reports requests per second and SQL statements per request for each. Run it once on each version
+ * to compare.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.todos sets how many todos each round deletes, -Dbenchmark.tasks how many
+ * tasks each of them has and -Dbenchmark.rounds how many rounds are timed after one of warm up.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+@AutoConfigureMockMvc
+public class DeleteBenchmark {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Test
+    public void deletes() throws Exception {
+        int count = Integer.getInteger("benchmark.todos", 5_000);
+        int tasks = Integer.getInteger("benchmark.tasks", 3);
+        int rounds = Integer.getInteger("benchmark.rounds", 6);
+
+        todoJpaRepository.deleteAllInBatch();
+        System.out.printf("%-8s %12s %14s%n", "delete", "requests/s", "statements/req");
+        for (int round = 0; round <= rounds; round++) {
+            List<Todo> todos = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Todo todo = new Todo();
+                todo.setAuthor("Benchmark");
+                todo.setDetails("Todo " + i);
+                for (int j = 0; j < tasks; j++) {
+                    Task task = new Task();
+                    task.setCompleted(false);
+                    task.setDetails("Task " + j);
+                    todo.getTasks().add(task);
+                }
+                todos.add(todo);
+            }
+            List<Long> todoIds = todoBulkWriter.createAll(todos.iterator());
+            List<Long> taskIds = jdbcTemplate.queryForList(
+                    "SELECT MIN(ID) FROM TASK GROUP BY TODO_ID ORDER BY TODO_ID", Long.class);
+
+            long statements = 0;
+            long start = System.nanoTime();
+            for (Long id : taskIds) {
+                SqlStatementCounter.reset();
+                mockMvc.perform(delete("/tasks/{id}", id));
+                statements += SqlStatementCounter.count();
+            }
+            long taskTime = System.nanoTime() - start;
+            long taskStatements = statements;
+
+            statements = 0;
+            start = System.nanoTime();
+            for (Long id : todoIds) {
+                SqlStatementCounter.reset();
+                mockMvc.perform(delete("/todos/{id}", id));
+                statements += SqlStatementCounter.count();
+            }
+            long todoTime = System.nanoTime() - start;
+
+            if (round > 0) {
+                System.out.printf("%-8s %12.1f %14.1f%n", "task", taskIds.size() / (taskTime / 1e9),
+                        taskStatements / (double) taskIds.size());
+                System.out.printf("%-8s %12.1f %14.1f%n", "todo", count / (todoTime / 1e9),
+                        statements / (double) count);
+            }
+        }
+    }
+
+}
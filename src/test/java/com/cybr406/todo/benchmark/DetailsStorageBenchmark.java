@@ -0,0 +1,110 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Measures how many GET /todos pages and POST /todos creates one client gets through per second, on a table of todos
+ * with one task each whose details are mostly short, with the odd long one. Compares how details are stored: run it
+ * once on each version to compare.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.todos sets the number of todos, -Dbenchmark.long-every how often a todo
+ * has long details (and -Dbenchmark.long-length how long), and -Dbenchmark.seconds how long reads and writes are each
+ * measured, after as long again of warm up.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+@AutoConfigureMockMvc
+public class DetailsStorageBenchmark {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Test
+    public void readsAndWrites() throws Exception {
+        int count = Integer.getInteger("benchmark.todos", 100_000);
+        int longEvery = Integer.getInteger("benchmark.long-every", 1_000);
+        int longLength = Integer.getInteger("benchmark.long-length", 10_000);
+        int seconds = Integer.getInteger("benchmark.seconds", 10);
+
+        todoJpaRepository.deleteAllInBatch();
+        Random random = new Random(406);
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails(i % longEvery == 0 ? text(random, longLength) : text(random, 40 + random.nextInt(40)));
+            Task task = new Task();
+            task.setCompleted(false);
+            task.setDetails(text(random, 20 + random.nextInt(40)));
+            todo.getTasks().add(task);
+            todos.add(todo);
+        }
+        todoBulkWriter.createAll(todos.iterator());
+        // Deep OFFSETs would cost far more than reading the rows, so stick to the pages clients mostly read.
+        int pages = Math.min(count / 20, 100);
+
+        System.out.printf("%-8s %12s%n", "request", "requests/s");
+        for (int round = 0; round < 2; round++) {
+            boolean measured = round == 1;
+            long reads = run(seconds, () -> mockMvc.perform(get("/todos")
+                    .param("page", String.valueOf(random.nextInt(pages)))
+                    .param("size", "20")));
+            if (measured)
+                System.out.printf("%-8s %12.1f%n", "read", reads / (double) seconds);
+
+            long writes = run(seconds, () -> mockMvc.perform(post("/todos")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"author\": \"Benchmark\", \"details\": \"" + text(random, 60) + "\"}")));
+            if (measured)
+                System.out.printf("%-8s %12.1f%n", "write", writes / (double) seconds);
+        }
+    }
+
+    private interface Request {
+        void perform() throws Exception;
+    }
+
+    private static long run(int seconds, Request request) throws Exception {
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long requests = 0;
+        while (System.nanoTime() < end) {
+            request.perform();
+            requests++;
+        }
+        return requests;
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length)
+            text.append(random.nextInt(4) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        return text.toString();
+    }
+
+}
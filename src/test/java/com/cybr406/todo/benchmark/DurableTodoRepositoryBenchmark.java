@@ -0,0 +1,81 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.DurableTodoRepository;
+import com.cybr406.todo.DurableTodoRepository.Durability;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures write throughput of DurableTodoRepository under each durability mode, with one writer and with many.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.seconds changes how long each combination runs, and
+ * -Dbenchmark.directory points the logs at a particular disk (fsync cost depends heavily on the device).
+ */
+@Tag("benchmark")
+public class DurableTodoRepositoryBenchmark {
+
+    @TempDir
+    Path temporary;
+
+    @Test
+    public void writeThroughputByDurability() throws Exception {
+        int seconds = Integer.getInteger("benchmark.seconds", 3);
+        String directory = System.getProperty("benchmark.directory");
+        Path root = directory == null ? temporary : Files.createTempDirectory(Files.createDirectories(Paths.get(directory)), "wal");
+
+        System.out.printf("%-14s %8s %14s%n", "durability", "writers", "writes/sec");
+        for (Durability durability : Durability.values()) {
+            for (int writers : new int[] {1, 16, 64}) {
+                Path logs = Files.createTempDirectory(root, durability.name());
+                double throughput = measure(logs, durability, writers, seconds);
+                System.out.printf("%-14s %8d %14.0f%n", durability, writers, throughput);
+            }
+        }
+    }
+
+    private double measure(Path directory, Durability durability, int writers, int seconds) throws Exception {
+        DurableTodoRepository repository = new DurableTodoRepository(directory, durability, 2, 1_000_000);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        LongAdder writes = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                futures.add(executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        Todo todo = new Todo();
+                        todo.setAuthor("Benchmark");
+                        todo.setDetails("Benchmark details");
+                        repository.create(todo);
+
+                        Task task = new Task();
+                        task.setCompleted(false);
+                        task.setDetails("Benchmark task");
+                        repository.addTask(todo.getId(), task);
+                        writes.add(2);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+            repository.close();
+        }
+
+        return writes.sum() / (double) seconds;
+    }
+
+}
@@ -0,0 +1,261 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoJpaRepository;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+
+/**
+ * Puts many concurrent clients on GET /todos/{id} while the database answers slowly, under each todo.execution mode,
+ * and meanwhile keeps asking for GET /actuator/info, which doesn't touch the database at all.
+ *
+ * The connection pool caps how many database requests can run at once in every mode, so database throughput comes out
+ * about the same. What differs is what happens to everything else: with Tomcat's thread pool every thread ends up
+ * waiting on the database and the cheap request queues behind them, in async mode it doesn't.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.clients sets the number of clients, -Dbenchmark.dbLatencyMillis how long
+ * each statement takes, and -Dbenchmark.seconds how long each mode is measured after -Dbenchmark.warmup seconds.
+ */
+@Tag("benchmark")
+public class ExecutionModeBenchmark {
+
+    private static final int TODOS = 1_000;
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "todo.execution=platform",
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "spring.datasource.hikari.maximum-pool-size=50",
+            "server.tomcat.max-connections=20000",
+            "server.tomcat.accept-count=20000"
+    })
+    @Import(SlowDatabase.class)
+    class Platform {
+
+        @LocalServerPort
+        int port;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        ServletWebServerApplicationContext context;
+
+        @Test
+        public void slowDatabase() throws Exception {
+            run("platform", port, todoJpaRepository, context);
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "todo.execution=async",
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "spring.datasource.hikari.maximum-pool-size=50",
+            "server.tomcat.max-connections=20000",
+            "server.tomcat.accept-count=20000"
+    })
+    @Import(SlowDatabase.class)
+    class Async {
+
+        @LocalServerPort
+        int port;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        ServletWebServerApplicationContext context;
+
+        @Test
+        public void slowDatabase() throws Exception {
+            run("async", port, todoJpaRepository, context);
+        }
+
+    }
+
+    /**
+     * Once enabled, makes every statement take benchmark.dbLatencyMillis longer, like a database on the other side of a
+     * network.
+     */
+    @TestConfiguration
+    static class SlowDatabase {
+
+        static volatile boolean enabled;
+
+        @Bean
+        static BeanPostProcessor slowDataSource() {
+            long latency = Long.getLong("benchmark.dbLatencyMillis", 200);
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource))
+                        return bean;
+                    return ProxyDataSourceBuilder.create((DataSource) bean).listener(new QueryExecutionListener() {
+                        @Override
+                        public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+                            if (!enabled)
+                                return;
+                            try {
+                                Thread.sleep(latency);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+
+                        @Override
+                        public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+                        }
+                    }).build();
+                }
+            };
+        }
+
+    }
+
+    private static void run(String mode, int port, TodoJpaRepository todoJpaRepository,
+            ServletWebServerApplicationContext context) throws Exception {
+        int clients = Integer.getInteger("benchmark.clients", 1000);
+        int seconds = Integer.getInteger("benchmark.seconds", 10);
+        int warmup = Integer.getInteger("benchmark.warmup", 10);
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < TODOS; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            todos.add(todo);
+        }
+        long[] ids = todoJpaRepository.saveAll(todos).stream().mapToLong(Todo::getId).toArray();
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients + 1);
+        SlowDatabase.enabled = true;
+        try {
+            workload(executor, port, context, ids, clients, warmup);
+            Result result = workload(executor, port, context, ids, clients, seconds);
+
+            System.out.printf("%-10s %8s %12s %8s %14s %14s %16s%n", "mode", "clients", "db req/sec", "errors",
+                    "info p50 ms", "info p99 ms", "server threads");
+            System.out.printf("%-10s %8d %12.0f %8d %14.1f %14.1f %16d%n", mode, clients,
+                    result.requests / (double) seconds, result.errors,
+                    percentile(result.info, 0.50) / 1e6, percentile(result.info, 0.99) / 1e6, result.serverThreads);
+        } finally {
+            SlowDatabase.enabled = false;
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Result {
+        long requests;
+        long errors;
+        long[] info;
+        int serverThreads;
+    }
+
+    private static Result workload(ExecutorService executor, int port, ServletWebServerApplicationContext context,
+            long[] ids, int clients, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int c = 0; c < clients; c++) {
+            int seed = c;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                while (System.nanoTime() < deadline) {
+                    if (get(port, "/todos/" + ids[random.nextInt(ids.length)]) == 200)
+                        requests.increment();
+                    else
+                        errors.increment();
+                }
+                return null;
+            }));
+        }
+
+        Future<long[]> info = executor.submit(() -> {
+            long[] latencies = new long[1024];
+            int count = 0;
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                get(port, "/actuator/info");
+                if (count == latencies.length)
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = System.nanoTime() - start;
+                Thread.sleep(50);
+            }
+            return Arrays.copyOf(latencies, count);
+        });
+
+        // Count the threads serving requests while they are all busy.
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds) / 2);
+        Executor tomcat = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector().getProtocolHandler()
+                .getExecutor();
+        int serverThreads = ((ThreadPoolExecutor) tomcat).getPoolSize();
+        for (ThreadPoolTaskExecutor jdbc : context.getBeansOfType(ThreadPoolTaskExecutor.class).values())
+            serverThreads += jdbc.getPoolSize();
+
+        for (Future<?> future : futures)
+            future.get();
+
+        Result result = new Result();
+        result.requests = requests.sum();
+        result.errors = errors.sum();
+        result.info = info.get();
+        Arrays.sort(result.info);
+        result.serverThreads = serverThreads;
+        return result;
+    }
+
+    private static int get(int port, String path) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+            connection.setConnectTimeout(30_000);
+            connection.setReadTimeout(60_000);
+            int status = connection.getResponseCode();
+            try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                byte[] buffer = new byte[4096];
+                while (body != null && body.read(buffer) != -1) {
+                    // Read the whole response so the connection can be reused.
+                }
+            }
+            return status;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.ColumnarTodoRepository;
+import com.cybr406.todo.InMemoryTodoRepository;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+import static com.cybr406.todo.benchmark.Benchmarks.usedHeap;
+
+/**
+ * Compares how much heap each TodoRepository needs per stored row.
+ *
+ * Every todo and task shares the same author and details strings, so the numbers only show the overhead each
+ * repository adds on top of the text itself. Run it with ./gradlew benchmark, and use -Dbenchmark.rows to change
+ * the number of todos.
+ */
+@Tag("benchmark")
+public class HeapPerRowBenchmark {
+
+    private static final String AUTHOR = "Benchmark";
+
+    private static final String DETAILS = "Benchmark details";
+
+    @Test
+    public void heapPerRow() {
+        int rows = Integer.getInteger("benchmark.rows", 2_000_000);
+        int tasksPerTodo = Integer.getInteger("benchmark.tasksPerTodo", 2);
+
+        System.out.printf("%d todos with %d tasks each%n", rows, tasksPerTodo);
+        System.out.printf("%-28s %16s %16s%n", "repository", "bytes per todo", "bytes per row");
+        measure("InMemoryTodoRepository", InMemoryTodoRepository::new, rows, tasksPerTodo);
+        measure("ColumnarTodoRepository", ColumnarTodoRepository::new, rows, tasksPerTodo);
+    }
+
+    private void measure(String name, Supplier<TodoRepository> factory, int rows, int tasksPerTodo) {
+        long before = usedHeap();
+        TodoRepository repository = factory.get();
+
+        for (int i = 0; i < rows; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor(AUTHOR);
+            todo.setDetails(DETAILS);
+            long id = repository.create(todo).getId();
+            for (int t = 0; t < tasksPerTodo; t++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails(DETAILS);
+                repository.addTask(id, task);
+            }
+        }
+
+        long used = usedHeap() - before;
+        System.out.printf("%-28s %16.1f %16.1f%n", name,
+                (double) used / rows,
+                (double) used / ((long) rows * (1 + tasksPerTodo)));
+
+        // Keep the repository reachable until after the measurement.
+        if (repository.count() != rows)
+            throw new IllegalStateException();
+    }
+
+}
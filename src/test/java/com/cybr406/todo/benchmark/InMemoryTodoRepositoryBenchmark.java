@@ -0,0 +1,122 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.InMemoryTodoRepository;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Shows that find, addTask, deleteTask and delete cost the same no matter how many todos are stored, and that paging
+ * with findAllAfter costs the same no matter how deep the page is while findAll gets slower.
+ *
+ * Run it with ./gradlew benchmark. The largest size defaults to one million todos, pass -Dbenchmark.maxTodos=10000000
+ * to go all the way to ten million (give it plenty of heap).
+ */
+@Tag("benchmark")
+public class InMemoryTodoRepositoryBenchmark {
+
+    private static final int OPERATIONS = 200_000;
+
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void latencyByRepositorySize() {
+        long maxTodos = Long.getLong("benchmark.maxTodos", 1_000_000);
+
+        System.out.printf("%12s %12s %12s %14s %18s%n", "todos", "find ns", "addTask ns", "deleteTask ns", "delete+create ns");
+        for (long size = 1_000; size <= maxTodos; size *= 10)
+            measure((int) size);
+    }
+
+    private void measure(int size) {
+        InMemoryTodoRepository repository = new InMemoryTodoRepository();
+        for (int i = 0; i < size; i++)
+            repository.create(todo());
+
+        Random random = new Random(size);
+        long find = Long.MAX_VALUE, addTask = Long.MAX_VALUE, deleteTask = Long.MAX_VALUE, delete = Long.MAX_VALUE;
+        long[] taskIds = new long[OPERATIONS];
+        long lowestId = 1;
+        long blackhole = 0;
+
+        // Keep the best of a few rounds so JIT warm up and GC pauses don't hide the real cost.
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++)
+                blackhole += repository.find(lowestId + random.nextInt(size)).map(Todo::getId).orElse(0L);
+            find = Math.min(find, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                Task task = new Task();
+                task.setDetails("benchmark");
+                repository.addTask(lowestId + random.nextInt(size), task);
+                taskIds[i] = task.getId();
+            }
+            addTask = Math.min(addTask, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++)
+                repository.deleteTask(taskIds[i]);
+            deleteTask = Math.min(deleteTask, System.nanoTime() - start);
+
+            // Delete the oldest todos and create replacements so the size, and the range of live ids, stays the same.
+            start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS / 10; i++) {
+                repository.delete(lowestId++);
+                repository.create(todo());
+            }
+            delete = Math.min(delete, (System.nanoTime() - start) * 10);
+        }
+
+        System.out.printf("%12d %12.1f %12.1f %14.1f %18.1f%n", size,
+                (double) find / OPERATIONS,
+                (double) addTask / OPERATIONS,
+                (double) deleteTask / OPERATIONS,
+                (double) delete / OPERATIONS);
+
+        if (blackhole == 42)
+            System.out.println();
+    }
+
+    @Test
+    public void pageLatencyByDepth() {
+        int todos = Integer.getInteger("benchmark.pageTodos", 1_000_000);
+        int size = 20;
+        InMemoryTodoRepository repository = new InMemoryTodoRepository();
+        for (int i = 0; i < todos; i++)
+            repository.create(todo());
+
+        System.out.printf("%12s %14s %18s%n", "page", "findAll ns", "findAllAfter ns");
+        for (int page = 1; page < todos / size; page *= 10) {
+            long offset = Long.MAX_VALUE, seek = Long.MAX_VALUE;
+            long blackhole = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 100; i++)
+                    blackhole += repository.findAll(page, size).size();
+                offset = Math.min(offset, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (int i = 0; i < 100; i++)
+                    blackhole += repository.findAllAfter((long) page * size, size).size();
+                seek = Math.min(seek, System.nanoTime() - start);
+            }
+            System.out.printf("%12d %14.1f %18.1f%n", page, offset / 100.0, seek / 100.0);
+
+            if (blackhole == 42)
+                System.out.println();
+        }
+    }
+
+    private static Todo todo() {
+        Todo todo = new Todo();
+        todo.setAuthor("Benchmark");
+        todo.setDetails("Benchmark details");
+        return todo;
+    }
+
+}
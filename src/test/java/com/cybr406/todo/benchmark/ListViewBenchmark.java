@@ -0,0 +1,104 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Reads pages of todos with plain GET /todos, which serializes entities, and with the view=summary and view=detail
+ * projections. Reports the bytes of each response, the bytes allocated on the request thread for each request (MockMvc
+ * runs the whole request on the calling thread) and requests per second.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.todos sets the number of todos, -Dbenchmark.tasks how many tasks each
+ * has, -Dbenchmark.size the page size and -Dbenchmark.requests how many requests each version is measured over, after as
+ * many again of warm up.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+@AutoConfigureMockMvc
+public class ListViewBenchmark {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Test
+    public void views() throws Exception {
+        int count = Integer.getInteger("benchmark.todos", 10_000);
+        int tasks = Integer.getInteger("benchmark.tasks", 3);
+        int size = Integer.getInteger("benchmark.size", 20);
+        int requests = Integer.getInteger("benchmark.requests", 2_000);
+
+        todoJpaRepository.deleteAllInBatch();
+        Random random = new Random(406);
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Todo number " + i + " with a few words of details");
+            for (int j = 0; j < tasks; j++) {
+                Task task = new Task();
+                // Some tasks were never marked either way, so the projections have nulls to leave out.
+                task.setCompleted(random.nextBoolean() ? null : random.nextBoolean());
+                task.setDetails("Task " + j + " of todo " + i);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        todoBulkWriter.createAll(todos.iterator());
+        int pages = Math.min(count / size, 100);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        String[] views = {null, "summary", "detail"};
+
+        System.out.printf("%-8s %12s %14s %12s%n", "view", "bytes/resp", "alloc KB/req", "requests/s");
+        for (int round = 0; round < 2; round++) {
+            for (String view : views) {
+                long bytes = 0;
+                long allocated = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                for (int i = 0; i < requests; i++) {
+                    MockHttpServletRequestBuilder request = get("/todos")
+                            .param("page", String.valueOf(random.nextInt(pages)))
+                            .param("size", String.valueOf(size));
+                    if (view != null)
+                        request.param("view", view);
+                    bytes += mockMvc.perform(request).andReturn().getResponse().getContentAsByteArray().length;
+                }
+                long time = System.nanoTime() - start;
+                allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+                if (round == 1)
+                    System.out.printf("%-8s %12d %14.1f %12.1f%n", view == null ? "entity" : view, bytes / requests,
+                            allocated / 1024.0 / requests, requests / (time / 1e9));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.AopTestUtils;
+
+import java.util.Random;
+
+/**
+ * Measures what the repository timers add to a call, using the cheapest call there is: find on the in-memory
+ * repository, once through the timed bean and once on the repository behind it.
+ *
+ * Run it with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+public class MetricsOverheadBenchmark {
+
+    private static final int TODOS = 10_000;
+
+    private static final int OPERATIONS = 2_000_000;
+
+    private static final int ROUNDS = 10;
+
+    @Autowired
+    TodoRepository todoRepository;
+
+    @Test
+    public void repositoryTimerOverhead() {
+        TodoRepository untimed = AopTestUtils.getUltimateTargetObject(todoRepository);
+        long firstId = untimed.count() + 1;
+        for (int i = 0; i < TODOS; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details");
+            untimed.create(todo);
+        }
+
+        long timed = Long.MAX_VALUE, plain = Long.MAX_VALUE;
+        long blackhole = 0;
+        Random random = new Random(42);
+
+        // Alternate the two so both get the same JIT and GC conditions, and keep the best round of each.
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++)
+                blackhole += todoRepository.find(firstId + random.nextInt(TODOS)).map(Todo::getId).orElse(0L);
+            timed = Math.min(timed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++)
+                blackhole += untimed.find(firstId + random.nextInt(TODOS)).map(Todo::getId).orElse(0L);
+            plain = Math.min(plain, System.nanoTime() - start);
+        }
+
+        System.out.printf("%-10s %10s%n", "", "find ns");
+        System.out.printf("%-10s %10.1f%n", "untimed", (double) plain / OPERATIONS);
+        System.out.printf("%-10s %10.1f%n", "timed", (double) timed / OPERATIONS);
+        System.out.println("(ignore) " + blackhole);
+    }
+
+}
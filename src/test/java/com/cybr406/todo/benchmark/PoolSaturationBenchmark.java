@@ -0,0 +1,254 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoJpaRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Sends a burst of clients at GET /todos/{id}, many more than there are connections, while the database answers
+ * slowly, first with Hikari's defaults and then with the pool profile. Reports how many requests succeeded and how many
+ * got 503, their latencies, and the most requests seen waiting for a connection at once.
+ *
+ * With the defaults every request waits its turn, for as long as the queue in front of it takes. With the pool profile
+ * requests that would wait longer than its connection timeout get 503 instead, so the ones that are served are served
+ * sooner, and the rest find out at once. Clients given 503 wait as long as Retry-After says before trying again.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.clients sets the number of clients, -Dbenchmark.dbLatencyMillis how long
+ * each statement takes, and -Dbenchmark.seconds how long each configuration is measured after -Dbenchmark.warmup
+ * seconds.
+ */
+@Tag("benchmark")
+public class PoolSaturationBenchmark {
+
+    private static final int TODOS = 1_000;
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+    })
+    @AutoConfigureMockMvc
+    @Import(SlowDatabase.class)
+    class Defaults {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        DataSource dataSource;
+
+        @Test
+        public void burst() throws Exception {
+            run("defaults", mockMvc, todoJpaRepository, dataSource);
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "logging.level.com.zaxxer.hikari.pool.HikariPool=INFO"
+    })
+    @AutoConfigureMockMvc
+    @ActiveProfiles("pool")
+    @Import(SlowDatabase.class)
+    class Pool {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        DataSource dataSource;
+
+        @Test
+        public void burst() throws Exception {
+            run("pool", mockMvc, todoJpaRepository, dataSource);
+        }
+
+    }
+
+    /**
+     * Once enabled, makes every statement take benchmark.dbLatencyMillis longer, like a database on the other side of a
+     * network.
+     */
+    @TestConfiguration
+    static class SlowDatabase {
+
+        static volatile boolean enabled;
+
+        @Bean
+        static BeanPostProcessor slowDataSource() {
+            long latency = Long.getLong("benchmark.dbLatencyMillis", 50);
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource))
+                        return bean;
+                    return ProxyDataSourceBuilder.create((DataSource) bean).listener(new QueryExecutionListener() {
+                        @Override
+                        public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+                            if (!enabled)
+                                return;
+                            try {
+                                Thread.sleep(latency);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+
+                        @Override
+                        public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+                        }
+                    }).build();
+                }
+            };
+        }
+
+    }
+
+    private static void run(String configuration, MockMvc mockMvc, TodoJpaRepository todoJpaRepository,
+            DataSource dataSource) throws Exception {
+        int clients = Integer.getInteger("benchmark.clients", 500);
+        int seconds = Integer.getInteger("benchmark.seconds", 10);
+        int warmup = Integer.getInteger("benchmark.warmup", 5);
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < TODOS; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            todos.add(todo);
+        }
+        long[] ids = todoJpaRepository.saveAll(todos).stream().mapToLong(Todo::getId).toArray();
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients + 1);
+        SlowDatabase.enabled = true;
+        try {
+            burst(executor, mockMvc, pool, ids, clients, warmup);
+            Result result = burst(executor, mockMvc, pool, ids, clients, seconds);
+
+            System.out.printf("%-10s %8s %10s %8s %12s %12s %12s %12s %12s%n", "config", "clients", "ok/sec", "503s",
+                    "ok p50 ms", "ok p99 ms", "503 p50 ms", "503 p99 ms", "max pending");
+            System.out.printf("%-10s %8d %10.0f %8d %12.0f %12.0f %12.0f %12.0f %12d%n", configuration, clients,
+                    result.ok.length / (double) seconds, result.unavailable.length,
+                    percentile(result.ok, 0.50) / 1e6, percentile(result.ok, 0.99) / 1e6,
+                    percentile(result.unavailable, 0.50) / 1e6, percentile(result.unavailable, 0.99) / 1e6,
+                    result.maxPending);
+        } finally {
+            SlowDatabase.enabled = false;
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Result {
+        long[] ok;
+        long[] unavailable;
+        int maxPending;
+    }
+
+    private static Result burst(ExecutorService executor, MockMvc mockMvc, HikariPoolMXBean pool, long[] ids,
+            int clients, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ConcurrentLinkedQueue<Long> ok = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Long> unavailable = new ConcurrentLinkedQueue<>();
+        LongAdder errors = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int c = 0; c < clients; c++) {
+            int seed = c;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    MockHttpServletResponse response = mockMvc.perform(
+                            get("/todos/{id}", ids[random.nextInt(ids.length)])).andReturn().getResponse();
+                    long end = System.nanoTime();
+                    long latency = end - start;
+                    // Requests still waiting at the end are left out, or the queue of them would count as throughput.
+                    if (end > deadline)
+                        break;
+                    if (response.getStatus() == 200) {
+                        ok.add(latency);
+                    } else if (response.getStatus() == 503) {
+                        unavailable.add(latency);
+                        // Like a well-behaved client, come back when asked to.
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(Long.parseLong(response.getHeader("Retry-After"))));
+                    } else {
+                        errors.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        AtomicInteger maxPending = new AtomicInteger();
+        Future<?> sampler = executor.submit(() -> {
+            while (System.nanoTime() < deadline) {
+                maxPending.accumulateAndGet(pool.getThreadsAwaitingConnection(), Math::max);
+                Thread.sleep(50);
+            }
+            return null;
+        });
+
+        for (Future<?> future : futures)
+            future.get();
+        sampler.get();
+        if (errors.sum() > 0)
+            throw new IllegalStateException(errors.sum() + " requests failed with neither 200 nor 503");
+
+        Result result = new Result();
+        result.ok = sorted(ok);
+        result.unavailable = sorted(unavailable);
+        result.maxPending = maxPending.get();
+        return result;
+    }
+
+    private static long[] sorted(ConcurrentLinkedQueue<Long> latencies) {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+}
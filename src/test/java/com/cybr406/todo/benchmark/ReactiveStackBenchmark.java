@@ -0,0 +1,231 @@
+package com.cybr406.todo.benchmark;
+
+import io.netty.util.internal.PlatformDependent;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+import static com.cybr406.todo.benchmark.Benchmarks.usedHeap;
+
+/**
+ * Compares the servlet stack (Spring MVC, Tomcat, JPA) with the reactive one (WebFlux, Netty, R2DBC) under many
+ * concurrent connections, each sending GET /todos/{id} again as soon as the last response arrives.
+ *
+ * Reports the latency percentiles, the heap and direct memory each open connection costs, and how many threads the JVM
+ * needed. The memory is measured after a full GC with every connection still open and idle, and includes the client's
+ * side of the connection, which is the same for both stacks. The load comes from a non-blocking client in the same JVM,
+ * so it needs no thread per connection of its own.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.connections sets the number of connections (both ends of each need a
+ * file descriptor, so raise ulimit -n first), and -Dbenchmark.seconds how long each stack is measured after
+ * -Dbenchmark.warmup seconds.
+ */
+@Tag("benchmark")
+public class ReactiveStackBenchmark {
+
+    private static final int TODOS = 1_000;
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "server.tomcat.max-connections=100000",
+            "server.tomcat.accept-count=10000"
+    })
+    @Import(UnlimitedKeepAlive.class)
+    class Servlet {
+
+        @LocalServerPort
+        int port;
+
+        @Test
+        public void connections() throws Exception {
+            run("servlet", port);
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.main.web-application-type=reactive",
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+    })
+    class Reactive {
+
+        @LocalServerPort
+        int port;
+
+        @Test
+        public void connections() throws Exception {
+            run("reactive", port);
+        }
+
+    }
+
+    /**
+     * Tomcat closes a connection after 100 requests by default, which would measure reconnecting instead of serving.
+     * Netty has no such limit.
+     */
+    @TestConfiguration
+    static class UnlimitedKeepAlive {
+
+        @Bean
+        WebServerFactoryCustomizer<TomcatServletWebServerFactory> unlimitedKeepAlive() {
+            return factory -> factory.addConnectorCustomizers(connector ->
+                    ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).setMaxKeepAliveRequests(-1));
+        }
+
+    }
+
+    private static void run(String stack, int port) throws Exception {
+        int connections = Integer.getInteger("benchmark.connections", 10_000);
+        int seconds = Integer.getInteger("benchmark.seconds", 20);
+        int warmup = Integer.getInteger("benchmark.warmup", 10);
+
+        LoopResources loops = LoopResources.create("benchmark-client", 1, true);
+        ConnectionProvider pool = ConnectionProvider.fixed("benchmark", connections, TimeUnit.MINUTES.toMillis(5));
+        HttpClient client = HttpClient.create(pool)
+                .tcpConfiguration(tcp -> tcp.runOn(loops))
+                .baseUrl("http://localhost:" + port);
+        try {
+            long[] ids = seed(client);
+            long heapBefore = usedHeap();
+            long directBefore = usedDirect();
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            workload(client, ids, connections, warmup);
+            Result result = workload(client, ids, connections, seconds);
+
+            // Every connection is open and idle in the client's pool now.
+            long heap = usedHeap() - heapBefore;
+            long direct = usedDirect() - directBefore;
+
+            System.out.printf("%-9s %11s %10s %8s %9s %9s %9s %9s %12s %12s %9s%n", "stack", "connections",
+                    "req/sec", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "heap B/conn", "direct B/conn",
+                    "threads");
+            System.out.printf("%-9s %11d %10.0f %8d %9.1f %9.1f %9.1f %9.1f %12d %12d %9d%n", stack, connections,
+                    result.latencies.length / (double) seconds, result.errors,
+                    percentile(result.latencies, 0.50) / 1e6, percentile(result.latencies, 0.99) / 1e6,
+                    percentile(result.latencies, 0.999) / 1e6, percentile(result.latencies, 1.0) / 1e6,
+                    heap / connections, direct / connections, result.threads - threadsBefore);
+        } finally {
+            pool.disposeLater().block();
+            loops.disposeLater().block();
+        }
+    }
+
+    private static long[] seed(HttpClient client) {
+        StringBuilder todos = new StringBuilder("[");
+        for (int i = 0; i < TODOS; i++) {
+            if (i > 0)
+                todos.append(',');
+            todos.append("{\"author\": \"Benchmark\", \"details\": \"Benchmark details ").append(i)
+                    .append("\", \"tasks\": [{\"completed\": false, \"details\": \"Benchmark task\"}]}");
+        }
+        todos.append(']');
+
+        String ids = client.headers(headers -> headers.set("Content-Type", "application/json"))
+                .post()
+                .uri("/todos/bulk")
+                .send(ByteBufFlux.fromString(Mono.just(todos.toString())))
+                .responseContent()
+                .aggregate()
+                .asString()
+                .block();
+        return Arrays.stream(ids.substring(1, ids.length() - 1).split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    private static class Result {
+        long[] latencies;
+        long errors;
+        int threads;
+    }
+
+    private static Result workload(HttpClient client, long[] ids, int connections, int seconds) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        LongAdder errors = new LongAdder();
+        int[] threads = new int[1];
+
+        // Count the threads while every connection is busy.
+        Mono.delay(Duration.ofSeconds(seconds).dividedBy(2))
+                .subscribe(tick -> threads[0] = ManagementFactory.getThreadMXBean().getThreadCount());
+
+        long[][] latencies = Flux.range(0, connections)
+                .flatMap(c -> {
+                    Random random = new Random(c);
+                    long[][] recorded = {new long[64]};
+                    int[] count = {0};
+                    return Mono.defer(() -> {
+                        long start = System.nanoTime();
+                        return client.get()
+                                .uri("/todos/" + ids[random.nextInt(ids.length)])
+                                .responseSingle((response, body) -> body.then(Mono.just(response.status().code())))
+                                .doOnNext(status -> {
+                                    if (status != 200) {
+                                        errors.increment();
+                                        return;
+                                    }
+                                    if (count[0] == recorded[0].length)
+                                        recorded[0] = Arrays.copyOf(recorded[0], count[0] * 2);
+                                    recorded[0][count[0]++] = System.nanoTime() - start;
+                                })
+                                .onErrorResume(e -> {
+                                    errors.increment();
+                                    return Mono.empty();
+                                });
+                    })
+                            .repeat(() -> System.nanoTime() < deadline)
+                            .then(Mono.fromCallable(() -> Arrays.copyOf(recorded[0], count[0])));
+                }, connections)
+                .collectList()
+                .block()
+                .toArray(new long[0][]);
+
+        Result result = new Result();
+        result.latencies = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        result.errors = errors.sum();
+        result.threads = threads[0];
+        return result;
+    }
+
+    /**
+     * Direct buffers allocated through the JDK, which Tomcat uses, plus the ones Netty allocates on its own.
+     */
+    private static long usedDirect() {
+        long direct = Math.max(0, PlatformDependent.usedDirectMemory());
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName()))
+                direct += pool.getMemoryUsed();
+        }
+        return direct;
+    }
+
+}
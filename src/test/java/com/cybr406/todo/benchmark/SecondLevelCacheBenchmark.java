@@ -0,0 +1,187 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.cybr406.todo.benchmark.Benchmarks.percentile;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Runs the same read-heavy workload with and without the second-level cache: 95% GET /todos/{id}, 5% POST
+ * /todos/{id}/tasks, spread over random todos by several threads.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.seconds sets how long each mode is measured, after
+ * -Dbenchmark.warmup seconds of warm up, and -Dbenchmark.threads how many clients there are. Requests go through
+ * MockMvc, which adds roughly the same fixed cost to both modes.
+ */
+@Tag("benchmark")
+public class SecondLevelCacheBenchmark {
+
+    private static final int TODOS = 10_000;
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "spring.jpa.properties.hibernate.generate_statistics=true",
+            "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+    })
+    @AutoConfigureMockMvc
+    class WithoutCache {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        ObjectMapper objectMapper;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        TodoBulkWriter todoBulkWriter;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Test
+        public void readHeavyWorkload() throws Exception {
+            run("no cache", false, mockMvc, objectMapper, todoJpaRepository, todoBulkWriter, entityManagerFactory);
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "spring.jpa.show-sql=false",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+    })
+    @AutoConfigureMockMvc
+    @ActiveProfiles("cache")
+    class WithCache {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        ObjectMapper objectMapper;
+
+        @Autowired
+        TodoJpaRepository todoJpaRepository;
+
+        @Autowired
+        TodoBulkWriter todoBulkWriter;
+
+        @Autowired
+        EntityManagerFactory entityManagerFactory;
+
+        @Test
+        public void readHeavyWorkload() throws Exception {
+            run("second-level cache", true, mockMvc, objectMapper, todoJpaRepository, todoBulkWriter, entityManagerFactory);
+        }
+
+    }
+
+    private static void run(String mode, boolean cached, MockMvc mockMvc, ObjectMapper objectMapper,
+                            TodoJpaRepository todoJpaRepository, TodoBulkWriter todoBulkWriter,
+                            EntityManagerFactory entityManagerFactory) throws Exception {
+        int seconds = Integer.getInteger("benchmark.seconds", 5);
+        int threads = Integer.getInteger("benchmark.threads", 8);
+        int warmup = Integer.getInteger("benchmark.warmup", 15);
+
+        todoJpaRepository.deleteAllInBatch();
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < TODOS; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            for (int j = 0; j < 3; j++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("Benchmark task " + j);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        long[] ids = todoBulkWriter.createAll(todos.iterator()).stream().mapToLong(Long::longValue).toArray();
+        String newTask = objectMapper.writeValueAsString(todos.get(0).getTasks().get(0));
+
+        // Warm up the JIT, and the cache when there is one, then measure.
+        workload(mockMvc, ids, newTask, threads, warmup);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long[] latencies = workload(mockMvc, ids, newTask, threads, seconds);
+
+        Arrays.sort(latencies);
+        long hits = statistics.getSecondLevelCacheHitCount();
+        long misses = statistics.getSecondLevelCacheMissCount();
+        System.out.printf("%-20s %10s %10s %10s %10s %12s%n", "mode", "ops/sec", "p50 us", "p99 us", "p99.9 us",
+                "L2 hit ratio");
+        System.out.printf("%-20s %10.0f %10.1f %10.1f %10.1f %12s%n", mode,
+                latencies.length / (double) seconds,
+                percentile(latencies, 0.50) / 1000.0,
+                percentile(latencies, 0.99) / 1000.0,
+                percentile(latencies, 0.999) / 1000.0,
+                cached ? String.format("%.3f", hits / (double) Math.max(1, hits + misses)) : "-");
+    }
+
+    private static long[] workload(MockMvc mockMvc, long[] ids, String newTask, int threads, int seconds)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<long[]>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long[] latencies = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    long id = ids[random.nextInt(ids.length)];
+                    long start = System.nanoTime();
+                    if (random.nextInt(100) < 95)
+                        mockMvc.perform(get("/todos/{id}", id));
+                    else
+                        mockMvc.perform(post("/todos/{id}/tasks", id)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(newTask));
+                    if (count == latencies.length)
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        List<long[]> results = new ArrayList<>();
+        for (Future<long[]> future : futures)
+            results.add(future.get());
+        executor.shutdown();
+        return results.stream().flatMapToLong(Arrays::stream).toArray();
+    }
+
+}
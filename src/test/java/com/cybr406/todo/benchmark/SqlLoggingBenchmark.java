@@ -0,0 +1,128 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Compares request throughput under the default SQL logging (show-sql, SQL at DEBUG, binders at TRACE) with the
+ * sql-log profile, on GET /todos/{id} and GET /todos pages.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.seconds sets how long each mode is measured, after -Dbenchmark.warmup
+ * seconds of warm up, and -Dbenchmark.threads how many clients there are. The default logging writes to the console,
+ * so the result depends on where the console goes; in Gradle it is the test output.
+ */
+@Tag("benchmark")
+public class SqlLoggingBenchmark {
+
+    private static final int TODOS = 10_000;
+
+    @Nested
+    @SpringBootTest
+    @AutoConfigureMockMvc
+    class DefaultLogging {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        TodoBulkWriter todoBulkWriter;
+
+        @Test
+        public void requestThroughput() throws Exception {
+            run("default logging", mockMvc, todoBulkWriter);
+        }
+
+    }
+
+    @Nested
+    @SpringBootTest
+    @AutoConfigureMockMvc
+    @ActiveProfiles("sql-log")
+    class SqlLogProfile {
+
+        @Autowired
+        MockMvc mockMvc;
+
+        @Autowired
+        TodoBulkWriter todoBulkWriter;
+
+        @Test
+        public void requestThroughput() throws Exception {
+            run("sql-log profile", mockMvc, todoBulkWriter);
+        }
+
+    }
+
+    private static void run(String mode, MockMvc mockMvc, TodoBulkWriter todoBulkWriter) throws Exception {
+        int seconds = Integer.getInteger("benchmark.seconds", 10);
+        int threads = Integer.getInteger("benchmark.threads", 4);
+        int warmup = Integer.getInteger("benchmark.warmup", 15);
+
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < TODOS; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            for (int j = 0; j < 3; j++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("Benchmark task " + j);
+                todo.getTasks().add(task);
+            }
+            todos.add(todo);
+        }
+        long[] ids = todoBulkWriter.createAll(todos.iterator()).stream().mapToLong(Long::longValue).toArray();
+
+        workload(mockMvc, ids, threads, warmup);
+        long requests = workload(mockMvc, ids, threads, seconds);
+
+        System.out.printf("%-20s %12s%n", "mode", "requests/sec");
+        System.out.printf("%-20s %12.0f%n", mode, requests / (double) seconds);
+    }
+
+    /**
+     * Nine finds for every page of 20.
+     */
+    private static long workload(MockMvc mockMvc, long[] ids, int threads, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<Long>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                long requests = 0;
+                while (System.nanoTime() < deadline) {
+                    if (random.nextInt(10) == 0)
+                        mockMvc.perform(get("/todos").param("page", String.valueOf(random.nextInt(TODOS / 20))));
+                    else
+                        mockMvc.perform(get("/todos/{id}", ids[random.nextInt(ids.length)]));
+                    requests++;
+                }
+                return requests;
+            }));
+        }
+
+        long requests = 0;
+        for (Future<Long> future : futures)
+            requests += future.get();
+        executor.shutdown();
+        return requests;
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoBulkWriter;
+import com.cybr406.todo.TodoJpaRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.*;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Adds and deletes the same tasks one request per task and then with the batch endpoints, and completes them with a
+ * batch, spread over a handful of todos. Reports the time per task of each.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.tasks sets how many tasks each round handles, -Dbenchmark.todos how
+ * many todos they are spread over and -Dbenchmark.rounds how many rounds are timed after one of warm up.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+@AutoConfigureMockMvc
+public class TaskBatchBenchmark {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Test
+    public void singleVersusBatch() throws Exception {
+        int tasks = Integer.getInteger("benchmark.tasks", 1_000);
+        int todoCount = Integer.getInteger("benchmark.todos", 10);
+        int rounds = Integer.getInteger("benchmark.rounds", 5);
+
+        todoJpaRepository.deleteAllInBatch();
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < todoCount; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Todo " + i);
+            todos.add(todo);
+        }
+        List<Long> todoIds = todoBulkWriter.createAll(todos.iterator());
+
+        System.out.printf("%-16s %14s %14s%n", "operation", "single us/task", "batch us/task");
+        for (int round = 0; round <= rounds; round++) {
+            long start = System.nanoTime();
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                String todo = mockMvc.perform(post("/todos/{id}/tasks", todoIds.get(i % todoCount))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(task(i)))
+                        .andReturn()
+                        .getResponse()
+                        .getContentAsString();
+                JsonNode added = objectMapper.readTree(todo).get("tasks");
+                ids.add(added.get(added.size() - 1).get("id").asLong());
+            }
+            long singleAdd = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (Long id : ids)
+                mockMvc.perform(delete("/tasks/{id}", id));
+            long singleDelete = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ids.clear();
+            for (int t = 0; t < todoCount; t++) {
+                StringJoiner body = new StringJoiner(",", "[", "]");
+                for (int i = t; i < tasks; i += todoCount)
+                    body.add(task(i));
+                String todo = mockMvc.perform(post("/todos/{id}/tasks/bulk", todoIds.get(t))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body.toString()))
+                        .andReturn()
+                        .getResponse()
+                        .getContentAsString();
+                for (JsonNode added : objectMapper.readTree(todo).get("tasks"))
+                    ids.add(added.get("id").asLong());
+            }
+            long batchAdd = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            mockMvc.perform(post("/tasks/complete")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(ids)));
+            long batchComplete = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            mockMvc.perform(post("/tasks/delete")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(ids)));
+            long batchDelete = System.nanoTime() - start;
+
+            if (round > 0) {
+                System.out.printf("%-16s %14.1f %14.1f%n", "add", singleAdd / 1e3 / tasks, batchAdd / 1e3 / tasks);
+                System.out.printf("%-16s %14s %14.1f%n", "complete", "-", batchComplete / 1e3 / tasks);
+                System.out.printf("%-16s %14.1f %14.1f%n", "delete", singleDelete / 1e3 / tasks,
+                        batchDelete / 1e3 / tasks);
+            }
+        }
+    }
+
+    private static String task(int i) {
+        return "{\"completed\": false, \"details\": \"Benchmark task " + i + "\"}";
+    }
+
+}
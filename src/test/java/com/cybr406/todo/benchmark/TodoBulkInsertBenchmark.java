@@ -0,0 +1,107 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.TaskJpaRepository;
+import com.cybr406.todo.Todo;
+import com.cybr406.todo.TodoJpaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares how many todos per second can be created through POST /todos one at a time and through POST /todos/bulk.
+ *
+ * SQL logging is turned off so the numbers measure the inserts instead of the console. Run it with ./gradlew benchmark,
+ * -Dbenchmark.bulkTodos changes how many todos each bulk request sends.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+@AutoConfigureMockMvc
+public class TodoBulkInsertBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TaskJpaRepository taskJpaRepository;
+
+    @Test
+    public void rowsPerSecond() throws Exception {
+        int bulkTodos = Integer.getInteger("benchmark.bulkTodos", 50_000);
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < bulkTodos; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor("Benchmark");
+            todo.setDetails("Benchmark details " + i);
+            todos.add(todo);
+        }
+
+        String array = objectMapper.writeValueAsString(todos);
+        StringBuilder ndjson = new StringBuilder();
+        for (Todo todo : todos)
+            ndjson.append(objectMapper.writeValueAsString(todo)).append('\n');
+        List<String> singles = new ArrayList<>();
+        for (Todo todo : todos.subList(0, Math.min(5_000, bulkTodos)))
+            singles.add(objectMapper.writeValueAsString(todo));
+
+        double single = 0, bulkArray = 0, bulkNdjson = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            clear();
+            long start = System.nanoTime();
+            for (String todo : singles)
+                mockMvc.perform(post("/todos").contentType(MediaType.APPLICATION_JSON).content(todo))
+                        .andExpect(status().isCreated());
+            single = Math.max(single, rate(singles.size(), start));
+
+            clear();
+            start = System.nanoTime();
+            mockMvc.perform(post("/todos/bulk").contentType(MediaType.APPLICATION_JSON).content(array))
+                    .andExpect(status().isCreated());
+            bulkArray = Math.max(bulkArray, rate(bulkTodos, start));
+
+            clear();
+            start = System.nanoTime();
+            mockMvc.perform(post("/todos/bulk").contentType("application/x-ndjson").content(ndjson.toString()))
+                    .andExpect(status().isCreated());
+            bulkNdjson = Math.max(bulkNdjson, rate(bulkTodos, start));
+        }
+
+        System.out.printf("%-28s %12s%n", "path", "todos/sec");
+        System.out.printf("%-28s %12.0f%n", "POST /todos, one at a time", single);
+        System.out.printf("%-28s %12.0f%n", "POST /todos/bulk, JSON", bulkArray);
+        System.out.printf("%-28s %12.0f%n", "POST /todos/bulk, NDJSON", bulkNdjson);
+    }
+
+    private void clear() {
+        taskJpaRepository.deleteAllInBatch();
+        todoJpaRepository.deleteAllInBatch();
+    }
+
+    private static double rate(int rows, long start) {
+        return rows / ((System.nanoTime() - start) / 1e9);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Exports growing tables and checks how much memory the export holds on to while it runs. Part way through each
+ * export the output stream forces a garbage collection and records how much more heap is in use than before the
+ * export started. If the export streams, that number stays flat as the table grows.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.exportTodos sets the largest table (one task per todo).
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+public class TodoExportBenchmark {
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private TodoExporter todoExporter;
+
+    @Test
+    public void memoryByTableSize() {
+        int maxTodos = Integer.getInteger("benchmark.exportTodos", 1_000_000);
+
+        System.out.printf("%10s %12s %12s %18s%n", "todos", "MB written", "todos/sec", "retained heap KB");
+        int total = 0;
+        for (int size = 10_000; size <= maxTodos; size *= 10) {
+            todoBulkWriter.createAll(todos(size - total));
+            total = size;
+            measure(total);
+        }
+    }
+
+    private void measure(int total) {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+
+        MeasuringStream out = new MeasuringStream(total / 2, () -> {
+            System.gc();
+            return runtime.totalMemory() - runtime.freeMemory() - baseline;
+        });
+
+        long start = System.nanoTime();
+        long exported = todoExporter.export(out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%10d %12.1f %12.0f %18d%n", exported, out.bytes / 1e6, exported / seconds,
+                out.retained / 1024);
+    }
+
+    private static Iterator<Todo> todos(int count) {
+        return new Iterator<Todo>() {
+            int created = 0;
+
+            @Override
+            public boolean hasNext() {
+                return created < count;
+            }
+
+            @Override
+            public Todo next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                created++;
+                Todo todo = new Todo();
+                todo.setAuthor("Benchmark");
+                todo.setDetails("Benchmark details " + created);
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("Benchmark task " + created);
+                todo.getTasks().add(task);
+                return todo;
+            }
+        };
+    }
+
+    /**
+     * Throws the bytes away, but measures retained heap once when the given number of lines has gone by.
+     */
+    private static class MeasuringStream extends OutputStream {
+
+        interface Measure {
+            long retained();
+        }
+
+        private final long measureAtLine;
+
+        private final Measure measure;
+
+        long bytes = 0;
+
+        long lines = 0;
+
+        long retained = -1;
+
+        MeasuringStream(long measureAtLine, Measure measure) {
+            this.measureAtLine = measureAtLine;
+            this.measure = measure;
+        }
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n' && ++lines == measureAtLine)
+                retained = measure.retained();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++)
+                write(b[i]);
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.cybr406.todo.benchmark;
+
+import com.cybr406.todo.*;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+/**
+ * Searches a large table of todos, each with one task, whose details are made of words drawn from a fixed vocabulary
+ * so some words are in most todos and others in a handful. Reports how long rebuilding the index from the database
+ * takes, and the latency of the first page of GET /todos/search for a common word, a rare word, two words and a
+ * prefix, against the same search done in the database with LIKE.
+ *
+ * Run it with ./gradlew benchmark. -Dbenchmark.todos sets the number of todos, -Dbenchmark.searches how many times
+ * each query is run against the index and -Dbenchmark.like-searches against the database.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.org.hibernate.SQL=WARN",
+        "logging.level.org.hibernate.type=WARN",
+        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN"
+})
+public class TodoSearchBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+
+    private static final String MATCHES =
+            "FROM TODO T WHERE LOWER(T.DETAILS) LIKE ? OR EXISTS "
+                    + "(SELECT 1 FROM TASK WHERE TASK.TODO_ID = T.ID AND LOWER(TASK.DETAILS) LIKE ?)";
+
+    @Autowired
+    private TodoBulkWriter todoBulkWriter;
+
+    @Autowired
+    private TodoJpaRepository todoJpaRepository;
+
+    @Autowired
+    private TodoSearch todoSearch;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void searchLatency() {
+        int count = Integer.getInteger("benchmark.todos", 1_000_000);
+        int searches = Integer.getInteger("benchmark.searches", 2_000);
+        int likeSearches = Integer.getInteger("benchmark.like-searches", 5);
+
+        todoJpaRepository.deleteAllInBatch();
+        todoBulkWriter.createAll(todos(count));
+
+        long start = System.nanoTime();
+        todoSearch.rebuild();
+        System.out.printf("Indexed %d todos and %d tasks in %.1f s%n", count, count,
+                (System.nanoTime() - start) / 1e9);
+
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("common", word(0));
+        queries.put("rare", word(VOCABULARY - 1));
+        queries.put("two words", word(5) + " " + word(500));
+        queries.put("prefix", word(42).substring(0, 3) + "*");
+
+        System.out.printf("%-10s %-18s %10s %10s %10s %10s%n", "query", "q", "matches", "p50 ms", "p99 ms", "mode");
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            String q = query.getValue();
+            long matches = 0;
+            long[] latencies = new long[searches];
+            for (int i = 0; i < searches; i++) {
+                long searchStart = System.nanoTime();
+                Page<TodoSearchHit> page = todoSearch.search(q, PageRequest.of(0, 20));
+                latencies[i] = System.nanoTime() - searchStart;
+                matches = page.getTotalElements();
+            }
+            print(query.getKey(), q, matches, latencies, "index");
+
+            // Like the endpoint, a page and the total. Only the first word, unranked, and a prefix only at the start of
+            // the details, all of which flatters LIKE.
+            String pattern = q.endsWith("*") ? q.substring(0, q.length() - 1) + "%" : "%" + q.split(" ")[0] + "%";
+            long[] likeLatencies = new long[likeSearches];
+            long found = 0;
+            for (int i = 0; i < likeSearches; i++) {
+                long searchStart = System.nanoTime();
+                jdbcTemplate.queryForList("SELECT ID " + MATCHES + " ORDER BY ID LIMIT 20", Long.class, pattern,
+                        pattern);
+                found = jdbcTemplate.queryForObject("SELECT COUNT(*) " + MATCHES, Long.class, pattern, pattern);
+                likeLatencies[i] = System.nanoTime() - searchStart;
+            }
+            print(query.getKey(), pattern, found, likeLatencies, "like");
+        }
+    }
+
+    private static void print(String name, String q, long matches, long[] latencies, String mode) {
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %-18s %10d %10.2f %10.2f %10s%n", name, q, matches,
+                latencies[latencies.length / 2] / 1e6,
+                latencies[Math.min(latencies.length - 1, (int) (latencies.length * 0.99))] / 1e6, mode);
+    }
+
+    /**
+     * The word of the given rank. Made up from the rank so the vocabulary doesn't need storing, and prefixed so no word
+     * is the start of another one by accident.
+     */
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder("w");
+        int rest = rank;
+        do {
+            word.append((char) ('a' + rest % 26));
+            rest /= 26;
+        } while (rest > 0);
+        return word.append('x').toString();
+    }
+
+    /**
+     * Todos of six words each, with Zipf-like word frequencies: the word of rank r turns up about 1 / (r + 1) as often
+     * as the most common one.
+     */
+    private static Iterator<Todo> todos(int count) {
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int rank = 0; rank < VOCABULARY; rank++)
+            cumulative[rank] = sum += 1.0 / (rank + 1);
+        Random random = new Random(406);
+
+        return new Iterator<Todo>() {
+            int created = 0;
+
+            @Override
+            public boolean hasNext() {
+                return created < count;
+            }
+
+            @Override
+            public Todo next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                created++;
+                Todo todo = new Todo();
+                todo.setAuthor("Benchmark");
+                todo.setDetails(sentence(random, cumulative));
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails(sentence(random, cumulative));
+                todo.getTasks().add(task);
+                return todo;
+            }
+        };
+    }
+
+    private static String sentence(Random random, double[] cumulative) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            sentence.append(i == 0 ? "" : " ").append(word(rank < 0 ? -rank - 1 : rank));
+        }
+        return sentence.toString();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.cybr406.todo.ungraded;
+
+import com.cybr406.todo.ColumnarTodoRepository;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same checks as InMemoryTodoRepositoryTests against ColumnarTodoRepository, plus a few for the things that
+ * are specific to storing rows in arrays.
+ */
+public class ColumnarTodoRepositoryTests extends InMemoryTodoRepositoryTests {
+
+    @BeforeEach
+    @Override
+    public void setup() {
+        todoRepository = new ColumnarTodoRepository();
+    }
+
+    @Test
+    public void testTaskFieldsSurviveStorage() {
+        Todo todo = create("fields");
+        todoRepository.addTask(todo.getId(), task(true, "done"));
+        todoRepository.addTask(todo.getId(), task(false, "not done"));
+        todoRepository.addTask(todo.getId(), task(null, "unknown"));
+
+        Todo found = todoRepository.find(todo.getId()).orElseThrow(NoSuchElementException::new);
+        assertEquals(AUTHOR, found.getAuthor());
+        assertEquals("fields", found.getDetails());
+        assertEquals(3, found.getTasks().size());
+        assertEquals(Boolean.TRUE, found.getTasks().get(0).getCompleted());
+        assertEquals(Boolean.FALSE, found.getTasks().get(1).getCompleted());
+        assertNull(found.getTasks().get(2).getCompleted());
+        assertEquals("unknown", found.getTasks().get(2).getDetails());
+        assertSame(found, found.getTasks().get(0).getTodo());
+    }
+
+    @Test
+    public void testDeleteRemovesTasks() {
+        Todo first = create("first");
+        Todo second = create("second");
+        Task kept = task(false, "kept");
+        Task dropped = task(false, "dropped");
+        todoRepository.addTask(first.getId(), dropped);
+        todoRepository.addTask(second.getId(), kept);
+
+        todoRepository.delete(first.getId());
+
+        assertFalse(todoRepository.find(first.getId()).isPresent());
+        assertEquals(0, first.getTasks().size());
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTask(dropped.getId()));
+        assertEquals(1, todoRepository.findAll(0, 10).size());
+        assertEquals(second.getId(), todoRepository.findAll(0, 10).get(0).getId());
+        assertEquals(kept, second.getTasks().get(0));
+    }
+
+    @Test
+    public void testTaskSlotsAreReusedInOrder() {
+        Todo todo = create("reuse");
+        for (int round = 0; round < 100; round++) {
+            Task a = task(false, "a" + round);
+            Task b = task(false, "b" + round);
+            todoRepository.addTask(todo.getId(), a);
+            todoRepository.addTask(todo.getId(), b);
+            todoRepository.deleteTask(a.getId());
+            assertEquals("b" + round, todo.getTasks().get(round).getDetails());
+        }
+        assertEquals(100, todo.getTasks().size());
+    }
+
+    @Test
+    public void testFindAllSkipsDeletedTodos() {
+        for (int i = 0; i < 10; i++)
+            create("todo " + i);
+        todoRepository.delete(2L);
+        todoRepository.delete(5L);
+
+        assertEquals(8, todoRepository.count());
+        assertEquals(3L, todoRepository.findAll(0, 2).get(1).getId());
+        assertEquals(7L, todoRepository.findAll(1, 3).get(1).getId());
+        assertEquals(2, todoRepository.findAll(2, 3).size());
+        assertTrue(todoRepository.findAll(3, 3).isEmpty());
+    }
+
+    @Test
+    public void testManyTodosGrowTheColumns() {
+        for (int i = 0; i < 10_000; i++) {
+            Todo todo = create("todo " + i);
+            todoRepository.addTask(todo.getId(), task(i % 2 == 0, "task " + i));
+        }
+        assertEquals(10_000, todoRepository.count());
+        Todo todo = todoRepository.find(9_999L).orElseThrow(NoSuchElementException::new);
+        assertEquals("todo 9998", todo.getDetails());
+        assertEquals("task 9998", todo.getTasks().get(0).getDetails());
+        assertEquals(9_999L, todo.getTasks().get(0).getId());
+    }
+
+}
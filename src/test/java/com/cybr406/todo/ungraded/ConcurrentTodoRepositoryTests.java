@@ -0,0 +1,181 @@
+package com.cybr406.todo.ungraded;
+
+import com.cybr406.todo.ConcurrentTodoRepository;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same checks as InMemoryTodoRepositoryTests, plus a few that hammer the repository from many threads at
+ * once and make sure nothing gets lost.
+ */
+public class ConcurrentTodoRepositoryTests extends InMemoryTodoRepositoryTests {
+
+    private static final int WRITERS = 64;
+
+    private static final int OPERATIONS_PER_WRITER = 500;
+
+    @BeforeEach
+    @Override
+    public void setup() {
+        todoRepository = new ConcurrentTodoRepository();
+    }
+
+    private void runConcurrently(int writers, Callable<Void> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < writers; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return work.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentCreateLosesNothing() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(WRITERS, () -> {
+            for (int i = 0; i < OPERATIONS_PER_WRITER; i++)
+                assertTrue(ids.add(create("create " + i).getId()), "Duplicate id handed out.");
+            return null;
+        });
+
+        int expected = WRITERS * OPERATIONS_PER_WRITER;
+        assertEquals(expected, ids.size());
+        assertEquals(expected, todoRepository.count());
+        assertEquals(expected, todoRepository.findAll(0, expected + 1).size());
+        for (long id = 1; id <= expected; id++)
+            assertTrue(todoRepository.find(id).isPresent(), "Todo " + id + " went missing.");
+    }
+
+    @Test
+    public void testConcurrentAddTaskLosesNothing() throws Exception {
+        int todoCount = 8;
+        for (int i = 0; i < todoCount; i++)
+            create("shared " + i);
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(WRITERS, () -> {
+            for (int i = 0; i < OPERATIONS_PER_WRITER; i++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("task " + i);
+                todoRepository.addTask((long) (i % todoCount) + 1, task);
+                assertTrue(ids.add(task.getId()), "Duplicate task id handed out.");
+            }
+            return null;
+        });
+
+        int total = 0;
+        for (long id = 1; id <= todoCount; id++)
+            total += todoRepository.find(id).orElseThrow(NoSuchElementException::new).getTasks().size();
+
+        assertEquals(WRITERS * OPERATIONS_PER_WRITER, ids.size());
+        assertEquals(WRITERS * OPERATIONS_PER_WRITER, total);
+    }
+
+    @Test
+    public void testConcurrentDeleteTaskRemovesEachTaskOnce() throws Exception {
+        Todo todo = create("delete tasks");
+        int taskCount = WRITERS * 50;
+        for (int i = 0; i < taskCount; i++) {
+            Task task = new Task();
+            task.setDetails("task " + i);
+            todoRepository.addTask(todo.getId(), task);
+        }
+
+        ConcurrentLinkedQueue<Long> remaining = new ConcurrentLinkedQueue<>();
+        for (Task task : todo.getTasks())
+            remaining.add(task.getId());
+
+        runConcurrently(WRITERS, () -> {
+            Long id;
+            while ((id = remaining.poll()) != null) {
+                todoRepository.deleteTask(id);
+                Long deleted = id;
+                assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTask(deleted));
+            }
+            return null;
+        });
+
+        assertTrue(todo.getTasks().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentDeleteAndAddTask() throws Exception {
+        int todoCount = WRITERS * 10;
+        for (int i = 0; i < todoCount; i++)
+            create("doomed " + i);
+
+        runConcurrently(WRITERS, () -> {
+            for (long id = 1; id <= todoCount; id++) {
+                try {
+                    Task task = new Task();
+                    task.setDetails("late task");
+                    todoRepository.addTask(id, task);
+                    todoRepository.delete(id);
+                } catch (NoSuchElementException e) {
+                    // Another writer got there first, which is expected.
+                }
+            }
+            return null;
+        });
+
+        assertEquals(0, todoRepository.count());
+        assertTrue(todoRepository.findAll(0, 10).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentBatchesOverManyTodos() throws Exception {
+        int todoCount = 16;
+        List<Long> taskIds = new ArrayList<>();
+        for (int i = 0; i < todoCount; i++) {
+            Todo todo = create("batched " + i);
+            for (int j = 0; j < WRITERS; j++) {
+                Task task = new Task();
+                task.setCompleted(false);
+                task.setDetails("task " + j);
+                todoRepository.addTask(todo.getId(), task);
+                taskIds.add(task.getId());
+            }
+        }
+
+        // Every writer completes a batch spread over all the todos, half of them in the opposite order, then deletes
+        // its own tasks. Batches that lock their todos in different orders must not deadlock.
+        ConcurrentLinkedQueue<Integer> writers = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < WRITERS; i++)
+            writers.add(i);
+        runConcurrently(WRITERS, () -> {
+            int writer = writers.remove();
+            List<Long> mine = new ArrayList<>();
+            for (int i = writer; i < taskIds.size(); i += WRITERS)
+                mine.add(taskIds.get(i));
+            if (writer % 2 == 0)
+                Collections.reverse(mine);
+            todoRepository.completeTasks(mine);
+            todoRepository.deleteTasks(mine);
+            return null;
+        });
+
+        for (long id = 1; id <= todoCount; id++)
+            assertTrue(todoRepository.find(id).orElseThrow(NoSuchElementException::new).getTasks().isEmpty());
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.cybr406.todo.ungraded;
+
+import com.cybr406.todo.DurableTodoRepository;
+import com.cybr406.todo.DurableTodoRepository.Durability;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same checks as InMemoryTodoRepositoryTests against DurableTodoRepository, then restarts it in various
+ * ways to make sure nothing acknowledged is lost.
+ */
+public class DurableTodoRepositoryTests extends InMemoryTodoRepositoryTests {
+
+    @TempDir
+    Path directory;
+
+    private DurableTodoRepository repository;
+
+    @BeforeEach
+    @Override
+    public void setup() {
+        open(Durability.GROUP_COMMIT, 1_000_000);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        repository.close();
+    }
+
+    private void open(Durability durability, long snapshotEvery) {
+        try {
+            repository = new DurableTodoRepository(directory, durability, 1, snapshotEvery);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        todoRepository = repository;
+    }
+
+    private void restart(Durability durability, long snapshotEvery) throws IOException {
+        repository.close();
+        open(durability, snapshotEvery);
+    }
+
+    private void createSampleData() {
+        Todo first = create("first");
+        Todo second = create("second");
+        Todo third = create("third");
+        addTask(first.getId(), true, "done");
+        Task dropped = addTask(first.getId(), false, "dropped");
+        addTask(second.getId(), null, "unknown");
+        addTask(third.getId(), false, "goes with third");
+        todoRepository.deleteTask(dropped.getId());
+        todoRepository.delete(third.getId());
+    }
+
+    private void assertSampleData() {
+        assertEquals(2, todoRepository.count());
+        assertFalse(todoRepository.find(3L).isPresent());
+
+        Todo first = todoRepository.find(1L).orElseThrow(NoSuchElementException::new);
+        assertEquals(AUTHOR, first.getAuthor());
+        assertEquals("first", first.getDetails());
+        assertEquals(1, first.getTasks().size());
+        assertEquals(1L, first.getTasks().get(0).getId());
+        assertEquals(Boolean.TRUE, first.getTasks().get(0).getCompleted());
+
+        Todo second = todoRepository.find(2L).orElseThrow(NoSuchElementException::new);
+        assertNull(second.getTasks().get(0).getCompleted());
+        assertEquals("unknown", second.getTasks().get(0).getDetails());
+
+        // Ids that were handed out before the restart are never reused, even for deleted rows.
+        assertEquals(4L, create("fourth").getId());
+        assertEquals(5L, addTask(4L, false, "new").getId());
+    }
+
+    @Test
+    public void testReplaysLogAfterRestart() throws IOException {
+        createSampleData();
+        restart(Durability.SYNC, 1_000_000);
+        assertSampleData();
+    }
+
+    @Test
+    public void testLoadsSnapshotAfterRestart() throws IOException {
+        createSampleData();
+        repository.snapshot();
+        assertEquals(1, files("wal-").size(), "The snapshot should replace the older log files.");
+        assertEquals(1, files("snapshot-").size());
+
+        restart(Durability.SYNC, 1_000_000);
+        assertSampleData();
+    }
+
+    @Test
+    public void testSnapshotPlusLogTail() throws IOException {
+        Todo todo = create("before the snapshot");
+        repository.snapshot();
+        addTask(todo.getId(), true, "after the snapshot");
+        create("also after the snapshot");
+
+        restart(Durability.ASYNC, 1_000_000);
+
+        assertEquals(2, todoRepository.count());
+        assertEquals("after the snapshot", todoRepository.find(1L)
+                .orElseThrow(NoSuchElementException::new)
+                .getTasks().get(0).getDetails());
+    }
+
+    @Test
+    public void testSnapshotsAutomatically() throws Exception {
+        restart(Durability.GROUP_COMMIT, 50);
+        for (int i = 0; i < 500; i++)
+            create("todo " + i);
+
+        // Snapshots run in the background, give the last one a moment.
+        for (int i = 0; i < 100 && files("snapshot-").isEmpty(); i++)
+            Thread.sleep(50);
+        assertFalse(files("snapshot-").isEmpty());
+
+        restart(Durability.GROUP_COMMIT, 1_000_000);
+        assertEquals(500, todoRepository.count());
+        assertEquals("todo 499", todoRepository.find(500L).map(Todo::getDetails).orElse(null));
+    }
+
+    @Test
+    public void testIgnoresTornRecord() throws IOException {
+        createSampleData();
+        repository.close();
+
+        // Chop the last record in half, as if the machine died part way through writing it.
+        Path log = files("wal-").get(0);
+        long length = Files.size(log);
+        try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+            file.setLength(length - 6);
+        }
+
+        open(Durability.SYNC, 1_000_000);
+
+        // The lost record was the delete of todo 3.
+        assertEquals(3, todoRepository.count());
+        assertTrue(todoRepository.find(3L).isPresent());
+
+        // New records go after the last good one, so the log stays readable.
+        todoRepository.delete(3L);
+        restart(Durability.SYNC, 1_000_000);
+        assertSampleData();
+    }
+
+    @Test
+    public void testFailedWritesChangeNothing() throws IOException {
+        createSampleData();
+        Todo first = todoRepository.find(1L).orElseThrow(NoSuchElementException::new);
+        long task = first.getTasks().get(0).getId();
+
+        // Every write after this fails to reach the log, so none of them may show up in memory either.
+        repository.close();
+        assertThrows(UncheckedIOException.class, () -> create("never logged"));
+        assertThrows(UncheckedIOException.class, () -> addTask(1L, false, "never logged"));
+        assertThrows(UncheckedIOException.class, () -> todoRepository.delete(2L));
+        assertThrows(UncheckedIOException.class, () -> todoRepository.deleteTask(task));
+        assertThrows(UncheckedIOException.class, () -> todoRepository.deleteTasks(Collections.singletonList(task)));
+        assertThrows(UncheckedIOException.class, () -> todoRepository.completeTasks(Collections.singletonList(task)));
+        assertEquals(2, todoRepository.count());
+        assertEquals(1, first.getTasks().size());
+
+        // Missing rows are still reported as missing, without touching the log.
+        assertThrows(NoSuchElementException.class, () -> todoRepository.delete(3L));
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTasks(Arrays.asList(task, 99L)));
+
+        open(Durability.SYNC, 1_000_000);
+        assertSampleData();
+    }
+
+    @Test
+    public void testRejectsRecordsReplayWouldDrop() throws IOException {
+        createSampleData();
+
+        // Replay gives up on records over 64 MB, so one that size must never be acknowledged.
+        char[] details = new char[64 * 1024 * 1024 + 1];
+        Arrays.fill(details, 'x');
+        assertThrows(IllegalArgumentException.class, () -> create(new String(details)));
+        assertEquals(2, todoRepository.count());
+
+        // The log is still usable, and nothing after the refused record goes missing.
+        todoRepository.delete(2L);
+        restart(Durability.SYNC, 1_000_000);
+        assertEquals(1, todoRepository.count());
+        assertFalse(todoRepository.find(2L).isPresent());
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(prefix))
+                    .filter(f -> !f.getFileName().toString().endsWith(".tmp"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testReplaysBatches() throws IOException {
+        Todo todo = create("batched");
+        Task first = new Task();
+        first.setCompleted(false);
+        first.setDetails("first");
+        Task second = new Task();
+        second.setCompleted(false);
+        second.setDetails("second");
+        Task third = new Task();
+        third.setDetails("third");
+        todoRepository.addTasks(todo.getId(), Arrays.asList(first, second, third));
+        todoRepository.completeTasks(Arrays.asList(first.getId(), second.getId(), first.getId()));
+        todoRepository.deleteTasks(Arrays.asList(second.getId(), second.getId()));
+
+        restart(Durability.SYNC, 1_000_000);
+
+        List<Task> tasks = todoRepository.find(todo.getId()).orElseThrow(NoSuchElementException::new).getTasks();
+        assertEquals(2, tasks.size());
+        assertEquals(first.getId(), tasks.get(0).getId());
+        assertEquals(Boolean.TRUE, tasks.get(0).getCompleted());
+        assertEquals("third", tasks.get(1).getDetails());
+        assertNull(tasks.get(1).getCompleted());
+
+        // A snapshot carries the completed flags too.
+        repository.snapshot();
+        restart(Durability.SYNC, 1_000_000);
+        assertEquals(Boolean.TRUE, todoRepository.find(todo.getId())
+                .orElseThrow(NoSuchElementException::new)
+                .getTasks().get(0).getCompleted());
+    }
+
+}
@@ -7,9 +7,12 @@ import com.cybr406.todo.TodoRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,6 +26,31 @@ public class InMemoryTodoRepositoryTests {
         todoRepository = new InMemoryTodoRepository();
     }
 
+    static final String AUTHOR = "Test Author";
+
+    /**
+     * Creates a todo by AUTHOR. Shared with the tests of the other engines, which run these tests too.
+     */
+    Todo create(String details) {
+        Todo todo = new Todo();
+        todo.setAuthor(AUTHOR);
+        todo.setDetails(details);
+        return todoRepository.create(todo);
+    }
+
+    static Task task(Boolean completed, String details) {
+        Task task = new Task();
+        task.setCompleted(completed);
+        task.setDetails(details);
+        return task;
+    }
+
+    Task addTask(long todoId, Boolean completed, String details) {
+        Task task = task(completed, details);
+        todoRepository.addTask(todoId, task);
+        return task;
+    }
+
     private void generateRandomizedTodos(int total) {
         for (int i = 0; i < total; i++) {
             Todo todo = new Todo();
@@ -100,6 +128,70 @@ public class InMemoryTodoRepositoryTests {
         assertEquals(0, page.size());
     }
 
+    @Test
+    public void testFindAllAfter() {
+        generateRandomizedTodos(15);
+        todoRepository.delete(4L);
+        todoRepository.delete(5L);
+        todoRepository.delete(12L);
+
+        List<Todo> page = todoRepository.findAllAfter(0, 5);
+        assertEquals(5, page.size());
+        assertPageElement(1, 0, page);
+        assertPageElement(3, 2, page);
+        assertPageElement(6, 3, page);
+        assertPageElement(7, 4, page);
+
+        page = todoRepository.findAllAfter(7, 5);
+        assertEquals(5, page.size());
+        assertPageElement(8, 0, page);
+        assertPageElement(13, 4, page);
+
+        // Seeking from a deleted id works the same as from a live one.
+        page = todoRepository.findAllAfter(4, 1);
+        assertEquals(1, page.size());
+        assertPageElement(6, 0, page);
+
+        page = todoRepository.findAllAfter(13, 5);
+        assertEquals(2, page.size());
+        assertPageElement(15, 1, page);
+
+        assertTrue(todoRepository.findAllAfter(15, 5).isEmpty());
+        assertTrue(todoRepository.findAllAfter(Long.MAX_VALUE, 5).isEmpty());
+    }
+
+    @Test
+    public void testFindByAuthorAfter() {
+        for (int i = 0; i < 12; i++) {
+            Todo todo = new Todo();
+            todo.setAuthor(i % 3 == 0 ? "Alice" : "Bob");
+            todo.setDetails("Todo " + i);
+            todoRepository.create(todo);
+        }
+        todoRepository.delete(4L);
+
+        // Alice has 1, 4, 7 and 10, and 4 is gone.
+        List<Todo> page = todoRepository.findByAuthorAfter("Alice", 0, 2);
+        assertEquals(2, page.size());
+        assertPageElement(1, 0, page);
+        assertPageElement(7, 1, page);
+        assertEquals("Alice", page.get(1).getAuthor());
+
+        page = todoRepository.findByAuthorAfter("Alice", 7, 2);
+        assertEquals(1, page.size());
+        assertPageElement(10, 0, page);
+
+        // Seeking from another author's id works too.
+        page = todoRepository.findByAuthorAfter("Alice", 5, 5);
+        assertEquals(2, page.size());
+        assertPageElement(7, 0, page);
+
+        assertEquals(8, todoRepository.findByAuthorAfter("Bob", 0, 100).size());
+        assertTrue(todoRepository.findByAuthorAfter("Alice", 10, 5).isEmpty());
+        assertTrue(todoRepository.findByAuthorAfter("Carol", 0, 5).isEmpty());
+        assertTrue(todoRepository.findByAuthorAfter("alice", 0, 5).isEmpty());
+    }
+
     @Test
     public void testCount() {
         generateRandomizedTodos(15);
@@ -154,4 +246,109 @@ public class InMemoryTodoRepositoryTests {
                 .anyMatch(t -> Objects.equals(1L, t.getId())));
     }
 
+    @Test
+    public void testNullIdsAreMissing() {
+        generateRandomizedTodos(1);
+        assertFalse(todoRepository.find(null).isPresent());
+        assertThrows(NoSuchElementException.class, () -> todoRepository.addTask(null, new Task()));
+        assertThrows(NoSuchElementException.class,
+                () -> todoRepository.addTasks(null, Collections.singletonList(new Task())));
+        assertThrows(NoSuchElementException.class, () -> todoRepository.delete(null));
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTask(null));
+        assertFalse(todoRepository.findTodoIdOfTask(null).isPresent());
+        assertEquals(1, todoRepository.count());
+    }
+
+    @Test
+    public void testFindTodoIdOfTask() {
+        Todo first = create("first");
+        Todo second = create("second");
+        Task task = addTask(second.getId(), false, "second's task");
+        addTask(first.getId(), false, "first's task");
+
+        assertEquals(Optional.of(second.getId()), todoRepository.findTodoIdOfTask(task.getId()));
+        todoRepository.deleteTask(task.getId());
+        assertFalse(todoRepository.findTodoIdOfTask(task.getId()).isPresent());
+        assertFalse(todoRepository.findTodoIdOfTask(999L).isPresent());
+    }
+
+    private Todo todoWithTasks(int tasks) {
+        Todo todo = new Todo();
+        todo.setAuthor("Test Author");
+        todo.setDetails("Test details.");
+        todo = todoRepository.create(todo);
+        generateRandomizedTasks(todo, tasks);
+        return todoRepository.find(todo.getId())
+                .orElseThrow(NoSuchElementException::new);
+    }
+
+    private Todo reload(Todo todo) {
+        return todoRepository.find(todo.getId())
+                .orElseThrow(NoSuchElementException::new);
+    }
+
+    @Test
+    public void testAddTasks() {
+        Todo todo = todoWithTasks(1);
+        Task first = new Task();
+        first.setCompleted(true);
+        first.setDetails("First of the batch.");
+        Task second = new Task();
+        second.setDetails("Second of the batch.");
+
+        Todo result = todoRepository.addTasks(todo.getId(), Arrays.asList(first, second));
+        assertEquals(3, result.getTasks().size());
+        assertNotNull(first.getId());
+        assertEquals(first.getId() + 1, second.getId());
+        assertEquals(first, reload(todo).getTasks().get(1));
+        assertEquals(second, reload(todo).getTasks().get(2));
+
+        assertThrows(NoSuchElementException.class,
+                () -> todoRepository.addTasks(Long.MAX_VALUE, Collections.singletonList(new Task())));
+    }
+
+    @Test
+    public void testCompleteTasks() {
+        Todo one = todoWithTasks(3);
+        Todo two = todoWithTasks(2);
+        Long a = one.getTasks().get(0).getId();
+        Long b = one.getTasks().get(2).getId();
+        Long c = two.getTasks().get(1).getId();
+
+        // Nothing is completed if any of the tasks doesn't exist.
+        assertThrows(NoSuchElementException.class, () -> todoRepository.completeTasks(Arrays.asList(a, 999L)));
+        assertEquals(Boolean.FALSE, reload(one).getTasks().get(0).getCompleted());
+
+        todoRepository.completeTasks(Arrays.asList(a, b, c, a));
+        assertEquals(Boolean.TRUE, reload(one).getTasks().get(0).getCompleted());
+        assertEquals(Boolean.FALSE, reload(one).getTasks().get(1).getCompleted());
+        assertEquals(Boolean.TRUE, reload(one).getTasks().get(2).getCompleted());
+        assertEquals(Boolean.FALSE, reload(two).getTasks().get(0).getCompleted());
+        assertEquals(Boolean.TRUE, reload(two).getTasks().get(1).getCompleted());
+    }
+
+    @Test
+    public void testDeleteTasks() {
+        Todo one = todoWithTasks(3);
+        Todo two = todoWithTasks(2);
+        Long a = one.getTasks().get(0).getId();
+        Long b = one.getTasks().get(2).getId();
+        Long c = two.getTasks().get(1).getId();
+        Long kept = one.getTasks().get(1).getId();
+
+        // Nothing is deleted if any of the tasks doesn't exist.
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTasks(Arrays.asList(a, 999L)));
+        assertEquals(3, reload(one).getTasks().size());
+
+        todoRepository.deleteTasks(Arrays.asList(a, b, c, a));
+        assertEquals(1, reload(one).getTasks().size());
+        assertEquals(kept, reload(one).getTasks().get(0).getId());
+        assertEquals(1, reload(two).getTasks().size());
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTask(a));
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTasks(Collections.singletonList(c)));
+
+        todoRepository.deleteTasks(Collections.emptyList());
+        assertEquals(2, todoRepository.count());
+    }
+
 }
@@ -0,0 +1,211 @@
+package com.cybr406.todo.ungraded;
+
+import com.cybr406.todo.MappedTodoRepository;
+import com.cybr406.todo.MappedTodoRepository.FsyncPolicy;
+import com.cybr406.todo.Task;
+import com.cybr406.todo.Todo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same checks as InMemoryTodoRepositoryTests against MappedTodoRepository, then makes sure everything is
+ * still there after the repository is closed and opened again.
+ */
+public class MappedTodoRepositoryTests extends InMemoryTodoRepositoryTests {
+
+    // Small segments so the tests cross segment boundaries.
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private MappedTodoRepository repository;
+
+    @BeforeEach
+    @Override
+    public void setup() {
+        repository = new MappedTodoRepository(directory, SEGMENT_SIZE, FsyncPolicy.NEVER);
+        todoRepository = repository;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        repository.close();
+    }
+
+    private void reopen() {
+        repository.close();
+        setup();
+    }
+
+    @Test
+    public void testDataSurvivesRestart() {
+        Todo first = create("first");
+        Todo second = create("second ✓");
+        Todo third = create("third");
+        Task done = addTask(second.getId(), true, "done");
+        Task dropped = addTask(second.getId(), false, "dropped");
+        addTask(third.getId(), null, "belongs to a deleted todo");
+        todoRepository.deleteTask(dropped.getId());
+        todoRepository.delete(third.getId());
+
+        reopen();
+
+        assertEquals(2, todoRepository.count());
+        assertFalse(todoRepository.find(third.getId()).isPresent());
+        assertEquals("first", todoRepository.find(first.getId()).map(Todo::getDetails).orElse(null));
+
+        Todo found = todoRepository.find(second.getId()).orElseThrow(NoSuchElementException::new);
+        assertEquals(AUTHOR, found.getAuthor());
+        assertEquals("second ✓", found.getDetails());
+        assertEquals(1, found.getTasks().size());
+        assertEquals(done, found.getTasks().get(0));
+        assertThrows(NoSuchElementException.class, () -> todoRepository.deleteTask(dropped.getId()));
+
+        // New ids carry on from where the old repository stopped.
+        assertEquals(4L, create("fourth").getId());
+        assertEquals(4L, addTask(found.getId(), false, "new").getId());
+    }
+
+    @Test
+    public void testSpansSegments() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            Todo todo = create("todo number " + i);
+            addTask(todo.getId(), i % 2 == 0, "task number " + i);
+        }
+        assertTrue(segmentFiles().size() > 1, "Expected the data to need more than one segment.");
+
+        reopen();
+
+        assertEquals(500, todoRepository.count());
+        List<Todo> page = todoRepository.findAll(49, 10);
+        assertEquals(491L, page.get(0).getId());
+        assertEquals("todo number 499", page.get(9).getDetails());
+        assertEquals("task number 499", page.get(9).getTasks().get(0).getDetails());
+    }
+
+    @Test
+    public void testSeeksAfterRestart() {
+        for (int i = 1; i <= 15; i++)
+            create("todo " + i);
+        for (long id : new long[] {4, 5, 12})
+            todoRepository.delete(id);
+
+        // Deleted todos get no slot on the way back in, so slots no longer line up with ids.
+        reopen();
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 6L), ids(todoRepository.findAllAfter(-1, 4)));
+        assertEquals(Collections.singletonList(6L), ids(todoRepository.findAllAfter(4, 1)));
+        assertEquals(Arrays.asList(13L, 14L), ids(todoRepository.findAllAfter(11, 2)));
+        assertEquals(Arrays.asList(13L, 14L, 15L), ids(todoRepository.findByAuthorAfter(AUTHOR, 11, 5)));
+        assertTrue(todoRepository.findAllAfter(15, 5).isEmpty());
+    }
+
+    private static List<Long> ids(List<Todo> todos) {
+        return todos.stream().map(Todo::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testNullText() {
+        Todo todo = todoRepository.create(new Todo());
+        addTask(todo.getId(), null, null);
+
+        reopen();
+
+        Todo found = todoRepository.find(todo.getId()).orElseThrow(NoSuchElementException::new);
+        assertNull(found.getAuthor());
+        assertNull(found.getDetails());
+        assertNull(found.getTasks().get(0).getDetails());
+        assertNull(found.getTasks().get(0).getCompleted());
+    }
+
+    @Test
+    public void testRejectsRecordsLargerThanASegment() {
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < SEGMENT_SIZE; i++)
+            details.append('x');
+        assertThrows(IllegalArgumentException.class, () -> create(details.toString()));
+        assertEquals(0, todoRepository.count());
+    }
+
+    @Test
+    public void testFsyncAlways() {
+        repository.close();
+        repository = new MappedTodoRepository(directory, SEGMENT_SIZE, FsyncPolicy.ALWAYS);
+        todoRepository = repository;
+
+        Todo todo = create("synced");
+        addTask(todo.getId(), true, "synced task");
+
+        reopen();
+        assertEquals("synced task", todoRepository.find(todo.getId())
+                .orElseThrow(NoSuchElementException::new)
+                .getTasks().get(0).getDetails());
+    }
+
+    @Test
+    public void testTornRecordIsOverwritten() throws IOException {
+        // Without author or details a todo is just its 32 byte header, so the second one starts at offset 32.
+        Todo first = todoRepository.create(new Todo());
+        StringBuilder details = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            details.append('x');
+        create(details.toString());
+        repository.close();
+
+        // A crash before the second record's type byte was written leaves its text behind a TYPE_END.
+        try (RandomAccessFile segment = new RandomAccessFile(directory.resolve("segment-00000.dat").toFile(), "rw")) {
+            segment.seek(32);
+            segment.write(0);
+        }
+
+        setup();
+        assertEquals(1, todoRepository.count());
+        Todo second = todoRepository.create(new Todo());
+
+        reopen();
+        assertEquals(2, todoRepository.count());
+        assertTrue(todoRepository.find(first.getId()).isPresent());
+        assertTrue(todoRepository.find(second.getId()).isPresent());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testBatchesSurviveRestart() {
+        Todo todo = create("batched");
+        Task done = addTask(todo.getId(), false, "done");
+        Task dropped = addTask(todo.getId(), false, "dropped");
+        Task open = addTask(todo.getId(), null, "open");
+        todoRepository.completeTasks(Arrays.asList(done.getId(), dropped.getId()));
+        todoRepository.deleteTasks(Collections.singletonList(dropped.getId()));
+
+        reopen();
+
+        List<Task> tasks = todoRepository.find(todo.getId()).orElseThrow(NoSuchElementException::new).getTasks();
+        assertEquals(2, tasks.size());
+        assertEquals(Boolean.TRUE, tasks.get(0).getCompleted());
+        assertEquals(open.getId(), tasks.get(1).getId());
+        assertNull(tasks.get(1).getCompleted());
+    }
+
+}